@@ -0,0 +1,46 @@
+package org.example;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Random;
+
+public final class BenchmarkData {
+
+    public enum Distribution { RANDOM, PRESORTED, REVERSED, FEW_DISTINCT }
+
+    private BenchmarkData() {
+    }
+
+    static Record[] records(int count, Distribution distribution) {
+        Random rand = new Random(43);
+        Record[] records = new Record[count];
+        for (int i = 0; i < count; i++) {
+            records[i] = new Record(rand.nextInt(10) + 1, rand.nextInt(4) + 1,
+                    rand.nextInt(5) + 1, rand.nextInt(5) + 1, rand.nextInt(20) + 1);
+        }
+
+        switch (distribution) {
+            case PRESORTED -> Arrays.sort(records);
+            case REVERSED -> Arrays.sort(records, Collections.reverseOrder());
+            case FEW_DISTINCT -> {
+                Record[] keys = Arrays.copyOf(records, Math.min(8, count));
+                for (int i = 0; i < count; i++) {
+                    records[i] = keys[rand.nextInt(keys.length)];
+                }
+            }
+            default -> { }
+        }
+        return records;
+    }
+
+    static void write(String fileName, Record[] records, int blockSize) throws IOException {
+        Tape tape = new Tape(fileName, Record.RECORD_SIZE, blockSize);
+        tape.reset("rw");
+        tape.truncate();
+        for (Record record : records) {
+            tape.writeRecord(record);
+        }
+        tape.close();
+    }
+}
@@ -0,0 +1,95 @@
+package org.example;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+
+// Jeden blok 4096 B: dekodowanie, g() i spadki klucza po jednym rekordzie (jak dotąd w Main)
+// wobec BlockKernel skalarnego i wektorowego
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "--add-modules=jdk.incubator.vector")
+public class BlockKernelBenchmark {
+
+    private static final int BLOCK_SIZE = 4096;
+    private static final int BLOCKS = 16;
+
+    @Param({"RANDOM", "PRESORTED"})
+    public BenchmarkData.Distribution distribution;
+
+    private ByteBuffer[] blocks;
+    private int perBlock;
+    private Record record;
+    private BlockKernel scalar;
+    private BlockKernel vector;
+    private BlockColumns columns;
+    private int[] descents;
+    private int index;
+
+    @Setup
+    public void setUp() {
+        perBlock = BLOCK_SIZE / Record.RECORD_SIZE;
+        Record[] records = BenchmarkData.records(perBlock * BLOCKS, distribution);
+        blocks = new ByteBuffer[BLOCKS];
+        for (int b = 0; b < BLOCKS; b++) {
+            blocks[b] = ByteBuffer.allocate(BLOCK_SIZE);
+            for (int i = 0; i < perBlock; i++) {
+                records[b * perBlock + i].encode(blocks[b], i * Record.RECORD_SIZE);
+            }
+        }
+        record = new Record();
+        scalar = BlockKernel.scalar();
+        vector = BlockKernel.preferred();
+        columns = BlockColumns.forBlock(Record.RECORD_SIZE, BLOCK_SIZE);
+        descents = new int[columns.capacity()];
+    }
+
+    private ByteBuffer next() {
+        index = (index + 1) & (BLOCKS - 1);
+        return blocks[index];
+    }
+
+    @Benchmark
+    public int perRecord() {
+        ByteBuffer block = next();
+        int found = 0;
+        long lastKey = Long.MIN_VALUE;
+        for (int i = 0; i < perBlock; i++) {
+            RecordLayout.PLAIN.decode(record, block, i * Record.RECORD_SIZE);
+            found += (record.getSortKey() < lastKey) ? 1 : 0;
+            lastKey = record.getSortKey();
+        }
+        return found;
+    }
+
+    @Benchmark
+    public int scalarKernel() {
+        return scan(scalar);
+    }
+
+    // Bez modułu jdk.incubator.vector preferred() to kernel skalarny
+    @Benchmark
+    public int vectorKernel() {
+        return scan(vector);
+    }
+
+    private int scan(BlockKernel kernel) {
+        kernel.decode(next(), 0, perBlock, Record.RECORD_SIZE, columns);
+        kernel.computeKeys(columns);
+        return kernel.findDescents(columns, Long.MIN_VALUE, descents);
+    }
+}
@@ -0,0 +1,81 @@
+package org.example;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+
+// Koszt pojedynczego rekordu: kodowanie, dekodowanie (z g() i z zapisanym kluczem) oraz compareTo
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RecordBenchmark {
+
+    private static final int COUNT = 1024;
+
+    private Record[] records;
+    private Record target;
+    private ByteBuffer plain;
+    private ByteBuffer keyed;
+    private int index;
+
+    @Setup
+    public void setUp() {
+        records = BenchmarkData.records(COUNT, BenchmarkData.Distribution.RANDOM);
+        target = new Record();
+        plain = ByteBuffer.allocate(COUNT * RecordLayout.PLAIN.recordSize());
+        keyed = ByteBuffer.allocate(COUNT * RecordLayout.KEYED.recordSize());
+        for (int i = 0; i < COUNT; i++) {
+            RecordLayout.PLAIN.encode(records[i], plain, i * RecordLayout.PLAIN.recordSize());
+            RecordLayout.KEYED.encode(records[i], keyed, i * RecordLayout.KEYED.recordSize());
+        }
+    }
+
+    private int next() {
+        index = (index + 1) & (COUNT - 1);
+        return index;
+    }
+
+    @Benchmark
+    public ByteBuffer encode() {
+        int i = next();
+        records[i].encode(plain, i * RecordLayout.PLAIN.recordSize());
+        return plain;
+    }
+
+    @Benchmark
+    public long decodePlain() {
+        RecordLayout.PLAIN.decode(target, plain, next() * RecordLayout.PLAIN.recordSize());
+        return target.getSortKey();
+    }
+
+    @Benchmark
+    public long decodeKeyed() {
+        RecordLayout.KEYED.decode(target, keyed, next() * RecordLayout.KEYED.recordSize());
+        return target.getSortKey();
+    }
+
+    @Benchmark
+    public int compareTo() {
+        int i = next();
+        return records[i].compareTo(records[(i + 1) & (COUNT - 1)]);
+    }
+
+    @Benchmark
+    public int compareGValue() {
+        int i = next();
+        return Double.compare(records[i].getGValue(), records[(i + 1) & (COUNT - 1)].getGValue());
+    }
+}
@@ -0,0 +1,80 @@
+package org.example;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.concurrent.TimeUnit;
+
+// Pełne sortowanie pliku; przed każdym wywołaniem przywracany jest nieposortowany plik wejściowy
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(1)
+public class SortBenchmark {
+
+    private static final int BLOCK_SIZE = 4096;
+    private static final String SOURCE = "bench_sort_source.bin";
+    private static final String FILENAME = "bench_sort.bin";
+
+    @Param({"10000", "100000", "1000000"})
+    public int size;
+
+    @Param({"RANDOM", "PRESORTED", "REVERSED", "FEW_DISTINCT"})
+    public BenchmarkData.Distribution distribution;
+
+    @Param({"natural", "largeBuffers", "kway8", "polyphase4"})
+    public String algorithm;
+
+    private PrintStream console;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        BenchmarkData.write(SOURCE, BenchmarkData.records(size, distribution), BLOCK_SIZE);
+        // Sortery wypisują postęp na konsolę, co zaburzałoby pomiar
+        console = System.out;
+        System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+    }
+
+    @Setup(Level.Invocation)
+    public void restoreInput() throws IOException {
+        Files.copy(Path.of(SOURCE), Path.of(FILENAME), StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        System.setOut(console);
+        Files.deleteIfExists(Path.of(SOURCE));
+        Files.deleteIfExists(Path.of(FILENAME));
+    }
+
+    @Benchmark
+    public SortStats sort() throws IOException {
+        TapeFactory tapes = new TapeFactory(Record.RECORD_SIZE, BLOCK_SIZE);
+        ExternalSorter sorter = switch (algorithm) {
+            case "largeBuffers" -> new LargeBufferSorter(tapes, 64);
+            case "kway8" -> new KWayMergeSorter(tapes, 8);
+            case "polyphase4" -> new PolyphaseMergeSorter(tapes, 4);
+            default -> new NaturalMergeSorter(tapes, null);
+        };
+        return sorter.sort(FILENAME);
+    }
+}
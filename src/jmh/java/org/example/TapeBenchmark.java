@@ -0,0 +1,81 @@
+package org.example;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+// Przepustowość sekwencyjnego zapisu i odczytu taśmy, wynik w rekordach na sekundę
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class TapeBenchmark {
+
+    private static final int N = 1 << 18;
+    private static final String FILENAME = "bench_tape.bin";
+
+    @Param({"512", "4096", "65536"})
+    public int blockSize;
+
+    @Param({"RAF", "CHANNEL", "MMAP"})
+    public StorageType storageType;
+
+    private Record[] records;
+    private Record target;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        records = BenchmarkData.records(N, BenchmarkData.Distribution.RANDOM);
+        target = new Record();
+        BenchmarkData.write(FILENAME, records, blockSize);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(Path.of(FILENAME));
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(N)
+    public long read() throws IOException {
+        Tape tape = new Tape(FILENAME, Record.RECORD_SIZE, blockSize, storageType);
+        tape.reset("r");
+        long sum = 0;
+        while (tape.readRecord(target)) {
+            sum += target.getSortKey();
+        }
+        tape.close();
+        return sum;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(N)
+    public long write() throws IOException {
+        Tape tape = new Tape(FILENAME, Record.RECORD_SIZE, blockSize, storageType);
+        tape.reset("rw");
+        tape.truncate();
+        for (Record record : records) {
+            tape.writeRecord(record);
+        }
+        tape.close();
+        return tape.getDiskWrites();
+    }
+}
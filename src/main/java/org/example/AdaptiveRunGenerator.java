@@ -0,0 +1,243 @@
+package org.example;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+// Serie w duchu TimSort: odcinek nierosnący jest odwracany grupami równych kluczy, a rekord mniejszy od końca serii
+// jest wstawiany binarnie do małego okna ostatnich rekordów, więc seria ma co najmniej minRun rekordów.
+public class AdaptiveRunGenerator implements RunGenerator {
+
+    private final TapeFactory tapes;
+    private final int minRun;
+    private final int capacity;
+
+    private long spilledRecords = 0;
+
+    // minRun - okno wstawiania (minimalna długość serii), bufferCount - bloki na odwracany odcinek
+    public AdaptiveRunGenerator(TapeFactory tapes, int minRun, int bufferCount) {
+        this.tapes = tapes;
+        this.capacity = ChunkRunGenerator.capacityOf(tapes.getRecordSize(), tapes.getBlockSize(), bufferCount);
+        this.minRun = Math.max(2, Math.min(minRun, capacity));
+    }
+
+    public int getMinRun() {
+        return minRun;
+    }
+
+    // Rekordy nierosnących odcinków dłuższych niż bufor, odwrócone przez taśmę pomocniczą
+    public long getSpilledRecords() {
+        return spilledRecords;
+    }
+
+    @Override
+    public RunStats generate(RecordSource in, Tape[] outputs) throws IOException {
+        RunStatsCollector collector = new RunStatsCollector();
+        Record[] window = new Record[capacity];
+        Record[] tail = new Record[minRun];
+        Tape spill = null;
+        spilledRecords = 0;
+        int current = 0;
+        Record next = in.readRecord();
+
+        try {
+            while (next != null) {
+                Tape out = outputs[current];
+                long length = 0;
+                int tailLength = 0;
+                Record lastWritten = null;
+
+                Record first = next;
+                next = in.readRecord();
+                if (next != null && collector.compare(next, first) <= 0) {
+                    // Odcinek nierosnący: w buforze, a gdy się nie mieści - także na taśmie pomocniczej.
+                    // Odwracana jest kolejność grup równych kluczy, a rekordy w grupie zostają w kolejności wejścia.
+                    int loaded = 0;
+                    long spilled = 0;
+                    window[loaded++] = first;
+                    Record last = first;
+                    while (next != null && collector.compare(next, last) <= 0) {
+                        if (loaded == capacity) {
+                            // Na taśmę idą tylko całe grupy; grupa na cały bufor kończy odcinek
+                            int keep = loaded - 1;
+                            while (keep > 0 && collector.compare(window[keep - 1], window[loaded - 1]) == 0) {
+                                keep--;
+                            }
+                            if (keep == 0) {
+                                break;
+                            }
+                            if (spill == null) {
+                                // Odczyt od końca przeskakuje po przesunięciach rekordów, więc układ PLAIN z open()
+                                spill = tapes.open(tapes.getScratch().allocate("tape_rev", 0));
+                            }
+                            if (spilled == 0) {
+                                spill.reset("rw");
+                                spill.truncate();
+                            }
+                            for (int i = 0; i < keep; i++) {
+                                spill.writeRecord(window[i]);
+                            }
+                            spilled += keep;
+                            // Zwolnione miejsca bez kopii referencji: writeReversed czyta do obiektów okna
+                            System.arraycopy(window, keep, window, 0, loaded - keep);
+                            Arrays.fill(window, loaded - keep, loaded, null);
+                            loaded -= keep;
+                        }
+                        window[loaded++] = next;
+                        last = next;
+                        next = in.readRecord();
+                    }
+
+                    reverseGroups(window, 0, loaded, collector);
+                    if (spilled == 0 && loaded <= minRun) {
+                        System.arraycopy(window, 0, tail, 0, loaded);
+                        tailLength = loaded;
+                    } else {
+                        for (int i = 0; i < loaded; i++) {
+                            out.writeRecord(window[i]);
+                        }
+                        if (spilled > 0) {
+                            writeReversed(spill, spilled, window, out, collector);
+                            spilledRecords += spilled;
+                        }
+                        length = spilled + loaded;
+                        lastWritten = first;
+                    }
+                } else {
+                    tail[tailLength++] = first;
+                }
+
+                // Seria rośnie, dopóki rekord nie jest mniejszy od ostatnio zapisanego na taśmę
+                while (next != null) {
+                    if (tailLength == minRun) {
+                        int half = minRun / 2;
+                        for (int i = 0; i < half; i++) {
+                            out.writeRecord(tail[i]);
+                        }
+                        lastWritten = tail[half - 1];
+                        System.arraycopy(tail, half, tail, 0, tailLength - half);
+                        tailLength -= half;
+                        length += half;
+                    }
+
+                    int position;
+                    if (tailLength > 0 && collector.compare(next, tail[tailLength - 1]) >= 0) {
+                        position = tailLength;
+                    } else if (lastWritten == null || collector.compare(next, lastWritten) >= 0) {
+                        position = insertionPoint(tail, tailLength, next, collector);
+                    } else {
+                        break;
+                    }
+                    System.arraycopy(tail, position, tail, position + 1, tailLength - position);
+                    tail[position] = next;
+                    tailLength++;
+                    next = in.readRecord();
+                }
+
+                for (int i = 0; i < tailLength; i++) {
+                    out.writeRecord(tail[i]);
+                    tail[i] = null;
+                }
+                collector.add(length + tailLength);
+                current = (current + 1) % outputs.length;
+            }
+        } finally {
+            if (spill != null) {
+                spill.close();
+                tapes.getScratch().release(spill.getFileName());
+            }
+        }
+
+        if (spilledRecords > 0) {
+            System.out.println("Odwrócono przez taśmę pomocniczą " + spilledRecords + " rekordów");
+        }
+        return collector.toStats();
+    }
+
+    // Pierwsza pozycja za rekordami nie większymi od record, więc równe zachowują kolejność
+    private static int insertionPoint(Record[] tail, int length, Record record, RunStatsCollector collector) {
+        int low = 0;
+        int high = length;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (collector.compare(record, tail[mid]) < 0) {
+                high = mid;
+            } else {
+                low = mid + 1;
+            }
+        }
+        return low;
+    }
+
+    // Odwraca kolejność grup równych kluczy w [from, to) nierosnącego odcinka: całość od końca,
+    // a potem każda grupa z powrotem, więc równe rekordy zostają w kolejności wejścia
+    private static void reverseGroups(Record[] records, int from, int to, RunStatsCollector collector) {
+        reverse(records, from, to);
+        int groupStart = from;
+        for (int i = from + 1; i <= to; i++) {
+            if (i == to || collector.compare(records[i], records[groupStart]) != 0) {
+                reverse(records, groupStart, i);
+                groupStart = i;
+            }
+        }
+    }
+
+    private static void reverse(Record[] records, int from, int to) {
+        for (int i = from, j = to - 1; i < j; i++, j--) {
+            Record swap = records[i];
+            records[i] = records[j];
+            records[j] = swap;
+        }
+    }
+
+    // Odczyt taśmy od końca porcjami wielkości bufora; każda porcja jest czytana sekwencyjnie.
+    // Pierwsza grupa porcji może zaczynać się wcześniej na taśmie, więc jest czytana ponownie z następną porcją
+    // (grupy na taśmie są krótsze od bufora).
+    private static void writeReversed(Tape spill, long count, Record[] window, Tape out, RunStatsCollector collector)
+            throws IOException {
+        for (long end = count; end > 0; ) {
+            long start = Math.max(0, end - window.length);
+            int loaded = (int) (end - start);
+            spill.seek(start * spill.getRecordSize());
+            for (int i = 0; i < loaded; i++) {
+                if (window[i] == null) {
+                    window[i] = new Record();
+                }
+                if (!spill.readRecord(window[i])) {
+                    throw new IOException("Brak rekordu " + (start + i) + " na taśmie " + spill.getFileName());
+                }
+            }
+            int from = 0;
+            if (start > 0) {
+                from = 1;
+                while (collector.compare(window[from], window[0]) == 0) {
+                    from++;
+                }
+            }
+            reverseGroups(window, from, loaded, collector);
+            for (int i = from; i < loaded; i++) {
+                out.writeRecord(window[i]);
+            }
+            end = start + from;
+        }
+    }
+
+    // Liczba serii, gdy odcinki nierosnące też są seriami (po odwróceniu)
+    public static long countRuns(RecordSource in) throws IOException {
+        long runs = 0;
+        int direction = 0;
+        Record last = null;
+        Record current;
+        while ((current = in.readRecord()) != null) {
+            if (last == null) {
+                runs = 1;
+            } else if (direction == 0) {
+                direction = (current.compareTo(last) <= 0) ? -1 : 1;
+            } else if ((direction > 0) ? current.compareTo(last) < 0 : current.compareTo(last) > 0) {
+                runs++;
+                direction = 0;
+            }
+            last = current;
+        }
+        return runs;
+    }
+}
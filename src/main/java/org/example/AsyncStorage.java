@@ -0,0 +1,250 @@
+package org.example;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+// Odczyt z wyprzedzeniem i zapis w tle: wątek I/O obsługuje depth buforów po chunkSize bajtów.
+// Bloki taśmy są zbierane w większe porcje, żeby przekazanie między wątkami nie kosztowało więcej niż sam odczyt.
+// Na jednej otwartej taśmie nie należy przeplatać odczytu z zapisem.
+class AsyncStorage implements TapeStorage {
+
+    private static final ByteBuffer END_OF_FILE = ByteBuffer.allocate(0);
+
+    private final TapeStorage delegate;
+    private final int chunkSize;
+    private final BlockingQueue<ByteBuffer> free;
+    private final BlockingQueue<ByteBuffer> filled = new LinkedBlockingQueue<>();
+    private final ExecutorService worker;
+
+    private volatile IOException failure = null;
+    private volatile boolean stopPrefetch = false;
+    private Future<?> prefetchTask = null;
+    private ByteBuffer current = null;
+    private ByteBuffer pendingWrite = null;
+    private boolean endOfFile = false;
+
+    AsyncStorage(TapeStorage delegate, StorageType type, int chunkSize, int depth, String name) {
+        this.delegate = delegate;
+        this.chunkSize = chunkSize;
+        this.free = new LinkedBlockingQueue<>();
+        for (int i = 0; i < Math.max(1, depth); i++) {
+            free.add(type.allocate(chunkSize));
+        }
+        this.worker = Executors.newSingleThreadExecutor(task -> {
+            Thread thread = new Thread(task, "tape-io-" + name);
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @Override
+    public int read(ByteBuffer dst) throws IOException {
+        if (prefetchTask == null) {
+            stopPrefetch = false;
+            prefetchTask = worker.submit(this::prefetch);
+        }
+
+        int total = 0;
+        while (dst.hasRemaining()) {
+            if (current == null) {
+                if (endOfFile) {
+                    break;
+                }
+                current = take(filled);
+                if (current == END_OF_FILE) {
+                    current = null;
+                    endOfFile = true;
+                    checkFailure();
+                    break;
+                }
+            }
+
+            int length = Math.min(dst.remaining(), current.remaining());
+            dst.put(current.slice(current.position(), length));
+            current.position(current.position() + length);
+            total += length;
+
+            if (!current.hasRemaining()) {
+                current.clear();
+                free.add(current);
+                current = null;
+            }
+        }
+
+        return (total == 0 && endOfFile) ? -1 : total;
+    }
+
+    @Override
+    public void write(ByteBuffer src) throws IOException {
+        stopPrefetching();
+        checkFailure();
+
+        while (src.hasRemaining()) {
+            if (pendingWrite == null) {
+                pendingWrite = take(free);
+                pendingWrite.clear();
+            }
+            int length = Math.min(pendingWrite.remaining(), src.remaining());
+            pendingWrite.put(src.slice(src.position(), length));
+            src.position(src.position() + length);
+
+            if (!pendingWrite.hasRemaining()) {
+                submitPendingWrite();
+            }
+        }
+    }
+
+    private void submitPendingWrite() {
+        if (pendingWrite == null) {
+            return;
+        }
+        ByteBuffer chunk = pendingWrite;
+        pendingWrite = null;
+        chunk.flip();
+
+        worker.submit(() -> {
+            try {
+                if (failure == null) {
+                    delegate.write(chunk);
+                }
+            } catch (IOException e) {
+                failure = e;
+            } finally {
+                chunk.clear();
+                free.add(chunk);
+            }
+        });
+    }
+
+    @Override
+    public void setLength(long length) throws IOException {
+        stopPrefetching();
+        drain();
+        delegate.setLength(length);
+    }
+
+    @Override
+    public void seek(long position) throws IOException {
+        stopPrefetching();
+        drain();
+        delegate.seek(position);
+        endOfFile = false;
+    }
+
+    @Override
+    public long size() throws IOException {
+        drain();
+        return delegate.size();
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            stopPrefetching();
+            drain();
+        } finally {
+            worker.shutdown();
+            delegate.close();
+        }
+    }
+
+    private void prefetch() {
+        try {
+            while (!stopPrefetch) {
+                ByteBuffer chunk = free.poll(10, TimeUnit.MILLISECONDS);
+                if (chunk == null) {
+                    continue;
+                }
+
+                chunk.clear();
+                int bytesRead = 0;
+                while (chunk.hasRemaining()) {
+                    int n = delegate.read(chunk);
+                    if (n <= 0) {
+                        break;
+                    }
+                    bytesRead += n;
+                }
+                chunk.flip();
+
+                if (bytesRead == 0) {
+                    free.add(chunk);
+                    break;
+                }
+                filled.add(chunk);
+                if (bytesRead < chunkSize) {
+                    break;
+                }
+            }
+        } catch (IOException e) {
+            failure = e;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        filled.add(END_OF_FILE);
+    }
+
+    private void stopPrefetching() throws IOException {
+        if (prefetchTask == null) {
+            return;
+        }
+        stopPrefetch = true;
+        await(prefetchTask);
+        prefetchTask = null;
+
+        if (current != null) {
+            current.clear();
+            free.add(current);
+            current = null;
+        }
+        ByteBuffer chunk;
+        while ((chunk = filled.poll()) != null) {
+            if (chunk != END_OF_FILE) {
+                chunk.clear();
+                free.add(chunk);
+            }
+        }
+    }
+
+    private void drain() throws IOException {
+        submitPendingWrite();
+        await(worker.submit(() -> { }));
+        checkFailure();
+    }
+
+    private void checkFailure() throws IOException {
+        IOException e = failure;
+        if (e != null) {
+            failure = null;
+            throw e;
+        }
+    }
+
+    private static ByteBuffer take(BlockingQueue<ByteBuffer> queue) throws IOException {
+        try {
+            return queue.take();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Przerwano oczekiwanie na wątek I/O taśmy");
+        }
+    }
+
+    private static void await(Future<?> future) throws IOException {
+        try {
+            future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Przerwano oczekiwanie na wątek I/O taśmy");
+        } catch (ExecutionException e) {
+            throw new IOException("Błąd wątku I/O taśmy", e.getCause());
+        }
+    }
+}
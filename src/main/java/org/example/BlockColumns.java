@@ -0,0 +1,54 @@
+package org.example;
+
+// Rekordy jednego bloku taśmy w kolumnach: osobna tablica dla każdego pola i klucza sortowania,
+// żeby BlockKernel mógł liczyć całe wektory rekordów naraz. Dane dodatkowe rekordu są pomijane.
+public final class BlockColumns {
+
+    final int[] a;
+    final int[] y;
+    final int[] c;
+    final int[] z;
+    final int[] x;
+    final long[] keys;
+    int count = 0;
+    private final int[] fields = new int[5];
+    // Słowa bloku dla dekodowania wektorowego
+    int[] words = new int[0];
+
+    public BlockColumns(int capacity) {
+        this.a = new int[capacity];
+        this.y = new int[capacity];
+        this.c = new int[capacity];
+        this.z = new int[capacity];
+        this.x = new int[capacity];
+        this.keys = new long[capacity];
+    }
+
+    // Pojemność dla bloku blockSize bajtów
+    public static BlockColumns forBlock(int recordSize, int blockSize) {
+        return new BlockColumns(Math.max(1, blockSize / recordSize));
+    }
+
+    public int capacity() {
+        return keys.length;
+    }
+
+    public int count() {
+        return count;
+    }
+
+    public long key(int index) {
+        return keys[index];
+    }
+
+    // Dla układów bez stałego przesunięcia rekordów (COMPRESSED)
+    void add(Record record) {
+        record.getFields(fields);
+        a[count] = fields[0];
+        y[count] = fields[1];
+        c[count] = fields[2];
+        z[count] = fields[3];
+        x[count] = fields[4];
+        count++;
+    }
+}
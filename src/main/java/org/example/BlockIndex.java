@@ -0,0 +1,236 @@
+package org.example;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+// Rzadki indeks posortowanej taśmy w pliku <taśma>.idx: dla każdego bloku pierwszy i ostatni klucz
+// sortowania, przesunięcie w pliku i liczba rekordów. Zapytanie o zakres g() szuka binarnie pierwszego
+// bloku, w którym może być wynik, i czyta tylko bloki z pasującymi rekordami.
+// Indeks pamięta długość i czas modyfikacji taśmy, więc po jej zmianie jest pomijany jako nieaktualny.
+public class BlockIndex {
+
+    private static final int MAGIC = 0x49445831;
+
+    private final int recordSize;
+    private final long tapeLength;
+    private final long tapeModified;
+    private final long[] firstKeys;
+    private final long[] lastKeys;
+    private final long[] offsets;
+    private final int[] counts;
+
+    private BlockIndex(int recordSize, long tapeLength, long tapeModified,
+                       long[] firstKeys, long[] lastKeys, long[] offsets, int[] counts) {
+        this.recordSize = recordSize;
+        this.tapeLength = tapeLength;
+        this.tapeModified = tapeModified;
+        this.firstKeys = firstKeys;
+        this.lastKeys = lastKeys;
+        this.offsets = offsets;
+        this.counts = counts;
+    }
+
+    public int blocks() { return counts.length; }
+    public long firstKey(int block) { return firstKeys[block]; }
+    public long lastKey(int block) { return lastKeys[block]; }
+    public long offset(int block) { return offsets[block]; }
+    public int count(int block) { return counts[block]; }
+    public int getRecordSize() { return recordSize; }
+
+    public long records() {
+        long sum = 0;
+        for (int count : counts) {
+            sum += count;
+        }
+        return sum;
+    }
+
+    // Pierwszy blok, którego ostatni klucz jest >= key, czyli jedyny, od którego może zaczynać się wynik;
+    // blocks(), gdy wszystkie klucze taśmy są mniejsze
+    public int findBlock(long key) {
+        int low = 0;
+        int high = lastKeys.length;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (lastKeys[mid] < key) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    public static Path pathOf(String tapeName) {
+        return Path.of(tapeName + ".idx");
+    }
+
+    // null, gdy indeksu nie ma albo nie pasuje do obecnej zawartości taśmy
+    public static BlockIndex read(String tapeName) throws IOException {
+        Path path = pathOf(tapeName);
+        Path tape = Path.of(tapeName);
+        if (!Files.exists(path) || !Files.exists(tape)) {
+            return null;
+        }
+        BlockIndex index;
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(path)))) {
+            if (in.readInt() != MAGIC) {
+                throw new IOException("Uszkodzony indeks " + path);
+            }
+            int recordSize = in.readInt();
+            long tapeLength = in.readLong();
+            long tapeModified = in.readLong();
+            int blocks = in.readInt();
+            long[] firstKeys = new long[blocks];
+            long[] lastKeys = new long[blocks];
+            long[] offsets = new long[blocks];
+            int[] counts = new int[blocks];
+            for (int i = 0; i < blocks; i++) {
+                firstKeys[i] = in.readLong();
+                lastKeys[i] = in.readLong();
+                offsets[i] = in.readLong();
+                counts[i] = in.readInt();
+            }
+            index = new BlockIndex(recordSize, tapeLength, tapeModified, firstKeys, lastKeys, offsets, counts);
+        }
+        if (index.tapeLength != Files.size(tape) || index.tapeModified != modifiedOf(tape)) {
+            return null;
+        }
+        return index;
+    }
+
+    // Zapis przez plik tymczasowy, jak w TapeManifest
+    public void write(String tapeName) throws IOException {
+        Path path = pathOf(tapeName);
+        Path temporary = Path.of(path + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temporary)))) {
+            out.writeInt(MAGIC);
+            out.writeInt(recordSize);
+            out.writeLong(tapeLength);
+            out.writeLong(tapeModified);
+            out.writeInt(counts.length);
+            for (int i = 0; i < counts.length; i++) {
+                out.writeLong(firstKeys[i]);
+                out.writeLong(lastKeys[i]);
+                out.writeLong(offsets[i]);
+                out.writeInt(counts[i]);
+            }
+        }
+        Files.move(temporary, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    public static void delete(String tapeName) throws IOException {
+        Files.deleteIfExists(pathOf(tapeName));
+    }
+
+    // Indeks idzie razem z przenoszoną taśmą; bez niego stary indeks celu jest usuwany
+    public static void move(String from, String to) throws IOException {
+        if (Files.exists(pathOf(from))) {
+            Files.move(pathOf(from), pathOf(to), StandardCopyOption.REPLACE_EXISTING);
+        } else {
+            delete(to);
+        }
+    }
+
+    // Indeks istniejącej taśmy jednym przebiegiem odczytu; null, gdy taśma nie jest posortowana
+    public static BlockIndex build(Tape tape, int blockSize) throws IOException {
+        Builder builder = new Builder(tape.getRecordSize(), blockSize);
+        builder.start();
+        tape.seek(0);
+        Record record = new Record();
+        while (tape.readRecord(record)) {
+            builder.add(record.getSortKey());
+        }
+        return builder.isSorted() ? builder.build(tape.getFileName()) : null;
+    }
+
+    static long modifiedOf(Path tape) throws IOException {
+        return Files.getLastModifiedTime(tape).to(TimeUnit.MICROSECONDS);
+    }
+
+    // Zbiera klucze zapisywanych po kolei rekordów; blok indeksu to tyle rekordów, ile mieści blok taśmy
+    static class Builder {
+
+        private final int recordSize;
+        private final int perBlock;
+
+        private long[] firstKeys = new long[16];
+        private long[] lastKeys = new long[16];
+        private int blocks = 0;
+        private int inBlock = 0;
+        private long records = 0;
+        private boolean active = false;
+        private boolean sorted = true;
+
+        Builder(int recordSize, int blockSize) {
+            this.recordSize = recordSize;
+            this.perBlock = Math.max(1, blockSize / recordSize);
+        }
+
+        // Taśma pisana od początku
+        void start() {
+            blocks = 0;
+            inBlock = 0;
+            records = 0;
+            sorted = true;
+            active = true;
+        }
+
+        // Zapis nie po kolei (np. po seek) - indeks nie powstanie, a stary zostanie usunięty
+        void invalidate() {
+            sorted = false;
+        }
+
+        void finish() {
+            active = false;
+        }
+
+        boolean isActive() {
+            return active;
+        }
+
+        boolean isSorted() {
+            return sorted;
+        }
+
+        long records() {
+            return records;
+        }
+
+        void add(long key) {
+            if (records > 0 && key < lastKeys[blocks - 1]) {
+                sorted = false;
+            }
+            if (inBlock == 0) {
+                if (blocks == firstKeys.length) {
+                    firstKeys = Arrays.copyOf(firstKeys, blocks * 2);
+                    lastKeys = Arrays.copyOf(lastKeys, blocks * 2);
+                }
+                firstKeys[blocks++] = key;
+            }
+            lastKeys[blocks - 1] = key;
+            inBlock = (inBlock + 1 == perBlock) ? 0 : inBlock + 1;
+            records++;
+        }
+
+        BlockIndex build(String tapeName) throws IOException {
+            long[] offsets = new long[blocks];
+            int[] counts = new int[blocks];
+            for (int i = 0; i < blocks; i++) {
+                offsets[i] = (long) i * perBlock * recordSize;
+                counts[i] = (int) Math.min(perBlock, records - (long) i * perBlock);
+            }
+            Path tape = Path.of(tapeName);
+            return new BlockIndex(recordSize, Files.size(tape), modifiedOf(tape),
+                    Arrays.copyOf(firstKeys, blocks), Arrays.copyOf(lastKeys, blocks), offsets, counts);
+        }
+    }
+}
@@ -0,0 +1,32 @@
+package org.example;
+
+import java.nio.ByteBuffer;
+
+// Przetwarzanie całego bloku rekordów naraz zamiast pojedynczych obiektów Record: dekodowanie pięciu
+// kolumn pól, klucze g() i spadki klucza (początki serii). Wynik jest bit w bit taki jak w Record.
+public interface BlockKernel {
+
+    // Rekordy [0, count) z bloku od offset, co recordSize bajtów (pola jak w RecordLayout.PLAIN)
+    void decode(ByteBuffer block, int offset, int count, int recordSize, BlockColumns target);
+
+    void computeKeys(BlockColumns block);
+
+    // Pozycje i, w których klucz jest mniejszy od poprzedniego (dla i = 0 od previousKey);
+    // positions musi mieścić block.count() pozycji. Zwraca liczbę spadków.
+    int findDescents(BlockColumns block, long previousKey, int[] positions);
+
+    String name();
+
+    static BlockKernel scalar() {
+        return ScalarBlockKernel.INSTANCE;
+    }
+
+    // Wektorowy, gdy JVM uruchomiono z --add-modules jdk.incubator.vector i procesor ma co najmniej
+    // dwa pasy double; inaczej skalarny. Klasa wektorowa jest ładowana tylko wtedy.
+    static BlockKernel preferred() {
+        if (ModuleLayer.boot().findModule("jdk.incubator.vector").isPresent() && VectorBlockKernel.isSupported()) {
+            return VectorBlockKernel.INSTANCE;
+        }
+        return scalar();
+    }
+}
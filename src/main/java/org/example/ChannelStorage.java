@@ -0,0 +1,56 @@
+package org.example;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+class ChannelStorage implements TapeStorage {
+
+    protected final FileChannel channel;
+
+    ChannelStorage(String fileName, String mode) throws IOException {
+        this.channel = new RandomAccessFile(fileName, mode).getChannel();
+        this.channel.position(0);
+    }
+
+    @Override
+    public int read(ByteBuffer dst) throws IOException {
+        return channel.read(dst);
+    }
+
+    @Override
+    public void write(ByteBuffer src) throws IOException {
+        while (src.hasRemaining()) {
+            channel.write(src);
+        }
+    }
+
+    @Override
+    public void setLength(long length) throws IOException {
+        channel.truncate(length);
+        if (channel.position() > length) {
+            channel.position(length);
+        }
+    }
+
+    @Override
+    public void seek(long position) throws IOException {
+        channel.position(position);
+    }
+
+    @Override
+    public long size() throws IOException {
+        return channel.size();
+    }
+
+    @Override
+    public FileChannel channel() {
+        return channel;
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+}
@@ -0,0 +1,48 @@
+package org.example;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+public class ChunkRunGenerator implements RunGenerator {
+
+    private final int capacity;
+
+    public ChunkRunGenerator(int capacity) {
+        this.capacity = Math.max(1, capacity);
+    }
+
+    public static int capacityOf(int recordSize, int blockSize, int bufferCount) {
+        return Math.max(1, bufferCount * (Math.max(blockSize, recordSize) / recordSize));
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    @Override
+    public RunStats generate(RecordSource in, Tape[] outputs) throws IOException {
+        RunStatsCollector collector = new RunStatsCollector();
+        Record[] buffer = new Record[capacity];
+        int current = 0;
+        Record next = in.readRecord();
+
+        while (next != null) {
+            int loaded = 0;
+            while (next != null && loaded < capacity) {
+                buffer[loaded++] = next;
+                next = in.readRecord();
+            }
+
+            Arrays.sort(buffer, 0, loaded, collector::compare);
+
+            for (int i = 0; i < loaded; i++) {
+                outputs[current].writeRecord(buffer[i]);
+                buffer[i] = null;
+            }
+            collector.add(loaded);
+            current = (current + 1) % outputs.length;
+        }
+
+        return collector.toStats();
+    }
+}
@@ -0,0 +1,362 @@
+package org.example;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+// Sortowanie przez zliczanie dla małej liczby różnych kluczy g(): pierwszy przebieg liczy rekordy
+// każdego klucza, z sum prefiksowych wynika miejsce każdego rekordu w wyniku, a drugi przebieg
+// rozsyła rekordy od razu na ich miejsca (taśma zapisu na klucz) albo do kubełków kolejnych kluczy,
+// które mieszczą się w pamięci. Gdy kluczy jest więcej, niż pozwala pamięć, sortuje fallback.
+public class CountingSorter implements ExternalSorter {
+
+    private final TapeFactory tapes;
+    private final ExternalSorter fallback;
+    private final int bufferCount;
+    private final int maxKeys;
+    private final int capacity;
+
+    private int distinctKeys = 0;
+    private int buckets = 0;
+    private boolean fellBack = false;
+
+    // maxKeys - ile różnych kluczy mieści histogram, bufferCount - bloki pamięci: taśmy zapisu
+    // albo kubełki i bufor rekordów jednego kubełka
+    public CountingSorter(TapeFactory tapes, ExternalSorter fallback, int bufferCount, int maxKeys) {
+        if (bufferCount < 1) {
+            throw new IllegalArgumentException("Liczba buforów musi być >= 1, podano " + bufferCount);
+        }
+        if (maxKeys < 1) {
+            throw new IllegalArgumentException("Limit kluczy musi być >= 1, podano " + maxKeys);
+        }
+        this.tapes = tapes;
+        this.fallback = fallback;
+        this.bufferCount = bufferCount;
+        this.maxKeys = maxKeys;
+        this.capacity = ChunkRunGenerator.capacityOf(tapes.getRecordSize(), tapes.getBlockSize(), bufferCount);
+    }
+
+    // Liczba różnych kluczy ostatniego sortowania (0 po przerwanym histogramie)
+    public int getDistinctKeys() {
+        return distinctKeys;
+    }
+
+    // Liczba taśm zapisu albo kubełków drugiego przebiegu; 0 bez drugiego przebiegu albo gdy sortował fallback
+    public int getBuckets() {
+        return buckets;
+    }
+
+    public boolean fellBack() {
+        return fellBack;
+    }
+
+    @Override
+    public SortStats sort(String inputFileName, SortListener listener) throws IOException {
+        System.out.println("Rozpoczęto sortowanie przez zliczanie pliku: " + inputFileName);
+        long startTime = System.currentTimeMillis();
+        List<PhaseStats> phases = new ArrayList<>();
+        distinctKeys = 0;
+        buckets = 0;
+        fellBack = false;
+
+        // Faza 1: histogram kluczy, przerwany po przekroczeniu limitu
+        Tape in = tapes.open(inputFileName);
+        PhaseTracker histogram = new PhaseTracker(listener, in);
+        histogram.begin(1);
+        boolean[] sorted = {true};
+        Map<Long, Long> counts = histogram(in, sorted);
+        phases.add(histogram.end(1, 0, 0, (counts == null) ? 0 : counts.size(), 0));
+
+        long[] keys = null;
+        int[] bucketEnds = null;
+        boolean alreadySorted = counts != null && sorted[0];
+        if (alreadySorted) {
+            // Jak w sortowaniu naturalnym: posortowana taśma kończy się po pierwszym przebiegu
+            distinctKeys = counts.size();
+            System.out.println("Faza 1: taśma jest już posortowana (" + distinctKeys + " różnych kluczy)");
+        } else if (counts == null) {
+            System.out.println("Ponad " + maxKeys + " różnych kluczy - sortowanie przez scalanie");
+        } else {
+            keys = new long[counts.size()];
+            int k = 0;
+            for (long key : counts.keySet()) {
+                keys[k++] = key;
+            }
+            Arrays.sort(keys);
+            bucketEnds = bucketsOf(keys, counts);
+            if (keys.length > bufferCount && bucketEnds.length > bufferCount) {
+                System.out.println(keys.length + " kluczy wymaga " + bucketEnds.length + " kubełków przy "
+                        + bufferCount + " buforach - sortowanie przez scalanie");
+                keys = null;
+            }
+        }
+
+        if (keys == null && !alreadySorted) {
+            fellBack = true;
+            SortStats fallbackStats = fallback.sort(inputFileName, listener.shifted(1));
+            for (PhaseStats phase : fallbackStats.phaseDetails()) {
+                phases.add(phase.withPhase(phase.phase() + 1));
+            }
+        } else if (keys != null) {
+            distinctKeys = keys.length;
+            System.out.println("Faza 1: " + keys.length + " różnych kluczy");
+            String outputFileName = inputFileName + ".counting.bin";
+            try {
+                // Taśma na klucz wymaga stałych przesunięć rekordów; indeks bloków powstaje tylko przy zapisie po kolei
+                if (keys.length <= bufferCount && !tapes.isIndexed()) {
+                    scatterToOffsets(in, outputFileName, keys, counts, listener, phases);
+                } else {
+                    scatterToBuckets(in, outputFileName, keys, counts, bucketEnds, listener, phases);
+                }
+                Files.move(Path.of(outputFileName), Path.of(inputFileName), StandardCopyOption.REPLACE_EXISTING);
+                BlockIndex.move(outputFileName, inputFileName);
+            } catch (IOException | RuntimeException e) {
+                // Niepełny wynik jest wielkości wejścia, więc nie może zostać obok niego
+                Files.deleteIfExists(Path.of(outputFileName));
+                BlockIndex.delete(outputFileName);
+                throw e;
+            }
+        }
+
+        long reads = 0;
+        long writes = 0;
+        for (PhaseStats phase : phases) {
+            reads += phase.diskReads();
+            writes += phase.diskWrites();
+        }
+        long endTime = System.currentTimeMillis();
+        return new SortStats(phases.size(), reads, writes, (endTime - startTime), phases);
+    }
+
+    // null, gdy kluczy jest więcej niż maxKeys; sorted[0] = false po pierwszym spadku klucza
+    private Map<Long, Long> histogram(Tape in, boolean[] sorted) throws IOException {
+        in.reset("r");
+        Map<Long, Long> counts = new HashMap<>();
+        Record record = new Record();
+        long previous = Long.MIN_VALUE;
+        try {
+            while (in.readRecord(record)) {
+                long key = record.getSortKey();
+                if (key < previous) {
+                    sorted[0] = false;
+                }
+                previous = key;
+                counts.merge(key, 1L, Long::sum);
+                if (counts.size() > maxKeys) {
+                    return null;
+                }
+            }
+            return counts;
+        } finally {
+            in.close();
+        }
+    }
+
+    // Końce (wyłącznie) kubełków w tablicy kluczy: kolejne klucze, razem najwyżej capacity rekordów,
+    // albo jeden klucz o dowolnej liczbie rekordów, którego nie trzeba porządkować w pamięci
+    private int[] bucketsOf(long[] keys, Map<Long, Long> counts) {
+        List<Integer> ends = new ArrayList<>();
+        long size = 0;
+        for (int k = 0; k < keys.length; k++) {
+            long count = counts.get(keys[k]);
+            if (size > 0 && size + count > capacity) {
+                ends.add(k);
+                size = 0;
+            }
+            size += count;
+            if (size > capacity) {
+                ends.add(k + 1);
+                size = 0;
+            }
+        }
+        if (size > 0) {
+            ends.add(keys.length);
+        }
+        return ends.stream().mapToInt(Integer::intValue).toArray();
+    }
+
+    // Faza 2: każdy klucz ma własną taśmę zapisu ustawioną na początek jego miejsca w pliku wyniku
+    private void scatterToOffsets(Tape in, String outputFileName, long[] keys, Map<Long, Long> counts,
+                                  SortListener listener, List<PhaseStats> phases) throws IOException {
+        Files.deleteIfExists(Path.of(outputFileName));
+        Map<Long, Tape> writers = new HashMap<>();
+        Tape[] trackedTapes = new Tape[keys.length + 1];
+        trackedTapes[0] = in;
+        long records = 0;
+        try {
+            long offset = 0;
+            for (int k = 0; k < keys.length; k++) {
+                Tape writer = new Tape(outputFileName, tapes.getRecordSize(), tapes.getBlockSize(),
+                        tapes.getStorageType(), tapes.getAsyncDepth());
+                writers.put(keys[k], writer);
+                writer.reset("rw");
+                writer.seek(offset);
+                trackedTapes[k + 1] = writer;
+                offset += counts.get(keys[k]) * tapes.getRecordSize();
+            }
+            buckets = keys.length;
+
+            PhaseTracker scatter = new PhaseTracker(listener, trackedTapes);
+            scatter.begin(2);
+            in.reset("r");
+            Record record = new Record();
+            while (in.readRecord(record)) {
+                writers.get(record.getSortKey()).writeRecord(record);
+                records++;
+            }
+            in.close();
+            for (Tape writer : writers.values()) {
+                writer.close();
+            }
+            phases.add(scatter.end(2, 0, keys.length, records, 0));
+        } finally {
+            in.close();
+            for (Tape writer : writers.values()) {
+                writer.close();
+            }
+        }
+        System.out.println("Faza 2: rozesłano " + records + " rekordów na miejsca " + keys.length + " kluczy");
+    }
+
+    // Faza 2: rozesłanie do kubełków; faza 3: kubełki po kolei, każdy uporządkowany w pamięci
+    // według sum prefiksowych. Jeden kubełek (całe wejście w pamięci) nie potrzebuje taśmy.
+    private void scatterToBuckets(Tape in, String outputFileName, long[] keys, Map<Long, Long> counts,
+                                  int[] bucketEnds, SortListener listener, List<PhaseStats> phases)
+            throws IOException {
+        buckets = bucketEnds.length;
+        Tape[] parts = new Tape[(buckets > 1) ? buckets : 0];
+        Tape out = tapes.open(outputFileName);
+        try {
+            for (int b = 0; b < parts.length; b++) {
+                parts[b] = tapes.createScratch("tape_bucket" + b, b);
+            }
+            if (parts.length > 0) {
+                Tape[] scatterTapes = new Tape[parts.length + 1];
+                scatterTapes[0] = in;
+                System.arraycopy(parts, 0, scatterTapes, 1, parts.length);
+                PhaseTracker scatter = new PhaseTracker(listener, scatterTapes);
+                scatter.begin(2);
+                long records = scatter(in, parts, keys, bucketEnds);
+                phases.add(scatter.end(2, 0, parts.length, records, 0));
+                System.out.println("Faza 2: rozesłano " + records + " rekordów do " + parts.length + " kubełków");
+            }
+
+            int gatherPhase = phases.size() + 1;
+            Tape[] gatherTapes = new Tape[parts.length + 2];
+            gatherTapes[0] = in;
+            gatherTapes[1] = out;
+            System.arraycopy(parts, 0, gatherTapes, 2, parts.length);
+            PhaseTracker gather = new PhaseTracker(listener, gatherTapes);
+            gather.begin(gatherPhase);
+            long records = gather(in, parts, out, keys, counts, bucketEnds);
+            phases.add(gather.end(gatherPhase, buckets, 1, records, 0));
+            System.out.println("Faza " + gatherPhase + ": zapisano " + records + " rekordów z " + buckets
+                    + " kubełków");
+        } finally {
+            out.close();
+            for (Tape part : parts) {
+                if (part != null) {
+                    tapes.deleteScratch(part);
+                }
+            }
+        }
+    }
+
+    private long scatter(Tape in, Tape[] parts, long[] keys, int[] bucketEnds) throws IOException {
+        in.reset("r");
+        for (Tape part : parts) {
+            part.reset("rw");
+            part.truncate();
+        }
+        Record record = new Record();
+        long records = 0;
+        while (in.readRecord(record)) {
+            parts[bucketOf(keys, bucketEnds, record.getSortKey())].writeRecord(record);
+            records++;
+        }
+        in.close();
+        for (Tape part : parts) {
+            part.close();
+        }
+        return records;
+    }
+
+    // Kubełek zawierający klucz: pierwszy koniec za pozycją klucza w tablicy kluczy
+    private static int bucketOf(long[] keys, int[] bucketEnds, long key) {
+        int index = Arrays.binarySearch(keys, key);
+        int low = 0;
+        int high = bucketEnds.length - 1;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (bucketEnds[mid] <= index) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    private long gather(Tape in, Tape[] parts, Tape out, long[] keys, Map<Long, Long> counts,
+                        int[] bucketEnds) throws IOException {
+        out.reset("rw");
+        out.truncate();
+        Record record = new Record();
+        Record[] slots = new Record[0];
+        long records = 0;
+        int first = 0;
+        for (int b = 0; b < buckets; b++) {
+            Tape source = (parts.length > 0) ? parts[b] : in;
+            source.reset("r");
+            int last = bucketEnds[b];
+            if (last - first == 1) {
+                // Jeden klucz: rekordy są już w kolejności wyniku
+                long size = counts.get(keys[first]);
+                if (!tapes.isIndexed() && out.canTransferFrom(source)) {
+                    out.transferFrom(source, 0, size * tapes.getRecordSize());
+                } else {
+                    while (source.readRecord(record)) {
+                        out.writeRecord(record);
+                    }
+                }
+                records += size;
+            } else {
+                // Miejsce rekordu w kubełku: kolejny wolny slot jego klucza
+                Map<Long, Integer> cursors = new HashMap<>();
+                int size = 0;
+                for (int k = first; k < last; k++) {
+                    cursors.put(keys[k], size);
+                    size += counts.get(keys[k]);
+                }
+                if (slots.length < size) {
+                    slots = Arrays.copyOf(slots, size);
+                    for (int i = 0; i < size; i++) {
+                        if (slots[i] == null) {
+                            slots[i] = new Record();
+                        }
+                    }
+                }
+                while (source.readRecord(record)) {
+                    int slot = cursors.merge(record.getSortKey(), 1, Integer::sum) - 1;
+                    Record placed = slots[slot];
+                    slots[slot] = record;
+                    record = placed;
+                }
+                for (int i = 0; i < size; i++) {
+                    out.writeRecord(slots[i]);
+                }
+                records += size;
+            }
+            source.close();
+            first = last;
+        }
+        out.close();
+        return records;
+    }
+}
@@ -0,0 +1,12 @@
+package org.example;
+
+import java.io.IOException;
+
+public interface ExternalSorter {
+
+    default SortStats sort(String inputFileName) throws IOException {
+        return sort(inputFileName, SortListener.NONE);
+    }
+
+    SortStats sort(String inputFileName, SortListener listener) throws IOException;
+}
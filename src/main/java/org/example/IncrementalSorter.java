@@ -0,0 +1,300 @@
+package org.example;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+// Sortowanie przyrostowe: manifest taśmy (TapeManifest) pamięta posortowany początek, więc dopisane
+// rekordy są sortowane osobno i scalane z resztą w jednym przebiegu zamiast pełnego sortowania.
+// Posortowane dopiski mogą też czekać jako poziomy (jak w drzewie LSM) i być scalone później.
+// Taśma zawsze zawiera wszystkie rekordy; poziomy to posortowane kopie jej końcówki.
+public class IncrementalSorter implements ExternalSorter {
+
+    // Dwa ostatnie poziomy są łączone, gdy starszy jest najwyżej tyle razy większy od nowszego
+    private static final int LEVEL_RATIO = 2;
+
+    private final TapeFactory tapes;
+    private final ExternalSorter fullSorter;
+    private final int capacity;
+
+    // fullSorter sortuje taśmę bez manifestu oraz dopiski większe niż bufor bufferCount bloków
+    public IncrementalSorter(TapeFactory tapes, ExternalSorter fullSorter, int bufferCount) {
+        this.tapes = tapes;
+        this.fullSorter = fullSorter;
+        this.capacity = ChunkRunGenerator.capacityOf(tapes.getRecordSize(), tapes.getBlockSize(), bufferCount);
+    }
+
+    // Dopiski do nowego poziomu i scalenie wszystkiego z taśmą
+    @Override
+    public SortStats sort(String inputFileName, SortListener listener) throws IOException {
+        return run(inputFileName, listener, true);
+    }
+
+    // Tylko posortowanie dopisków do nowego poziomu; taśma pozostaje bez zmian
+    public SortStats append(String inputFileName, SortListener listener) throws IOException {
+        return run(inputFileName, listener, false);
+    }
+
+    private SortStats run(String inputFileName, SortListener listener, boolean compact) throws IOException {
+        long startTime = System.currentTimeMillis();
+        TapeManifest manifest = validManifest(inputFileName);
+        if (manifest == null) {
+            System.out.println("Brak manifestu taśmy " + inputFileName + " - pełne sortowanie");
+            TapeManifest.delete(inputFileName);
+            SortStats stats = fullSorter.sort(inputFileName, listener);
+            writeSortedManifest(inputFileName);
+            return stats;
+        }
+
+        List<PhaseStats> phases = new ArrayList<>();
+        manifest = addLevel(inputFileName, manifest, listener, phases);
+        if (compact && !manifest.levels().isEmpty()) {
+            compact(inputFileName, manifest, listener, phases);
+        }
+
+        long reads = 0;
+        long writes = 0;
+        for (PhaseStats phase : phases) {
+            reads += phase.diskReads();
+            writes += phase.diskWrites();
+        }
+        long endTime = System.currentTimeMillis();
+        return new SortStats(phases.size(), reads, writes, (endTime - startTime), phases);
+    }
+
+    // Manifest pasujący do taśmy albo null; poziom bez pliku to utrata danych, więc kończy się wyjątkiem
+    private TapeManifest validManifest(String inputFileName) throws IOException {
+        TapeManifest manifest = TapeManifest.read(inputFileName);
+        if (manifest == null) {
+            return null;
+        }
+        for (TapeManifest.Level level : manifest.levels()) {
+            Path path = Path.of(level.fileName());
+            if (!Files.exists(path) || Files.size(path) != level.records() * tapes.getRecordSize()) {
+                throw new IOException("Poziom " + level.fileName() + " z manifestu taśmy " + inputFileName
+                        + " nie istnieje lub ma zły rozmiar");
+            }
+        }
+
+        long total = Files.size(Path.of(inputFileName)) / tapes.getRecordSize();
+        if (manifest.sortedRecords() + manifest.levelRecords() > total) {
+            System.out.println("Taśma " + inputFileName + " jest krótsza niż w manifeście");
+            return null;
+        }
+        if (manifest.sortedRecords() > 0) {
+            Record last = readAt(inputFileName, manifest.sortedRecords() - 1);
+            if (last.getSortKey() != manifest.lastSortKey()) {
+                System.out.println("Taśma " + inputFileName + " zmieniona poza manifestem");
+                return null;
+            }
+        }
+        return manifest;
+    }
+
+    // Nowe rekordy z końca taśmy sortowane do osobnego pliku poziomu
+    private TapeManifest addLevel(String inputFileName, TapeManifest manifest, SortListener listener,
+                                  List<PhaseStats> phases) throws IOException {
+        long covered = manifest.sortedRecords() + manifest.levelRecords();
+        long total = Files.size(Path.of(inputFileName)) / tapes.getRecordSize();
+        long appended = total - covered;
+        if (appended == 0) {
+            return manifest;
+        }
+
+        String levelName = newLevelName(inputFileName);
+        Tape in = tapes.open(inputFileName);
+        Tape level = tapes.open(levelName);
+        int phase = phases.size() + 1;
+        PhaseTracker tracker = new PhaseTracker(listener, in, level);
+        tracker.begin(phase);
+        in.reset("r");
+        in.seek(covered * tapes.getRecordSize());
+        level.reset("rw");
+        level.truncate();
+
+        RunStatsCollector collector = new RunStatsCollector();
+        boolean inMemory = appended <= capacity;
+        if (inMemory) {
+            Record[] buffer = new Record[(int) appended];
+            for (int i = 0; i < buffer.length; i++) {
+                buffer[i] = new Record();
+                in.readRecord(buffer[i]);
+            }
+            Arrays.sort(buffer, collector::compare);
+            for (Record record : buffer) {
+                level.writeRecord(record);
+            }
+        } else {
+            Record record = new Record();
+            while (in.readRecord(record)) {
+                level.writeRecord(record);
+            }
+        }
+        in.close();
+        level.close();
+        phases.add(tracker.end(phase, 0, 1, appended, collector.toStats().comparisons()));
+
+        if (!inMemory) {
+            SortStats levelStats = fullSorter.sort(levelName, listener.shifted(phases.size()));
+            int offset = phases.size();
+            for (PhaseStats levelPhase : levelStats.phaseDetails()) {
+                phases.add(levelPhase.withPhase(levelPhase.phase() + offset));
+            }
+        }
+        System.out.println("Dopisane rekordy (" + appended + ") posortowane do poziomu " + levelName);
+
+        List<TapeManifest.Level> levels = new ArrayList<>(manifest.levels());
+        levels.add(new TapeManifest.Level(levelName, appended));
+        manifest = manifest.withLevels(levels);
+        manifest.write(inputFileName);
+
+        // Poziomy o zbliżonej wielkości są łączone, więc jest ich najwyżej logarytmicznie wiele
+        while (levels.size() >= 2
+                && levels.get(levels.size() - 2).records() <= LEVEL_RATIO * levels.get(levels.size() - 1).records()) {
+            TapeManifest.Level newer = levels.remove(levels.size() - 1);
+            TapeManifest.Level older = levels.remove(levels.size() - 1);
+            String mergedName = newLevelName(inputFileName);
+            Tape[] inputs = {tapes.open(older.fileName()), tapes.open(newer.fileName())};
+            Tape merged = tapes.open(mergedName);
+            long[] counts = {older.records(), newer.records()};
+            mergePhase(inputs, new long[2], counts, merged, listener, phases);
+
+            levels.add(new TapeManifest.Level(mergedName, older.records() + newer.records()));
+            manifest = manifest.withLevels(levels);
+            manifest.write(inputFileName);
+            deleteLevel(older.fileName());
+            deleteLevel(newer.fileName());
+            System.out.println("Połączono poziomy " + older.fileName() + " i " + newer.fileName());
+        }
+        return manifest;
+    }
+
+    // Posortowany początek taśmy i wszystkie poziomy scalane w jednym przebiegu
+    private void compact(String inputFileName, TapeManifest manifest, SortListener listener,
+                         List<PhaseStats> phases) throws IOException {
+        List<TapeManifest.Level> levels = manifest.levels();
+        Tape[] inputs = new Tape[levels.size() + 1];
+        long[] counts = new long[inputs.length];
+        inputs[0] = tapes.open(inputFileName);
+        counts[0] = manifest.sortedRecords();
+        for (int i = 0; i < levels.size(); i++) {
+            inputs[i + 1] = tapes.open(levels.get(i).fileName());
+            counts[i + 1] = levels.get(i).records();
+        }
+        // Wynik zastępuje taśmę, więc jest otwierany przez open() (układ PLAIN, ewentualny indeks)
+        String outputFileName = tapes.getScratch().allocate("tape_inc_out", 0);
+        long records;
+        try {
+            Tape out = tapes.open(outputFileName);
+            records = mergePhase(inputs, new long[inputs.length], counts, out, listener, phases);
+
+            // Bez manifestu taśma jest po prostu sortowana od nowa, więc przerwanie w tym miejscu nic nie psuje
+            TapeManifest.delete(inputFileName);
+            Files.move(Path.of(outputFileName), Path.of(inputFileName), StandardCopyOption.REPLACE_EXISTING);
+            BlockIndex.move(outputFileName, inputFileName);
+        } finally {
+            tapes.getScratch().release(outputFileName);
+        }
+        writeSortedManifest(inputFileName);
+        for (TapeManifest.Level level : levels) {
+            deleteLevel(level.fileName());
+        }
+        System.out.println("Scalono taśmę z " + levels.size() + " poziomami: " + records + " rekordów");
+    }
+
+    // Scala zakresy [first, first + count) posortowanych taśm; równe klucze biorą pierwszą taśmę
+    private long mergePhase(Tape[] inputs, long[] first, long[] counts, Tape out, SortListener listener,
+                            List<PhaseStats> phases) throws IOException {
+        Tape[] all = Arrays.copyOf(inputs, inputs.length + 1);
+        all[inputs.length] = out;
+        int phase = phases.size() + 1;
+        PhaseTracker tracker = new PhaseTracker(listener, all);
+        tracker.begin(phase);
+
+        Record[] heads = new Record[inputs.length];
+        long[] remaining = counts.clone();
+        for (int i = 0; i < inputs.length; i++) {
+            inputs[i].reset("r");
+            inputs[i].seek(first[i] * tapes.getRecordSize());
+            heads[i] = new Record();
+            if (remaining[i] > 0 && inputs[i].readRecord(heads[i])) {
+                remaining[i]--;
+            } else {
+                heads[i] = null;
+            }
+        }
+        out.reset("rw");
+        out.truncate();
+
+        long records = 0;
+        long comparisons = 0;
+        while (true) {
+            int min = -1;
+            for (int i = 0; i < heads.length; i++) {
+                if (heads[i] == null) {
+                    continue;
+                }
+                if (min >= 0) {
+                    comparisons++;
+                }
+                if (min < 0 || heads[i].compareTo(heads[min]) < 0) {
+                    min = i;
+                }
+            }
+            if (min < 0) {
+                break;
+            }
+            out.writeRecord(heads[min]);
+            records++;
+            if (remaining[min] > 0 && inputs[min].readRecord(heads[min])) {
+                remaining[min]--;
+            } else {
+                heads[min] = null;
+            }
+        }
+
+        for (Tape tape : all) {
+            tape.close();
+        }
+        phases.add(tracker.end(phase, inputs.length, inputs.length, records, comparisons));
+        return records;
+    }
+
+    private void writeSortedManifest(String inputFileName) throws IOException {
+        long total = Files.size(Path.of(inputFileName)) / tapes.getRecordSize();
+        long lastKey = (total > 0) ? readAt(inputFileName, total - 1).getSortKey() : 0;
+        new TapeManifest(total, lastKey, List.of()).write(inputFileName);
+    }
+
+    private Record readAt(String fileName, long index) throws IOException {
+        Tape tape = tapes.open(fileName);
+        tape.reset("r");
+        tape.seek(index * tapes.getRecordSize());
+        Record record = new Record();
+        boolean found = tape.readRecord(record);
+        tape.close();
+        if (!found) {
+            throw new IOException("Brak rekordu " + index + " na taśmie " + fileName);
+        }
+        return record;
+    }
+
+    // Przy fabryce z indeksem posortowany poziom ma też swój plik .idx
+    private static void deleteLevel(String fileName) throws IOException {
+        Files.deleteIfExists(Path.of(fileName));
+        BlockIndex.delete(fileName);
+    }
+
+    private static String newLevelName(String inputFileName) {
+        for (int i = 1; ; i++) {
+            String name = inputFileName + ".L" + i + ".bin";
+            if (!Files.exists(Path.of(name))) {
+                return name;
+            }
+        }
+    }
+}
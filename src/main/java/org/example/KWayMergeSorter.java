@@ -0,0 +1,156 @@
+package org.example;
+
+import java.io.IOException;
+
+public class KWayMergeSorter implements ExternalSorter {
+
+    private final TapeFactory tapes;
+    private final int fanIn;
+
+    private long recordsMoved = 0;
+    private long comparisons = 0;
+    private int usedFanIn = 0;
+
+    public KWayMergeSorter(int recordSize, int blockSize, int fanIn) {
+        this(new TapeFactory(recordSize, blockSize), fanIn);
+    }
+
+    public KWayMergeSorter(TapeFactory tapes, int fanIn) {
+        if (fanIn < 2) {
+            throw new IllegalArgumentException("Stopień scalania k musi być >= 2, podano " + fanIn);
+        }
+        this.tapes = tapes;
+        this.fanIn = fanIn;
+    }
+
+    public int getFanIn() {
+        return fanIn;
+    }
+
+    @Override
+    public SortStats sort(String inputFileName, SortListener listener) throws IOException {
+        Tape tapeA = tapes.open(inputFileName);
+        Tape[] runTapes = new Tape[fanIn];
+        for (int i = 0; i < fanIn; i++) {
+            runTapes[i] = tapes.createScratch("tape_k" + i, i);
+        }
+
+        Tape[] allTapes = new Tape[fanIn + 1];
+        allTapes[0] = tapeA;
+        System.arraycopy(runTapes, 0, allTapes, 1, fanIn);
+        PhaseTracker tracker = new PhaseTracker(listener, allTapes);
+
+        System.out.println("Rozpoczęto sortowanie " + fanIn + "-drożne pliku: " + inputFileName);
+        long startTime = System.currentTimeMillis();
+
+        int phases = 0;
+        try {
+            while (true) {
+                phases++;
+                System.out.println("Faza " + phases + ": Dystrybucja");
+                tracker.begin(phases);
+                recordsMoved = 0;
+                comparisons = 0;
+
+                tapeA.reset("r");
+                for (Tape tape : runTapes) {
+                    tape.reset("rw");
+                    tape.truncate();
+                }
+
+                long distributedRuns = distribute(tapeA, runTapes);
+                closeAll(allTapes);
+
+                System.out.println("Rozdzielono " + distributedRuns + " serii.");
+
+                if (distributedRuns <= 1) {
+                    tracker.end(phases, 0, distributedRuns, recordsMoved, comparisons);
+                    break;
+                }
+
+                System.out.println("Faza " + phases + ": Scalanie");
+
+                tapeA.reset("rw");
+                tapeA.truncate();
+                for (Tape tape : runTapes) {
+                    tape.reset("r");
+                }
+
+                long mergedRuns = merge(tapeA, runTapes);
+                closeAll(allTapes);
+
+                PhaseStats phase = tracker.end(phases, usedFanIn, distributedRuns, recordsMoved, comparisons);
+                System.out.println("Scalono " + distributedRuns + " serii w " + mergedRuns
+                        + " (k = " + phase.fanIn() + ", odczyty: " + phase.diskReads()
+                        + ", zapisy: " + phase.diskWrites() + ")");
+
+                if (mergedRuns <= 1) {
+                    break;
+                }
+            }
+        } finally {
+            for (Tape tape : runTapes) {
+                tapes.deleteScratch(tape);
+            }
+        }
+
+        long endTime = System.currentTimeMillis();
+
+        return new SortStats(phases, tracker.getTotalReads(), tracker.getTotalWrites(),
+                (endTime - startTime), tracker.getPhases());
+    }
+
+    private long distribute(Tape in, Tape[] outputs) throws IOException {
+        long runCount = 0;
+        int current = 0;
+        Record currentRecord = new Record();
+        Record lastRecord = new Record();
+        boolean hasLast = false;
+
+        while (in.readRecord(currentRecord)) {
+            if (hasLast) {
+                comparisons++;
+            }
+            if (hasLast && currentRecord.compareTo(lastRecord) < 0) {
+                current = (current + 1) % outputs.length;
+                runCount++;
+            }
+
+            outputs[current].writeRecord(currentRecord);
+            recordsMoved++;
+
+            Record swap = lastRecord;
+            lastRecord = currentRecord;
+            currentRecord = swap;
+            hasLast = true;
+        }
+
+        return hasLast ? runCount + 1 : 0;
+    }
+
+    private long merge(Tape out, Tape[] inputs) throws IOException {
+        RunMerger merger = new RunMerger(inputs);
+        long runCount = 0;
+        usedFanIn = 0;
+
+        while (merger.nextRun()) {
+            usedFanIn = Math.max(usedFanIn, merger.activeInputs());
+
+            Record record;
+            while ((record = merger.next()) != null) {
+                out.writeRecord(record);
+                recordsMoved++;
+            }
+            runCount++;
+        }
+        comparisons += merger.getComparisons();
+
+        return runCount;
+    }
+
+    private void closeAll(Tape[] tapes) throws IOException {
+        for (Tape tape : tapes) {
+            tape.close();
+        }
+    }
+}
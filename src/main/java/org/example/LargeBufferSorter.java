@@ -0,0 +1,20 @@
+package org.example;
+
+public class LargeBufferSorter extends NaturalMergeSorter {
+
+    private final int bufferCapacity;
+
+    public LargeBufferSorter(int recordSize, int blockSize, int bufferCount) {
+        this(new TapeFactory(recordSize, blockSize), bufferCount);
+    }
+
+    public LargeBufferSorter(TapeFactory tapes, int bufferCount) {
+        super(tapes, new ChunkRunGenerator(
+                ChunkRunGenerator.capacityOf(tapes.getRecordSize(), tapes.getBlockSize(), bufferCount)));
+        this.bufferCapacity = ChunkRunGenerator.capacityOf(tapes.getRecordSize(), tapes.getBlockSize(), bufferCount);
+    }
+
+    public int getBufferCapacity() {
+        return bufferCapacity;
+    }
+}
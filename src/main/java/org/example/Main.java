@@ -1,15 +1,23 @@
 package org.example;
 
 import java.io.File;
+import java.io.FileInputStream;
 import java.io.FileNotFoundException;
 import java.io.IOException;
+import java.io.InputStream;
 import java.util.Random;
 import java.util.Scanner;
 
 public class Main {
     private static final String FILENAME = "data_43.bin";
     private static final int BLOCK_SIZE = 4096;
-    private static final int RECORD_SIZE = Record.RECORD_SIZE;
+
+    private static StorageType storageType = StorageType.RAF;
+    private static int asyncDepth = 0;
+    private static RecordLayout scratchLayout = RecordLayout.PLAIN;
+    private static int recordSize = Record.RECORD_SIZE;
+    private static boolean blockIndex = false;
+    private static ScratchSpace scratchSpace = ScratchSpace.workingDirectory();
 
     public static void main(String[] args) {
         Scanner scanner = new Scanner(System.in);
@@ -50,6 +58,63 @@ public class Main {
                     case 7:
                         sortTape(true);
                         break;
+                    case 8:
+                        sortTapeLargeBuffers(scanner);
+                        break;
+                    case 9:
+                        sortTapeKWay(scanner);
+                        break;
+                    case 10:
+                        sortTapePolyphase(scanner);
+                        break;
+                    case 11:
+                        sortTapeReplacementSelection(scanner);
+                        break;
+                    case 12:
+                        chooseStorageType(scanner);
+                        break;
+                    case 13:
+                        sortTapeParallel(scanner);
+                        break;
+                    case 14:
+                        printSorted();
+                        break;
+                    case 15:
+                        chooseRecordSize(scanner);
+                        break;
+                    case 16:
+                        sortTapeTags(scanner);
+                        break;
+                    case 17:
+                        sortTapeAdaptive(scanner);
+                        break;
+                    case 18:
+                        importAndSort(scanner);
+                        break;
+                    case 19:
+                        appendRandomRecords(scanner);
+                        break;
+                    case 20:
+                        sortTapeIncremental();
+                        break;
+                    case 21:
+                        queryRange(scanner);
+                        break;
+                    case 22:
+                        selectTopK(scanner);
+                        break;
+                    case 23:
+                        sortTapeReduced(scanner);
+                        break;
+                    case 24:
+                        sortTapeCheckpointed();
+                        break;
+                    case 25:
+                        sortTapePartitioned(scanner);
+                        break;
+                    case 26:
+                        sortTapeCounting(scanner);
+                        break;
                     default:
                         System.err.println("Błędna opcja");
                 }
@@ -69,14 +134,37 @@ public class Main {
         System.out.println("5) Odczyt informacji o taśmie");
         System.out.println("6) Sortowanie taśmy");
         System.out.println("7) Sortowanie taśmy z odczytem");
+        System.out.println("8) Sortowanie taśmy z dużymi buforami");
+        System.out.println("9) Sortowanie taśmy k-drożne");
+        System.out.println("10) Sortowanie taśmy polifazowe");
+        System.out.println("11) Sortowanie taśmy z selekcją zastępującą");
+        System.out.println("12) Wybór backendu taśm (obecnie " + storageType
+                + (asyncDepth > 0 ? ", asynchronicznie, kolejka " + asyncDepth : "")
+                + (scratchLayout != RecordLayout.PLAIN ? ", taśmy pomocnicze " + scratchLayout : "")
+                + (blockIndex ? ", indeks bloków" : "") + ", taśmy pomocnicze w " + scratchSpace + ")");
+        System.out.println("13) Sortowanie taśmy równoległe");
+        System.out.println("14) Odczyt taśmy w kolejności posortowanej (bez zmiany pliku)");
+        System.out.println("15) Rozmiar rekordu (obecnie " + recordSize + " B)");
+        System.out.println("16) Sortowanie taśmy przez klucze (dla szerokich rekordów)");
+        System.out.println("17) Sortowanie taśmy z seriami adaptacyjnymi (odwracanie malejących, min. długość)");
+        System.out.println("18) Import z pliku tekstowego od razu do posortowanej taśmy (wielowątkowo)");
+        System.out.println("19) Dopisanie losowych rekordów na koniec taśmy");
+        System.out.println("20) Sortowanie przyrostowe (posortowana część taśmy zapisana w manifeście)");
+        System.out.println("21) Rekordy z g() w przedziale [od, do] (indeks bloków posortowanej taśmy)");
+        System.out.println("22) K rekordów o najmniejszym lub największym g() (bez pełnego sortowania)");
+        System.out.println("23) Sortowanie taśmy z redukcją równych kluczy (duplikaty, pierwszy, licznik, min/max pola)");
+        System.out.println("24) Sortowanie taśmy z punktami kontrolnymi (przerwane jest wznawiane od ostatniej fazy)");
+        System.out.println("25) Sortowanie taśmy z podziałem zakresu g() na partycje (wątki albo osobne procesy)");
+        System.out.println("26) Sortowanie taśmy przez zliczanie (mało różnych g(), inaczej przez scalanie)");
         System.out.println("0) Wyjście");
         System.out.print("Wpisz: ");
     }
 
     private static void writeFromKeyboard(Scanner scanner) throws IOException {
-        Tape tape = new Tape(FILENAME, RECORD_SIZE, BLOCK_SIZE);
+        Tape tape = new Tape(FILENAME, recordSize, BLOCK_SIZE);
         tape.reset("rw");
         tape.truncate();
+        TapeManifest.delete(FILENAME);
 
         while (true) {
             try {
@@ -111,34 +199,47 @@ public class Main {
             return;
         }
 
-        Tape tape = new Tape(FILENAME, RECORD_SIZE, BLOCK_SIZE);
+        Tape tape = new Tape(FILENAME, recordSize, BLOCK_SIZE);
         tape.reset("rw");
         tape.truncate();
+        TapeManifest.delete(FILENAME);
 
-        Scanner fileScanner = null;
         int recordsWritten = 0;
-        try {
-            fileScanner = new Scanner(file);
-            while (fileScanner.hasNextInt()) {
-                int a = fileScanner.nextInt();
-                int y = fileScanner.nextInt();
-                int c = fileScanner.nextInt();
-                int z = fileScanner.nextInt();
-                int x = fileScanner.nextInt();
-                tape.writeRecord(new Record(a, y, c, z, x));
+        try (TextRecordReader reader = new TextRecordReader(file.toPath())) {
+            Record record = new Record();
+            while (reader.readRecord(record)) {
+                tape.writeRecord(record);
                 recordsWritten++;
             }
-        } catch (Exception e) {
-            System.err.println("Błąd podczas odczytu pliku");
+        } catch (IOException e) {
+            System.err.println("Błąd podczas odczytu pliku: " + e.getMessage());
         } finally {
-            if (fileScanner != null) {
-                fileScanner.close();
-            }
             tape.close();
         }
         System.out.println(" Zapisano " + recordsWritten + " rekordów.");
     }
 
+    private static void importAndSort(Scanner scanner) throws IOException {
+        System.out.print("Podaj nazwę pliku źródłowego (np. 'data.txt'): ");
+        String sourceFileName = scanner.nextLine();
+        if (!new File(sourceFileName).exists()) {
+            System.err.println("Błąd: Plik " + sourceFileName + " nie znaleziony.");
+            return;
+        }
+        System.out.print("Podaj liczbę wątków (dostępne rdzenie: "
+                + Runtime.getRuntime().availableProcessors() + "): ");
+        int threads = Integer.parseInt(scanner.nextLine());
+        if (threads <= 0) {
+            System.err.println("Liczba musi być > 0.");
+            return;
+        }
+        TapeManifest.delete(FILENAME);
+        TextIngest ingest = new TextIngest(tapeFactory(), threads, 64, 16);
+        SortStats stats = ingest.ingest(sourceFileName, FILENAME, SortListener.NONE);
+        System.out.println("Liczba faz: " + stats.phases() + ", odczyty z dysku: " + stats.diskReads()
+                + ", zapisy na dysk: " + stats.diskWrites());
+    }
+
     private static void generateRandomRecord(Scanner scanner) throws IOException {
         System.out.print("Ile rekordów wygenerować? ");
         int numRecords = Integer.parseInt(scanner.nextLine());
@@ -149,6 +250,21 @@ public class Main {
         generateFile(FILENAME, numRecords);
     }
 
+    private static void appendRandomRecords(Scanner scanner) throws IOException {
+        System.out.print("Ile rekordów dopisać? ");
+        int numRecords = Integer.parseInt(scanner.nextLine());
+        if (numRecords <= 0) {
+            System.err.println("Liczba musi być > 0.");
+            return;
+        }
+        writeRandomRecords(FILENAME, numRecords, true);
+    }
+
+    private static void sortTapeIncremental() throws IOException {
+        ExternalSorter fullSorter = new ParallelExternalSorter(tapeFactory(), 1, 64, 16);
+        sortTape(new IncrementalSorter(tapeFactory(), fullSorter, 64), false);
+    }
+
     private static void readTape(Scanner scanner) throws IOException {
         System.out.print("Pokazać tylko wartości g() (t) czy pełne rekordy (n)? (t/n): ");
         boolean gOnly = scanner.nextLine().trim().equalsIgnoreCase("t");
@@ -157,20 +273,22 @@ public class Main {
 
     private static void displayInfoTape() throws IOException {
         System.out.println("Analiza taśmy " + FILENAME);
-        Tape tape = new Tape(FILENAME, RECORD_SIZE, BLOCK_SIZE);
+        Tape tape = new Tape(FILENAME, recordSize, BLOCK_SIZE);
         tape.reset("r");
 
+        // Całe bloki naraz: klucze i spadki klucza liczone wektorowo, jeśli JVM ma moduł jdk.incubator.vector
+        BlockKernel kernel = BlockKernel.preferred();
+        BlockColumns block = BlockColumns.forBlock(recordSize, BLOCK_SIZE);
+        int[] descents = new int[block.capacity()];
         int recordCount = 0;
         int runCount = 0;
-        Record last = null;
-        Record current;
+        long lastKey = Long.MIN_VALUE;
+        int count;
 
-        while ((current = tape.readRecord()) != null) {
-            recordCount++;
-            if (last != null && current.compareTo(last) < 0) {
-                runCount++;
-            }
-            last = current;
+        while ((count = tape.readBlock(block, kernel)) > 0) {
+            recordCount += count;
+            runCount += kernel.findDescents(block, lastKey, descents);
+            lastKey = block.key(count - 1);
         }
         tape.close();
 
@@ -178,14 +296,283 @@ public class Main {
             runCount++;
         }
 
+        tape.reset("r");
+        long adaptiveRuns = AdaptiveRunGenerator.countRuns(tape);
+        tape.close();
+
         System.out.println("Informacje o taśmie");
         System.out.println("Całkowita liczba rekordów: " + recordCount);
         System.out.println("Całkowita liczba serii (run-ów): " + runCount);
+        System.out.println("Liczba serii z odwróceniem malejących: " + adaptiveRuns);
+        System.out.println("Obliczenia na blokach: kernel " + kernel.name());
         System.out.println("koniec taśmie");
     }
 
     private static void sortTape(boolean showAfter) throws IOException {
-        NaturalMergeSorter sorter = new NaturalMergeSorter(RECORD_SIZE, BLOCK_SIZE);
+        sortTape(new NaturalMergeSorter(tapeFactory(), null), showAfter);
+    }
+
+    private static void sortTapeLargeBuffers(Scanner scanner) throws IOException {
+        System.out.print("Podaj liczbę buforów n: ");
+        int bufferCount = Integer.parseInt(scanner.nextLine());
+        if (bufferCount <= 0) {
+            System.err.println("Liczba musi być > 0.");
+            return;
+        }
+        sortTape(new LargeBufferSorter(tapeFactory(), bufferCount), false);
+    }
+
+    private static void sortTapeKWay(Scanner scanner) throws IOException {
+        System.out.print("Podaj stopień scalania k (np. 8, 16, 64): ");
+        int fanIn = Integer.parseInt(scanner.nextLine());
+        if (fanIn < 2) {
+            System.err.println("Liczba musi być >= 2.");
+            return;
+        }
+        sortTape(new KWayMergeSorter(tapeFactory(), fanIn), false);
+    }
+
+    private static void sortTapePolyphase(Scanner scanner) throws IOException {
+        System.out.print("Podaj liczbę taśm T (>= 3): ");
+        int tapeCount = Integer.parseInt(scanner.nextLine());
+        if (tapeCount < 3) {
+            System.err.println("Liczba musi być >= 3.");
+            return;
+        }
+        sortTape(new PolyphaseMergeSorter(tapeFactory(), tapeCount), false);
+    }
+
+    private static void sortTapeReplacementSelection(Scanner scanner) throws IOException {
+        System.out.print("Podaj liczbę buforów n na kopiec: ");
+        int bufferCount = Integer.parseInt(scanner.nextLine());
+        if (bufferCount <= 0) {
+            System.err.println("Liczba musi być > 0.");
+            return;
+        }
+        int heapCapacity = ChunkRunGenerator.capacityOf(recordSize, BLOCK_SIZE, bufferCount);
+        NaturalMergeSorter sorter = new NaturalMergeSorter(tapeFactory(),
+                new ReplacementSelectionRunGenerator(heapCapacity));
+        sortTape(sorter, false);
+
+        RunStats runs = sorter.getInitialRunStats();
+        System.out.printf("Serie początkowe: %d, długość min %d, średnia %.1f, max %d (kopiec %d rekordów)%n",
+                runs.runs(), runs.minLength(), runs.meanLength(), runs.maxLength(), heapCapacity);
+    }
+
+    private static void sortTapeParallel(Scanner scanner) throws IOException {
+        System.out.print("Podaj liczbę wątków (dostępne rdzenie: "
+                + Runtime.getRuntime().availableProcessors() + "): ");
+        int threads = Integer.parseInt(scanner.nextLine());
+        if (threads <= 0) {
+            System.err.println("Liczba musi być > 0.");
+            return;
+        }
+        sortTape(new ParallelExternalSorter(tapeFactory(), threads, 64, 16), false);
+    }
+
+    private static void sortTapeAdaptive(Scanner scanner) throws IOException {
+        System.out.print("Podaj minimalną długość serii (okno wstawiania): ");
+        int minRun = Integer.parseInt(scanner.nextLine());
+        if (minRun <= 1) {
+            System.err.println("Liczba musi być > 1.");
+            return;
+        }
+        sortTape(new NaturalMergeSorter(tapeFactory(), new AdaptiveRunGenerator(tapeFactory(), minRun, 64)), false);
+    }
+
+    private static void sortTapeTags(Scanner scanner) throws IOException {
+        System.out.print("Podaj liczbę wątków (dostępne rdzenie: "
+                + Runtime.getRuntime().availableProcessors() + "): ");
+        int threads = Integer.parseInt(scanner.nextLine());
+        if (threads <= 0) {
+            System.err.println("Liczba musi być > 0.");
+            return;
+        }
+        sortTape(TagSorter.auto(tapeFactory(), threads, 64, 16), false);
+    }
+
+    private static void queryRange(Scanner scanner) throws IOException {
+        System.out.print("Podaj dolną granicę g(): ");
+        double low = Double.parseDouble(scanner.nextLine().trim());
+        System.out.print("Podaj górną granicę g(): ");
+        double high = Double.parseDouble(scanner.nextLine().trim());
+
+        Tape tape = new Tape(FILENAME, recordSize, BLOCK_SIZE);
+        tape.reset("r");
+        try {
+            if (BlockIndex.read(FILENAME) == null) {
+                System.out.println("Brak aktualnego indeksu bloków - budowanie jednym przebiegiem taśmy");
+                BlockIndex index = BlockIndex.build(tape, BLOCK_SIZE);
+                if (index == null) {
+                    System.err.println("Taśma " + FILENAME + " nie jest posortowana.");
+                    return;
+                }
+                index.write(FILENAME);
+                tape.setIndex(index);
+            }
+            long readsBefore = tape.getDiskReads();
+            long found = tape.rangeScan(low, high, record -> System.out.println(record));
+            System.out.println("Znaleziono " + found + " rekordów, odczytane bloki: "
+                    + (tape.getDiskReads() - readsBefore) + " z " + tape.getIndex().blocks());
+        } finally {
+            tape.close();
+        }
+    }
+
+    private static void selectTopK(Scanner scanner) throws IOException {
+        System.out.print("Ile rekordów wybrać (K)? ");
+        long k = Long.parseLong(scanner.nextLine().trim());
+        if (k <= 0) {
+            System.err.println("Liczba musi być > 0.");
+            return;
+        }
+        System.out.print("Największe (t) czy najmniejsze (n) g()? (t/n): ");
+        boolean largest = scanner.nextLine().trim().equalsIgnoreCase("t");
+
+        TopKSelector selector = new TopKSelector(tapeFactory(), 64, 16);
+        SortedIterator selected = selector.iterate(FILENAME, k, largest, SortListener.NONE);
+        try (selected) {
+            Record record = new Record();
+            int count = 0;
+            while (selected.next(record)) {
+                count++;
+                System.out.println(count + ": " + record);
+            }
+        }
+        // Statystyki są gotowe po close()
+        SortStats stats = selected.getStats();
+        System.out.println("Liczba faz: " + stats.phases() + ", odczyty z dysku: " + stats.diskReads()
+                + ", zapisy na dysk: " + stats.diskWrites());
+    }
+
+    private static void sortTapeReduced(Scanner scanner) throws IOException {
+        System.out.print("Redukcja (DISTINCT, FIRST, COUNT, MIN, MAX): ");
+        MergeReducer reducer;
+        try {
+            MergeReducer.Mode mode = MergeReducer.Mode.valueOf(scanner.nextLine().trim().toUpperCase());
+            if (mode == MergeReducer.Mode.MIN || mode == MergeReducer.Mode.MAX) {
+                System.out.print("Pole (a, y, c, z, x): ");
+                int field = "ayczx".indexOf(scanner.nextLine().trim().toLowerCase());
+                if (field < 0) {
+                    System.err.println("Nieznane pole");
+                    return;
+                }
+                reducer = (mode == MergeReducer.Mode.MIN) ? MergeReducer.min(field) : MergeReducer.max(field);
+            } else if (mode == MergeReducer.Mode.COUNT) {
+                reducer = MergeReducer.count();
+                reducer.checkRecordSize(recordSize);
+            } else {
+                reducer = (mode == MergeReducer.Mode.FIRST) ? MergeReducer.first() : MergeReducer.distinct();
+            }
+        } catch (IllegalArgumentException e) {
+            System.err.println("Nieznana redukcja lub zły rozmiar rekordu: " + e.getMessage());
+            return;
+        }
+        sortTape(new NaturalMergeSorter(tapeFactory(), null, reducer), false);
+    }
+
+    private static void sortTapeCheckpointed() throws IOException {
+        SortCheckpoint checkpoint = SortCheckpoint.read(FILENAME);
+        if (checkpoint != null) {
+            System.out.println("Znaleziono punkt kontrolny po fazie " + checkpoint.phase() + " (" + checkpoint.stage() + ")");
+        }
+        sortTape(new NaturalMergeSorter(tapeFactory(), null, null, true), false);
+    }
+
+    private static void sortTapePartitioned(Scanner scanner) throws IOException {
+        System.out.print("Podaj liczbę partycji: ");
+        int partitions = Integer.parseInt(scanner.nextLine());
+        System.out.print("Podaj liczbę partycji sortowanych naraz (dostępne rdzenie: "
+                + Runtime.getRuntime().availableProcessors() + "): ");
+        int workers = Integer.parseInt(scanner.nextLine());
+        if (partitions <= 0 || workers <= 0) {
+            System.err.println("Liczba musi być > 0.");
+            return;
+        }
+        System.out.print("Sortować partycje w osobnych procesach JVM? (t/n): ");
+        boolean processes = scanner.nextLine().trim().equalsIgnoreCase("t");
+        PartitionedSorter sorter = new PartitionedSorter(tapeFactory(), partitions, workers, processes, 64);
+        sortTape(sorter, false);
+        System.out.printf("Nierównomierność partycji: %.2f (największa / średnia)%n", sorter.getSkew());
+    }
+
+    private static void sortTapeCounting(Scanner scanner) throws IOException {
+        System.out.print("Podaj największą liczbę różnych kluczy g() w histogramie: ");
+        int maxKeys = Integer.parseInt(scanner.nextLine());
+        if (maxKeys <= 0) {
+            System.err.println("Liczba musi być > 0.");
+            return;
+        }
+        CountingSorter sorter = new CountingSorter(tapeFactory(), new NaturalMergeSorter(tapeFactory(), null),
+                64, maxKeys);
+        sortTape(sorter, false);
+        if (!sorter.fellBack()) {
+            System.out.println("Różnych kluczy: " + sorter.getDistinctKeys() + ", kubełków: " + sorter.getBuckets());
+        }
+    }
+
+    private static void chooseRecordSize(Scanner scanner) {
+        System.out.print("Rozmiar rekordu w bajtach (min " + Record.RECORD_SIZE + ", reszta to dane dodatkowe): ");
+        try {
+            int size = Integer.parseInt(scanner.nextLine().trim());
+            if (size < Record.RECORD_SIZE) {
+                System.err.println("Rozmiar musi być >= " + Record.RECORD_SIZE + ".");
+                return;
+            }
+            recordSize = size;
+            System.out.println("Wybrano rozmiar rekordu " + recordSize + " B (dotyczy nowo zapisanych plików)");
+        } catch (NumberFormatException e) {
+            System.err.println("Błędny format");
+        }
+    }
+
+    private static void chooseStorageType(Scanner scanner) {
+        System.out.print("Backend taśm (RAF, CHANNEL, MMAP): ");
+        try {
+            storageType = StorageType.valueOf(scanner.nextLine().trim().toUpperCase());
+            System.out.print("Głębokość kolejki odczytu/zapisu w tle (0 = synchronicznie): ");
+            asyncDepth = Math.max(0, Integer.parseInt(scanner.nextLine().trim()));
+            System.out.print("Układ rekordów na taśmach pomocniczych (PLAIN, KEYED, COMPRESSED): ");
+            scratchLayout = RecordLayout.valueOf(scanner.nextLine().trim().toUpperCase());
+            System.out.print("Zapisywać indeks bloków posortowanej taśmy? (t/n): ");
+            blockIndex = scanner.nextLine().trim().equalsIgnoreCase("t");
+            System.out.print("Katalogi na taśmy pomocnicze, np. na różnych dyskach (po przecinku, puste = bieżący): ");
+            String directories = scanner.nextLine().trim();
+            scratchSpace = directories.isEmpty() ? ScratchSpace.workingDirectory() : ScratchSpace.parse(directories);
+            System.out.println("Wybrano backend " + storageType + ", kolejka " + asyncDepth + ", układ " + scratchLayout
+                    + (blockIndex ? ", z indeksem bloków" : "") + ", taśmy pomocnicze w " + scratchSpace);
+        } catch (IllegalArgumentException e) {
+            System.err.println("Nieznany backend lub błędny format");
+        } catch (IOException e) {
+            System.err.println("Nie można utworzyć katalogu: " + e.getMessage());
+        }
+    }
+
+    private static void printSorted() throws IOException {
+        StreamingSorter sorter = new StreamingSorter(tapeFactory(), 64, 16);
+        SortStats stats;
+        try (InputStream in = new FileInputStream(FILENAME)) {
+            SortedIterator sorted = sorter.sort(in);
+            try (sorted) {
+                Record record = new Record();
+                int count = 0;
+                while (sorted.next(record)) {
+                    count++;
+                    System.out.println(count + ": " + record);
+                }
+            }
+            // Statystyki są gotowe po close()
+            stats = sorted.getStats();
+        }
+        System.out.println("Liczba faz: " + stats.phases() + ", odczyty z dysku: " + stats.diskReads()
+                + ", zapisy na dysk: " + stats.diskWrites());
+    }
+
+    private static TapeFactory tapeFactory() {
+        return new TapeFactory(recordSize, BLOCK_SIZE, storageType, asyncDepth, scratchLayout, blockIndex, scratchSpace);
+    }
+
+    private static void sortTape(ExternalSorter sorter, boolean showAfter) throws IOException {
         SortStats stats = sorter.sort(FILENAME);
 
         System.out.println("\nSortowanie zakończone");
@@ -193,6 +580,16 @@ public class Main {
         System.out.println("Liczba faz: " + stats.phases());
         System.out.println("Całkowita liczba odczytów z dysku: " + stats.diskReads());
         System.out.println("Całkowita liczba zapisów na dysk: " + stats.diskWrites());
+        for (PhaseStats phase : stats.phaseDetails()) {
+            System.out.println("  Faza " + phase.phase() + ": k = " + phase.fanIn()
+                    + ", serie = " + phase.runs() + ", rekordy = " + phase.records()
+                    + ", odczyty = " + phase.diskReads() + ", zapisy = " + phase.diskWrites()
+                    + ", bajty zapisane = " + phase.bytesWritten() + " (bez kompresji " + phase.logicalBytesWritten() + ")"
+                    + ", porównania = " + phase.comparisons()
+                    + (phase.recordsEliminated() > 0 ? ", usunięte = " + phase.recordsEliminated() : "")
+                    + ", czas = " + phase.durationMs() + " ms (CPU " + phase.cpuMs()
+                    + " ms, oczekiwanie na I/O " + phase.ioWaitMs() + " ms)");
+        }
 
         if (showAfter) {
             System.out.println("\n Wynik sortowania (" + FILENAME + ")");
@@ -201,12 +598,24 @@ public class Main {
     }
 
     public static void generateFile(String filename, int numRecords) throws IOException {
-        System.out.println("Generowanie pliku: " + filename + " z " + numRecords + " rekordami");
-        Tape tape = new Tape(filename, RECORD_SIZE, BLOCK_SIZE);
+        writeRandomRecords(filename, numRecords, false);
+    }
+
+    // Przy append rekordy są dopisywane na koniec taśmy; manifest zostaje, więc sortowanie przyrostowe je znajdzie
+    private static void writeRandomRecords(String filename, int numRecords, boolean append) throws IOException {
+        System.out.println((append ? "Dopisywanie do pliku: " : "Generowanie pliku: ") + filename
+                + " z " + numRecords + " rekordami");
+        Tape tape = new Tape(filename, recordSize, BLOCK_SIZE);
         tape.reset("rw");
-        tape.truncate();
+        if (append) {
+            tape.seek(tape.length());
+        } else {
+            tape.truncate();
+            TapeManifest.delete(filename);
+        }
 
         Random rand = new Random();
+        byte[] payload = new byte[recordSize - Record.RECORD_SIZE];
 
         for (int i = 0; i < numRecords; i++) {
             int a = rand.nextInt(10) + 1;
@@ -215,7 +624,12 @@ public class Main {
             int z = rand.nextInt(5) + 1;
             int x = rand.nextInt(20) + 1;
 
-            tape.writeRecord(new Record(a, y, c, z, x));
+            Record record = new Record(a, y, c, z, x);
+            if (payload.length > 0) {
+                rand.nextBytes(payload);
+                record.setPayload(payload, 0, payload.length);
+            }
+            tape.writeRecord(record);
         }
 
         tape.close();
@@ -223,13 +637,13 @@ public class Main {
     }
     public static void printFile(String filename, boolean printGValueOnly) throws IOException {
         System.out.println("\nZawartość pliku: " + filename );
-        Tape tape = new Tape(filename, RECORD_SIZE, BLOCK_SIZE);
+        Tape tape = new Tape(filename, recordSize, BLOCK_SIZE);
         tape.reset("r");
 
-        Record record;
+        Record record = new Record();
         int count = 0;
 
-        while ((record = tape.readRecord()) != null) {
+        while (tape.readRecord(record)) {
             if (printGValueOnly) {
                 System.out.printf("Rekord %d: g() = %.2f\n", count, record.getGValue());
             } else {
@@ -0,0 +1,52 @@
+package org.example;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+// Odczyt przez okna MappedByteBuffer (fazy tylko do odczytu); zapis jak w ChannelStorage.
+class MappedStorage extends ChannelStorage {
+
+    private static final long WINDOW_SIZE = 64L * 1024 * 1024;
+
+    private final boolean readOnly;
+    private MappedByteBuffer window;
+    private long windowStart = 0;
+    private long position = 0;
+
+    MappedStorage(String fileName, String mode) throws IOException {
+        super(fileName, mode);
+        this.readOnly = mode.equals("r");
+    }
+
+    @Override
+    public int read(ByteBuffer dst) throws IOException {
+        if (!readOnly) {
+            return super.read(dst);
+        }
+
+        long size = channel.size();
+        if (position >= size) {
+            return -1;
+        }
+
+        if (window == null || position < windowStart || position >= windowStart + window.capacity()) {
+            windowStart = position;
+            window = channel.map(FileChannel.MapMode.READ_ONLY, windowStart,
+                    Math.min(WINDOW_SIZE, size - windowStart));
+        }
+
+        int offset = (int) (position - windowStart);
+        int length = Math.min(dst.remaining(), window.capacity() - offset);
+        dst.put(window.slice(offset, length));
+        position += length;
+        return length;
+    }
+
+    @Override
+    public void seek(long position) throws IOException {
+        super.seek(position);
+        this.position = position;
+    }
+}
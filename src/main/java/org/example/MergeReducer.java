@@ -0,0 +1,270 @@
+package org.example;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+// Redukcja rekordów o równym kluczu przy zapisie serii: w serii równe klucze leżą obok siebie,
+// więc wystarcza pamiętać bieżącą grupę. Dołączony do taśmy (Tape.setReducer) działa przy tworzeniu
+// serii i w każdym scalaniu, więc dane maleją z każdą fazą.
+public final class MergeReducer {
+
+    public enum Mode {
+        // Usuwa dokładne kopie (te same pola i dane dodatkowe)
+        DISTINCT,
+        // Zostawia pierwszy rekord z każdym kluczem
+        FIRST,
+        // Jeden rekord na klucz z licznikiem w pierwszych 8 bajtach danych dodatkowych
+        COUNT,
+        // Z rekordów o równym kluczu zostaje ten z najmniejszą / największą wartością pola
+        MIN,
+        MAX
+    }
+
+    // Numeracja pól jak w Record.getFields: a, y, c, z, x
+    public static final int FIELD_A = 0;
+    public static final int FIELD_Y = 1;
+    public static final int FIELD_C = 2;
+    public static final int FIELD_Z = 3;
+    public static final int FIELD_X = 4;
+
+    static final int COUNT_BYTES = Long.BYTES;
+
+    private final Mode mode;
+    private final int field;
+
+    private MergeReducer(Mode mode, int field) {
+        if (field < 0 || field > FIELD_X) {
+            throw new IllegalArgumentException("Nieznane pole " + field);
+        }
+        this.mode = mode;
+        this.field = field;
+    }
+
+    public static MergeReducer distinct() {
+        return new MergeReducer(Mode.DISTINCT, 0);
+    }
+
+    public static MergeReducer first() {
+        return new MergeReducer(Mode.FIRST, 0);
+    }
+
+    public static MergeReducer count() {
+        return new MergeReducer(Mode.COUNT, 0);
+    }
+
+    public static MergeReducer min(int field) {
+        return new MergeReducer(Mode.MIN, field);
+    }
+
+    public static MergeReducer max(int field) {
+        return new MergeReducer(Mode.MAX, field);
+    }
+
+    public Mode getMode() {
+        return mode;
+    }
+
+    public int getField() {
+        return field;
+    }
+
+    // Licznik agregatu COUNT zapisany w danych dodatkowych rekordu
+    public static long countOf(Record record) {
+        return record.getPayloadLong();
+    }
+
+    @Override
+    public String toString() {
+        return (mode == Mode.MIN || mode == Mode.MAX) ? mode + "(" + "ayczx".charAt(field) + ")"
+                : mode.toString();
+    }
+
+    // raw = true: rekordy prosto z wejścia, które nie mają jeszcze licznika COUNT
+    Writer writer(Tape out, boolean raw) {
+        checkRecordSize(Record.RECORD_SIZE + out.getPayloadSize());
+        return new Writer(out, raw);
+    }
+
+    public void checkRecordSize(int recordSize) {
+        if (mode == Mode.COUNT && recordSize < Record.RECORD_SIZE + COUNT_BYTES) {
+            throw new IllegalArgumentException("Redukcja COUNT wymaga rekordu z co najmniej " + COUNT_BYTES
+                    + " B danych dodatkowych (rozmiar rekordu >= " + (Record.RECORD_SIZE + COUNT_BYTES) + ")");
+        }
+    }
+
+    // Stan redukcji jednej taśmy; rekord grupy czeka, aż pojawi się inny klucz albo flush()
+    final class Writer {
+        private final Tape out;
+        private final boolean raw;
+        private final Record pending = new Record();
+        private boolean hasPending = false;
+        private final GroupSet seen;
+        private final int[] fields = new int[5];
+        private long groupCount = 0;
+        private int best = 0;
+        private long eliminated = 0;
+
+        private Writer(Tape out, boolean raw) {
+            this.out = out;
+            this.raw = raw;
+            this.seen = (mode == Mode.DISTINCT) ? new GroupSet(Record.RECORD_SIZE + out.getPayloadSize()) : null;
+        }
+
+        long getEliminated() {
+            return eliminated;
+        }
+
+        void write(Record record) throws IOException {
+            boolean sameKey = hasPending && record.getSortKey() == pending.getSortKey();
+            switch (mode) {
+                case DISTINCT -> {
+                    if (!sameKey) {
+                        seen.clear();
+                        pending.copyFieldsFrom(record);
+                        hasPending = true;
+                    }
+                    if (seen.add(record)) {
+                        out.writeDirect(record);
+                    } else {
+                        eliminated++;
+                    }
+                }
+                case FIRST -> {
+                    if (sameKey) {
+                        eliminated++;
+                    } else {
+                        pending.copyFieldsFrom(record);
+                        hasPending = true;
+                        out.writeDirect(record);
+                    }
+                }
+                case COUNT -> {
+                    long count = raw ? 1 : countOf(record);
+                    if (sameKey) {
+                        groupCount += count;
+                        eliminated++;
+                    } else {
+                        flush();
+                        pending.copyFrom(record);
+                        groupCount = count;
+                        hasPending = true;
+                    }
+                }
+                case MIN, MAX -> {
+                    record.getFields(fields);
+                    int value = fields[field];
+                    if (sameKey) {
+                        eliminated++;
+                        if ((mode == Mode.MIN) ? value < best : value > best) {
+                            pending.copyFrom(record);
+                            best = value;
+                        }
+                    } else {
+                        flush();
+                        pending.copyFrom(record);
+                        best = value;
+                        hasPending = true;
+                    }
+                }
+            }
+        }
+
+        // Zapisuje czekający agregat (COUNT, MIN, MAX); następny rekord zaczyna nową grupę.
+        // DISTINCT i FIRST zapisują od razu, więc pamiętają tylko klucz grupy.
+        void flush() throws IOException {
+            if (!hasPending || mode == Mode.DISTINCT || mode == Mode.FIRST) {
+                return;
+            }
+            if (mode == Mode.COUNT) {
+                pending.setPayloadLong(groupCount);
+            }
+            out.writeDirect(pending);
+            hasPending = false;
+        }
+
+        // Taśma zapisywana od nowa
+        void reset() {
+            hasPending = false;
+            if (seen != null) {
+                seen.clear();
+            }
+        }
+    }
+
+    // Różne rekordy bieżącej grupy DISTINCT (pola i dane dodatkowe) zakodowane jeden za drugim w jednej
+    // tablicy, z tablicą haszującą numerów rekordów. Bez alokacji na rekord: tablice rosną tylko dla
+    // największej dotąd grupy, a clear() zeruje wyłącznie zajęte miejsca.
+    private static final class GroupSet {
+        private final int recordSize;
+        private byte[] bytes;
+        private ByteBuffer buffer;
+        private int[] table = new int[16];
+        private int[] slotOf = new int[8];
+        private int size = 0;
+
+        private GroupSet(int recordSize) {
+            this.recordSize = recordSize;
+            this.bytes = new byte[8 * recordSize];
+            this.buffer = ByteBuffer.wrap(bytes);
+        }
+
+        // false, gdy taki sam rekord już jest w grupie
+        boolean add(Record record) {
+            if ((size + 1) * recordSize > bytes.length) {
+                bytes = Arrays.copyOf(bytes, 2 * bytes.length);
+                buffer = ByteBuffer.wrap(bytes);
+                slotOf = Arrays.copyOf(slotOf, 2 * slotOf.length);
+            }
+            int offset = size * recordSize;
+            record.encode(buffer, offset);
+            if (recordSize > Record.RECORD_SIZE) {
+                record.encodePayload(buffer, offset + Record.RECORD_SIZE, recordSize - Record.RECORD_SIZE);
+            }
+
+            int mask = table.length - 1;
+            int slot = hashOf(offset) & mask;
+            while (table[slot] != 0) {
+                int other = (table[slot] - 1) * recordSize;
+                if (Arrays.equals(bytes, offset, offset + recordSize, bytes, other, other + recordSize)) {
+                    return false;
+                }
+                slot = (slot + 1) & mask;
+            }
+            table[slot] = size + 1;
+            slotOf[size++] = slot;
+            if (2 * size > table.length) {
+                rehash(2 * table.length);
+            }
+            return true;
+        }
+
+        void clear() {
+            for (int i = 0; i < size; i++) {
+                table[slotOf[i]] = 0;
+            }
+            size = 0;
+        }
+
+        private void rehash(int capacity) {
+            table = new int[capacity];
+            int mask = capacity - 1;
+            for (int i = 0; i < size; i++) {
+                int slot = hashOf(i * recordSize) & mask;
+                while (table[slot] != 0) {
+                    slot = (slot + 1) & mask;
+                }
+                table[slot] = i + 1;
+                slotOf[i] = slot;
+            }
+        }
+
+        private int hashOf(int offset) {
+            int hash = 1;
+            for (int i = offset; i < offset + recordSize; i++) {
+                hash = 31 * hash + bytes[i];
+            }
+            return hash ^ (hash >>> 16);
+        }
+    }
+}
@@ -1,149 +1,393 @@
 package org.example;
 
 import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.List;
 
-public class NaturalMergeSorter {
+public class NaturalMergeSorter implements ExternalSorter {
 
-    private final int recordSize;
-    private final int blockSize;
+    private final TapeFactory tapes;
+    private final RunGenerator runGenerator;
+    private final MergeReducer reducer;
+    private final boolean checkpointed;
 
-    private long totalReads = 0;
-    private long totalWrites = 0;
-    private int phases = 0;
+    private RunStats initialRunStats = null;
+    private long recordsMoved = 0;
+    private long comparisons = 0;
 
     public NaturalMergeSorter(int recordSize, int blockSize) {
-        this.recordSize = recordSize;
-        this.blockSize = blockSize;
+        this(recordSize, blockSize, null);
     }
 
-    public SortStats sort(String inputFileName) throws IOException {
-        String TAPE_A = inputFileName;
-        String TAPE_B = "tape_b.bin";
-        String TAPE_C = "tape_c.bin";
+    public NaturalMergeSorter(int recordSize, int blockSize, RunGenerator runGenerator) {
+        this(new TapeFactory(recordSize, blockSize), runGenerator);
+    }
 
-        Tape tapeA = new Tape(TAPE_A, recordSize, blockSize);
-        Tape tapeB = new Tape(TAPE_B, recordSize, blockSize);
-        Tape tapeC = new Tape(TAPE_C, recordSize, blockSize);
+    public NaturalMergeSorter(TapeFactory tapes, RunGenerator runGenerator) {
+        this(tapes, runGenerator, null);
+    }
+
+    // reducer (może być null) redukuje równe klucze przy każdym zapisie serii: w dystrybucji i scalaniu
+    public NaturalMergeSorter(TapeFactory tapes, RunGenerator runGenerator, MergeReducer reducer) {
+        this(tapes, runGenerator, reducer, false);
+    }
+
+    // checkpointed = true: po każdej dystrybucji i scaleniu zapisywany jest punkt kontrolny <wejście>.checkpoint,
+    // a wynik scalania zastępuje wejście dopiero w całości; przerwane sortowanie jest wtedy kontynuowane
+    // od ostatniej zakończonej części fazy
+    public NaturalMergeSorter(TapeFactory tapes, RunGenerator runGenerator, MergeReducer reducer,
+                              boolean checkpointed) {
+        if (reducer != null) {
+            reducer.checkRecordSize(tapes.getRecordSize());
+        }
+        this.tapes = tapes;
+        this.runGenerator = runGenerator;
+        this.reducer = reducer;
+        this.checkpointed = checkpointed;
+    }
+
+    public RunStats getInitialRunStats() {
+        return initialRunStats;
+    }
+
+    @Override
+    public SortStats sort(String inputFileName, SortListener listener) throws IOException {
+        String TAPE_A = inputFileName;
+        String TAPE_NEXT = inputFileName + ".next.bin";
+
+        Tape tapeA = tapes.open(TAPE_A);
+        // B i C na różnych katalogach pomocniczych; z punktami kontrolnymi mają stałe nazwy od wejścia,
+        // bo wznowienie musi je odnaleźć, a po awarii zostają na dysku
+        Tape tapeB;
+        Tape tapeC;
+        if (checkpointed) {
+            String inputName = Path.of(inputFileName).getFileName().toString();
+            tapeB = tapes.openScratch(tapes.getScratch().place(inputName + ".b.bin", 0));
+            tapeC = tapes.openScratch(tapes.getScratch().place(inputName + ".c.bin", 1));
+        } else {
+            tapeB = tapes.createScratch("tape_b", 0);
+            tapeC = tapes.createScratch("tape_c", 1);
+        }
+        // Scalanie z punktami kontrolnymi idzie do nowego pliku, który dopiero po zapisaniu zastępuje wejście
+        Tape out = checkpointed ? tapes.open(TAPE_NEXT) : tapeA;
+        PhaseTracker tracker = checkpointed ? new PhaseTracker(listener, tapeA, tapeB, tapeC, out)
+                : new PhaseTracker(listener, tapeA, tapeB, tapeC);
 
         System.out.println("Rozpoczęto sortowanie pliku: " + inputFileName);
         long startTime = System.currentTimeMillis();
 
-        totalReads = 0;
-        totalWrites = 0;
-        phases = 0;
+        int phases = 0;
+        try {
+            initialRunStats = null;
+
+            SortCheckpoint.TapeState input = null;
+            SortCheckpoint resumed = null;
+            if (checkpointed) {
+                tapeB.enableChecksum();
+                tapeC.enableChecksum();
+                out.enableChecksum();
+                resumed = restore(inputFileName, TAPE_NEXT, List.of(tapeB.getFileName(), tapeC.getFileName()));
+                if (resumed != null) {
+                    phases = (resumed.stage() == SortCheckpoint.Stage.DISTRIBUTED)
+                            ? resumed.phase() - 1 : resumed.phase();
+                    input = resumed.tapes().get(0).renamed(inputFileName);
+                    System.out.println("Wznowiono sortowanie po fazie " + resumed.phase()
+                            + " (" + resumed.stage() + ")");
+                } else {
+                    input = SortCheckpoint.TapeState.capture(inputFileName, -1);
+                }
+            }
 
-        while (true) {
-            phases++;
-            System.out.println("Faza " + phases + ": Dystrybucja");
+            // Liczniki taśm rosną od ich utworzenia, więc odczyty i zapisy fazy to przyrosty z PhaseTracker
+            while (true) {
+                phases++;
+                tracker.begin(phases);
+                recordsMoved = 0;
+                comparisons = 0;
+
+                int distributedRuns;
+                if (resumed != null && resumed.stage() == SortCheckpoint.Stage.DISTRIBUTED) {
+                    // Serie tej fazy są już na B i C
+                    distributedRuns = (int) resumed.runs();
+                    resumed = null;
+                } else {
+                    System.out.println("Faza " + phases + ": Dystrybucja");
+                    tapeA.reset("r");
+                    tapeB.reset("rw");
+                    tapeC.reset("rw");
+                    tapeB.truncate();
+                    tapeC.truncate();
+                    // W pierwszej fazie rekordy idą prosto z wejścia, więc nie mają jeszcze agregatów
+                    tapeB.setReducer(reducer, phases == 1);
+                    tapeC.setReducer(reducer, phases == 1);
+                    long eliminatedBefore = tapeB.getRecordsEliminated() + tapeC.getRecordsEliminated();
+
+                    distributedRuns = (phases == 1)
+                            ? formInitialRuns(tapeA, tapeB, tapeC)
+                            : distribute(tapeA, tapeB, tapeC);
+
+                    tapeA.close();
+                    tapeB.close();
+                    tapeC.close();
+
+                    System.out.println("Rozdzielono " + distributedRuns + " serii.");
+
+                    // Serie z generatora leżą na taśmach B/C, więc nawet jedną trzeba scalić z powrotem na A;
+                    // tak samo serię, z której redukcja usunęła rekordy,
+                    // i wejście, któremu COUNT musi wpisać liczniki
+                    boolean runsFromGenerator = (phases == 1 && runGenerator != null);
+                    boolean reduced = tapeB.getRecordsEliminated() + tapeC.getRecordsEliminated() > eliminatedBefore
+                            || (phases == 1 && reducer != null && reducer.getMode() == MergeReducer.Mode.COUNT);
+                    if (distributedRuns <= 1 && !runsFromGenerator && !reduced) {
+                        tracker.end(phases, 0, distributedRuns, recordsMoved, comparisons);
+                        break;
+                    }
+
+                    if (checkpointed) {
+                        new SortCheckpoint(tapes.getRecordSize(), phases, SortCheckpoint.Stage.DISTRIBUTED,
+                                distributedRuns, List.of(input, stateOf(tapeB), stateOf(tapeC))).write(inputFileName);
+                    }
+                }
 
-            tapeA.reset("r");
-            tapeB.reset("rw");
-            tapeC.reset("rw");
-            tapeB.truncate();
-            tapeC.truncate();
+                System.out.println("Faza " + phases + ": Scalanie");
 
-            int distributedRuns = distribute(tapeA, tapeB, tapeC);
+                out.reset("rw");
+                tapeB.reset("r");
+                tapeC.reset("r");
+                out.truncate();
+                out.setReducer(reducer, false);
 
-            totalReads += tapeA.getDiskReads() + tapeB.getDiskReads() + tapeC.getDiskReads();
-            totalWrites += tapeA.getDiskWrites() + tapeB.getDiskWrites() + tapeC.getDiskWrites();
+                int mergedRuns = merge(out, tapeB, tapeC);
 
-            tapeA.close();
-            tapeB.close();
-            tapeC.close();
+                out.close();
+                tapeB.close();
+                tapeC.close();
 
-            System.out.println("Rozdzielono " + distributedRuns + " serii.");
+                if (checkpointed) {
+                    SortCheckpoint.TapeState result = stateOf(out);
+                    new SortCheckpoint(tapes.getRecordSize(), phases, SortCheckpoint.Stage.MERGED,
+                            mergedRuns, List.of(result)).write(inputFileName);
+                    replaceInput(TAPE_NEXT, inputFileName);
+                    input = result.renamed(inputFileName);
+                }
+                tracker.end(phases, 2, distributedRuns, recordsMoved, comparisons);
 
-            if (distributedRuns <= 1) {
-                break;
+                if ((runGenerator != null && mergedRuns <= 1) || distributedRuns <= 1) {
+                    break;
+                }
             }
 
-            System.out.println("Faza " + phases + ": Scalanie");
+            if (checkpointed) {
+                SortCheckpoint.delete(inputFileName);
+                tapes.deleteScratch(tapeB);
+                tapes.deleteScratch(tapeC);
+                Files.deleteIfExists(Path.of(TAPE_NEXT));
+            }
+        } finally {
+            // Bez punktów kontrolnych taśmy pomocnicze są usuwane także po błędzie
+            if (!checkpointed) {
+                tapes.deleteScratch(tapeB);
+                tapes.deleteScratch(tapeC);
+            }
+        }
 
-            tapeA.reset("rw");
-            tapeB.reset("r");
-            tapeC.reset("r");
-            tapeA.truncate();
+        long endTime = System.currentTimeMillis();
 
-            merge(tapeA, tapeB, tapeC);
+        return new SortStats(phases, tracker.getTotalReads(), tracker.getTotalWrites(),
+                (endTime - startTime), tracker.getPhases());
+    }
 
-            totalReads += tapeA.getDiskReads() + tapeB.getDiskReads() + tapeC.getDiskReads();
-            totalWrites += tapeA.getDiskWrites() + tapeB.getDiskWrites() + tapeC.getDiskWrites();
+    // Punkt kontrolny, od którego sortowanie może być kontynuowane, albo null (sortowanie od początku).
+    // Kończy przerwaną zamianę wejścia na wynik scalania; taśmy pomocnicze niezgodne z zapisanym stanem
+    // oznaczają powtórzenie dystrybucji tej fazy.
+    private SortCheckpoint restore(String inputFileName, String nextFileName, List<String> scratchFiles)
+            throws IOException {
+        SortCheckpoint checkpoint = SortCheckpoint.read(inputFileName);
+        if (checkpoint == null) {
+            return null;
+        }
+        if (checkpoint.recordSize() != tapes.getRecordSize()) {
+            System.out.println("Punkt kontrolny dla rekordów " + checkpoint.recordSize() + " B - pełne sortowanie");
+            SortCheckpoint.delete(inputFileName);
+            return null;
+        }
 
-            tapeA.close();
-            tapeB.close();
-            tapeC.close();
+        SortCheckpoint.TapeState first = checkpoint.tapes().get(0);
+        if (checkpoint.stage() == SortCheckpoint.Stage.MERGED) {
+            if (first.matches()) {
+                replaceInput(nextFileName, inputFileName);
+                return checkpoint;
+            }
+            if (first.renamed(inputFileName).matches()) {
+                return checkpoint;
+            }
+        } else if (first.matches()) {
+            for (int i = 1; i < checkpoint.tapes().size(); i++) {
+                SortCheckpoint.TapeState scratch = checkpoint.tapes().get(i);
+                if (!scratch.fileName().equals(scratchFiles.get(i - 1)) || !scratch.matches()) {
+                    System.out.println("Taśma " + scratch.fileName() + " niezgodna z punktem kontrolnym"
+                            + " - powtórzenie fazy " + checkpoint.phase());
+                    return new SortCheckpoint(checkpoint.recordSize(), checkpoint.phase() - 1,
+                            SortCheckpoint.Stage.MERGED, 0, List.of(first));
+                }
+            }
+            return checkpoint;
         }
+        System.out.println("Taśma " + inputFileName + " zmieniona po punkcie kontrolnym - pełne sortowanie");
+        SortCheckpoint.delete(inputFileName);
+        return null;
+    }
 
-        long endTime = System.currentTimeMillis();
+    private static SortCheckpoint.TapeState stateOf(Tape tape) throws IOException {
+        SortCheckpoint.force(tape.getFileName());
+        return SortCheckpoint.TapeState.capture(tape.getFileName(), tape.getChecksum());
+    }
 
-        /*System.out.println("\nSortowanie zakończone");
-        System.out.println("Całkowity czas: " + (endTime - startTime) + " ms");
-        System.out.println("Liczba faz: " + phases);
-        System.out.println("Całkowita liczba odczytów z dysku: " + totalReads);
-        System.out.println("Całkowita liczba zapisów na dysk: " + totalWrites);*/
+    // Atomowa zamiana: wejście ma zawsze albo stan sprzed scalania, albo cały wynik
+    private static void replaceInput(String nextFileName, String inputFileName) throws IOException {
+        Files.move(Path.of(nextFileName), Path.of(inputFileName),
+                StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        BlockIndex.move(nextFileName, inputFileName);
+    }
 
-        return new SortStats(phases, totalReads, totalWrites, (endTime - startTime));
+    private int formInitialRuns(Tape in, Tape out1, Tape out2) throws IOException {
+        if (runGenerator == null) {
+            return distribute(in, out1, out2);
+        }
+
+        initialRunStats = runGenerator.generate(in, new Tape[] { out1, out2 });
+        recordsMoved += initialRunStats.records();
+        comparisons += initialRunStats.comparisons();
+        System.out.printf("Serie początkowe: %d (min %d, średnio %.1f, max %d)%n",
+                initialRunStats.runs(), initialRunStats.minLength(),
+                initialRunStats.meanLength(), initialRunStats.maxLength());
+        return (int) initialRunStats.runs();
     }
 
     private int distribute(Tape in, Tape out1, Tape out2) throws IOException {
         int runCount = 0;
-        Record lastRecord = null;
-        Record currentRecord;
+        Record currentRecord = new Record();
+        Record lastRecord = new Record();
+        boolean hasLast = false;
         Tape currentOutput = out1;
 
-        while ((currentRecord = in.readRecord()) != null) {
-            if (lastRecord != null && currentRecord.compareTo(lastRecord) < 0) {
+        // transferTo omija bufor zapisu, więc taśma nie policzyłaby sumy kontrolnej punktu kontrolnego
+        boolean zeroCopy = !checkpointed && out1.canTransferFrom(in) && out2.canTransferFrom(in);
+        int blockRecords = Math.max(1, tapes.getBlockSize() / in.getRecordSize());
+        long runLength = 0;
+        long pendingFrom = -1;
+
+        while (true) {
+            long offset = in.getReadOffset();
+            if (!in.readRecord(currentRecord)) {
+                if (pendingFrom >= 0) {
+                    currentOutput.transferFrom(in, pendingFrom, offset - pendingFrom);
+                }
+                break;
+            }
+            recordsMoved++;
+
+            if (hasLast) {
+                comparisons++;
+            }
+            if (hasLast && currentRecord.compareTo(lastRecord) < 0) {
+                if (pendingFrom >= 0) {
+                    currentOutput.transferFrom(in, pendingFrom, offset - pendingFrom);
+                    pendingFrom = -1;
+                }
                 currentOutput = (currentOutput == out1) ? out2 : out1;
                 runCount++;
+                runLength = 0;
+            }
+
+            // Dłuższą niż blok serię przepisujemy bez zmian przez transferTo, bez kopiowania przez bufor
+            if (zeroCopy && runLength >= blockRecords) {
+                if (pendingFrom < 0) {
+                    pendingFrom = offset;
+                }
+            } else {
+                currentOutput.writeRecord(currentRecord);
             }
+            runLength++;
 
-            currentOutput.writeRecord(currentRecord);
+            Record swap = lastRecord;
             lastRecord = currentRecord;
+            currentRecord = swap;
+            hasLast = true;
         }
 
-        return (lastRecord == null) ? 0 : runCount + 1;
+        return hasLast ? runCount + 1 : 0;
     }
 
-    private void merge(Tape out, Tape in1, Tape in2) throws IOException {
-        Record r1 = in1.readRecord();
-        Record r2 = in2.readRecord();
-        Record last1 = null;
-        Record last2 = null;
-
-        while (r1 != null || r2 != null) {
-            while (r1 != null && r2 != null) {
-                boolean run1Ended = (last1 != null && r1.compareTo(last1) < 0);
-                boolean run2Ended = (last2 != null && r2.compareTo(last2) < 0);
-
-                if (run1Ended || run2Ended) {
-                    break;
-                }
-
-                if (r1.compareTo(r2) <= 0) {
-                    out.writeRecord(r1);
-                    last1 = r1;
-                    r1 = in1.readRecord();
+    private int merge(Tape out, Tape in1, Tape in2) throws IOException {
+        int runCount = 0;
+        RunCursor c1 = new RunCursor(in1);
+        RunCursor c2 = new RunCursor(in2);
+
+        while (c1.hasHead || c2.hasHead) {
+            while (c1.inRun() && c2.inRun()) {
+                comparisons++;
+                if (c1.head.compareTo(c2.head) <= 0) {
+                    c1.moveTo(out);
                 } else {
-                    out.writeRecord(r2);
-                    last2 = r2;
-                    r2 = in2.readRecord();
+                    c2.moveTo(out);
                 }
             }
 
-            while (r1 != null && (last1 == null || r1.compareTo(last1) >= 0)) {
-                out.writeRecord(r1);
-                last1 = r1;
-                r1 = in1.readRecord();
+            while (c1.inRun()) {
+                c1.moveTo(out);
+            }
+
+            while (c2.inRun()) {
+                c2.moveTo(out);
             }
 
-            while (r2 != null && (last2 == null || r2.compareTo(last2) >= 0)) {
-                out.writeRecord(r2);
-                last2 = r2;
-                r2 = in2.readRecord();
+            c1.endRun();
+            c2.endRun();
+            runCount++;
+        }
+        recordsMoved += c1.moved + c2.moved;
+        comparisons += c1.comparisons + c2.comparisons;
+        return runCount;
+    }
+
+    // Bieżący i poprzedni rekord taśmy wejściowej; obiekty są wymieniane, a nie tworzone.
+    private static final class RunCursor {
+        private final Tape tape;
+        private Record head = new Record();
+        private Record last = new Record();
+        private boolean hasHead;
+        private boolean hasLast = false;
+        private long moved = 0;
+        private long comparisons = 0;
+
+        private RunCursor(Tape tape) throws IOException {
+            this.tape = tape;
+            this.hasHead = tape.readRecord(head);
+        }
+
+        private boolean inRun() {
+            if (!hasHead || !hasLast) {
+                return hasHead;
             }
+            comparisons++;
+            return head.compareTo(last) >= 0;
+        }
+
+        private void moveTo(Tape out) throws IOException {
+            out.writeRecord(head);
+            moved++;
+            Record swap = last;
+            last = head;
+            head = swap;
+            hasLast = true;
+            hasHead = tape.readRecord(head);
+        }
 
-            last1 = null;
-            last2 = null;
+        private void endRun() {
+            hasLast = false;
         }
     }
 }
@@ -0,0 +1,330 @@
+package org.example;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.LongAdder;
+
+public class ParallelExternalSorter implements ExternalSorter {
+
+    private final TapeFactory tapes;
+    private final int threads;
+    private final int bufferCapacity;
+    private final int fanIn;
+
+    public ParallelExternalSorter(int recordSize, int blockSize, int threads) {
+        this(new TapeFactory(recordSize, blockSize), threads, 64, 16);
+    }
+
+    // bufferCount - liczba bloków pamięci na wątek, fanIn - ile serii scala jedno zadanie
+    public ParallelExternalSorter(TapeFactory tapes, int threads, int bufferCount, int fanIn) {
+        if (threads < 1) {
+            throw new IllegalArgumentException("Liczba wątków musi być >= 1, podano " + threads);
+        }
+        if (fanIn < 2) {
+            throw new IllegalArgumentException("Stopień scalania k musi być >= 2, podano " + fanIn);
+        }
+        this.tapes = tapes;
+        this.threads = threads;
+        this.bufferCapacity = ChunkRunGenerator.capacityOf(tapes.getRecordSize(), tapes.getBlockSize(), bufferCount);
+        this.fanIn = fanIn;
+    }
+
+    public int getThreads() {
+        return threads;
+    }
+
+    @Override
+    public SortStats sort(String inputFileName, SortListener listener) throws IOException {
+        System.out.println("Rozpoczęto sortowanie równoległe (" + threads + " wątków) pliku: " + inputFileName);
+
+        Tape probe = tapes.open(inputFileName);
+        probe.reset("r");
+        long recordCount = probe.length() / tapes.getRecordSize();
+        probe.close();
+
+        // Każdy wątek czyta rozłączny zakres rekordów
+        long rangeSize = (recordCount + threads - 1) / threads;
+        List<Callable<RecordSource>> ranges = new ArrayList<>();
+        for (long first = 0; first < recordCount; first += rangeSize) {
+            long from = first;
+            long count = Math.min(rangeSize, recordCount - first);
+            ranges.add(() -> new TapeRange(tapes.open(inputFileName), from, count));
+        }
+        return sort(ranges, inputFileName, listener);
+    }
+
+    // Serie tworzone równolegle z kilku źródeł (każde otwierane i czytane przez jeden wątek),
+    // a następnie scalane do outputFileName. Źródło implementujące Closeable jest na końcu zamykane.
+    public SortStats sort(List<Callable<RecordSource>> sources, String outputFileName, SortListener listener)
+            throws IOException {
+        long startTime = System.currentTimeMillis();
+        List<PhaseStats> phases = new ArrayList<>();
+        ForkJoinPool pool = new ForkJoinPool(threads);
+        List<String> runs = new ArrayList<>();
+        // Pliki serii tego sortowania; te, które zostaną po błędzie, są usuwane na końcu
+        Set<String> scratchFiles = ConcurrentHashMap.newKeySet();
+
+        try {
+            // Faza 1: każdy wątek tworzy posortowane serie ze swojego źródła
+            PhaseCounter counter = new PhaseCounter(1, listener);
+            List<Callable<List<String>>> workers = new ArrayList<>();
+            for (Callable<RecordSource> source : sources) {
+                workers.add(() -> formRuns(source, counter, scratchFiles));
+            }
+            for (List<String> workerRuns : invokeAll(pool, workers)) {
+                runs.addAll(workerRuns);
+            }
+            phases.add(counter.finish(0, runs.size()));
+            System.out.println("Faza 1: utworzono " + runs.size() + " serii");
+
+            if (runs.isEmpty()) {
+                Tape out = tapes.open(outputFileName);
+                out.reset("rw");
+                out.truncate();
+                out.close();
+            }
+
+            // Kolejne fazy: niezależne grupy po fanIn serii scalane równolegle, ostatnia na taśmę wyjściową
+            while (runs.size() > 1 || (runs.size() == 1 && !runs.get(0).equals(outputFileName))) {
+                int phase = phases.size() + 1;
+                PhaseCounter mergeCounter = new PhaseCounter(phase, listener);
+                List<Callable<String>> merges = new ArrayList<>();
+                boolean last = runs.size() <= fanIn;
+
+                for (int i = 0; i < runs.size(); i += fanIn) {
+                    List<String> group = runs.subList(i, Math.min(i + fanIn, runs.size()));
+                    merges.add(() -> mergeGroup(group, last ? outputFileName : newRunName(scratchFiles), last,
+                            mergeCounter, scratchFiles));
+                }
+
+                int inputRuns = runs.size();
+                runs = invokeAll(pool, merges);
+                phases.add(mergeCounter.finish(Math.min(fanIn, inputRuns), inputRuns));
+                System.out.println("Faza " + phase + ": scalono " + inputRuns + " serii w " + runs.size());
+            }
+        } finally {
+            pool.shutdown();
+            for (String run : scratchFiles) {
+                tapes.getScratch().release(run);
+            }
+        }
+
+        long reads = 0;
+        long writes = 0;
+        for (PhaseStats phase : phases) {
+            reads += phase.diskReads();
+            writes += phase.diskWrites();
+        }
+
+        long endTime = System.currentTimeMillis();
+        return new SortStats(phases.size(), reads, writes, (endTime - startTime), phases);
+    }
+
+    private List<String> formRuns(Callable<RecordSource> source, PhaseCounter counter, Set<String> scratchFiles)
+            throws Exception {
+        long cpuStart = PhaseTracker.cpuNanos();
+        RunStatsCollector collector = new RunStatsCollector();
+        RecordSource in = source.call();
+
+        Record[] buffer = new Record[bufferCapacity];
+        List<String> runs = new ArrayList<>();
+        try {
+            while (true) {
+                int loaded = 0;
+                while (loaded < bufferCapacity) {
+                    if (buffer[loaded] == null) {
+                        buffer[loaded] = new Record();
+                    }
+                    if (!in.readRecord(buffer[loaded])) {
+                        break;
+                    }
+                    loaded++;
+                }
+                if (loaded == 0) {
+                    break;
+                }
+
+                Arrays.sort(buffer, 0, loaded, collector::compare);
+
+                String runName = newRunName(scratchFiles);
+                Tape out = tapes.openScratch(runName);
+                out.reset("rw");
+                out.truncate();
+                for (int i = 0; i < loaded; i++) {
+                    out.writeRecord(buffer[i]);
+                }
+                out.close();
+                counter.add(out, loaded);
+                runs.add(runName);
+                if (loaded < bufferCapacity) {
+                    break;
+                }
+            }
+        } finally {
+            if (in instanceof TapeRange range) {
+                range.tape.close();
+                counter.add(range.tape, 0);
+            } else if (in instanceof Closeable closeable) {
+                closeable.close();
+            }
+        }
+
+        counter.addWork(collector.toStats().comparisons(), PhaseTracker.cpuNanos() - cpuStart);
+        return runs;
+    }
+
+    private String mergeGroup(List<String> group, String outputFileName, boolean finalOutput, PhaseCounter counter,
+                              Set<String> scratchFiles) throws IOException {
+        long cpuStart = PhaseTracker.cpuNanos();
+        Tape[] inputs = new Tape[group.size()];
+        for (int i = 0; i < inputs.length; i++) {
+            inputs[i] = tapes.openScratch(group.get(i));
+            inputs[i].reset("r");
+        }
+        Tape out = finalOutput ? tapes.open(outputFileName) : tapes.openScratch(outputFileName);
+        out.reset("rw");
+        out.truncate();
+
+        RunMerger merger = new RunMerger(inputs);
+        long records = 0;
+        while (merger.nextRun()) {
+            Record record;
+            while ((record = merger.next()) != null) {
+                out.writeRecord(record);
+                records++;
+            }
+        }
+
+        out.close();
+        counter.add(out, records);
+        for (Tape input : inputs) {
+            input.close();
+            counter.add(input, 0);
+            tapes.getScratch().release(input.getFileName());
+            scratchFiles.remove(input.getFileName());
+        }
+        counter.addWork(merger.getComparisons(), PhaseTracker.cpuNanos() - cpuStart);
+        return outputFileName;
+    }
+
+    // Kolejne serie trafiają po kolei na katalogi pomocnicze, więc równoległe zadania piszą na różne dyski
+    private String newRunName(Set<String> scratchFiles) throws IOException {
+        String runName = tapes.getScratch().allocate("tape_par");
+        scratchFiles.add(runName);
+        return runName;
+    }
+
+    private static <T> List<T> invokeAll(ForkJoinPool pool, List<Callable<T>> tasks) throws IOException {
+        List<T> results = new ArrayList<>(tasks.size());
+        try {
+            for (Future<T> future : pool.invokeAll(tasks)) {
+                results.add(future.get());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Przerwano sortowanie równoległe");
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException io) {
+                throw io;
+            }
+            if (cause instanceof UncheckedIOException io) {
+                throw io.getCause();
+            }
+            throw new IOException("Błąd wątku sortującego", cause);
+        }
+        return results;
+    }
+
+    // Zakres rekordów taśmy wejściowej czytany przez jeden wątek
+    private static final class TapeRange implements RecordSource {
+        private final Tape tape;
+        private long remaining;
+
+        private TapeRange(Tape tape, long firstRecord, long count) throws IOException {
+            this.tape = tape;
+            this.remaining = count;
+            tape.reset("r");
+            tape.seek(firstRecord * tape.getRecordSize());
+        }
+
+        @Override
+        public Record readRecord() throws IOException {
+            Record record = new Record();
+            return readRecord(record) ? record : null;
+        }
+
+        @Override
+        public boolean readRecord(Record target) throws IOException {
+            if (remaining <= 0 || !tape.readRecord(target)) {
+                return false;
+            }
+            remaining--;
+            return true;
+        }
+    }
+
+    // Taśmy zadań są otwierane na nowo, więc ich liczniki to od razu przyrost w fazie.
+    // Czas procesora to suma po wątkach roboczych.
+    private static final class PhaseCounter {
+        private final int phase;
+        private final SortListener listener;
+        private final SortPhaseEvent event = new SortPhaseEvent();
+        private final LongAdder records = new LongAdder();
+        private final LongAdder reads = new LongAdder();
+        private final LongAdder writes = new LongAdder();
+        private final LongAdder bytesRead = new LongAdder();
+        private final LongAdder bytesWritten = new LongAdder();
+        private final LongAdder comparisons = new LongAdder();
+        private final LongAdder cpuNanos = new LongAdder();
+        private final LongAdder ioWaitNanos = new LongAdder();
+        private final Queue<TapeStats> tapes = new ConcurrentLinkedQueue<>();
+        private final long startNanos;
+
+        private PhaseCounter(int phase, SortListener listener) {
+            this.phase = phase;
+            this.listener = listener;
+            listener.phaseStarted(phase);
+            event.begin();
+            this.startNanos = System.nanoTime();
+        }
+
+        private void add(Tape tape, long movedRecords) {
+            TapeStats stats = tape.snapshot(phase);
+            tapes.add(stats);
+            records.add(movedRecords);
+            reads.add(stats.blocksRead());
+            writes.add(stats.blocksWritten());
+            bytesRead.add(stats.bytesRead());
+            bytesWritten.add(stats.bytesWritten());
+            ioWaitNanos.add(stats.ioWaitNanos());
+        }
+
+        private void addWork(long compared, long cpu) {
+            comparisons.add(compared);
+            cpuNanos.add(cpu);
+        }
+
+        private PhaseStats finish(int fanIn, long runs) {
+            long durationMs = (System.nanoTime() - startNanos) / 1_000_000;
+            PhaseStats stats = new PhaseStats(phase, fanIn, runs, records.sum(), reads.sum(), writes.sum(),
+                    durationMs, ioWaitNanos.sum() / 1_000_000, bytesRead.sum(), bytesWritten.sum(),
+                    comparisons.sum(), cpuNanos.sum() / 1_000_000, List.copyOf(tapes));
+            PhaseTracker.publish(stats, event, listener);
+            return stats;
+        }
+    }
+}
@@ -0,0 +1,72 @@
+package org.example;
+
+import java.io.IOException;
+
+// Sortuje jedną partycję PartitionedSorter: w wątku koordynatora albo jako osobny proces JVM (main),
+// który na końcu wypisuje wiersz z licznikami, sumowanymi potem przez koordynatora.
+public final class PartitionWorker {
+
+    static final String RESULT_PREFIX = "WYNIK ";
+
+    private PartitionWorker() {
+    }
+
+    // Liczniki całego sortowania partycji, tak samo dla wątku i procesu
+    record Result(int phases, long diskReads, long diskWrites, long bytesRead, long bytesWritten,
+                  long comparisons, long cpuMs, long ioWaitMs) {
+
+        static Result of(SortStats stats) {
+            long bytesRead = 0;
+            long bytesWritten = 0;
+            long comparisons = 0;
+            long cpuMs = 0;
+            long ioWaitMs = 0;
+            for (PhaseStats phase : stats.phaseDetails()) {
+                bytesRead += phase.bytesRead();
+                bytesWritten += phase.bytesWritten();
+                comparisons += phase.comparisons();
+                cpuMs += phase.cpuMs();
+                ioWaitMs += phase.ioWaitMs();
+            }
+            return new Result(stats.phases(), stats.diskReads(), stats.diskWrites(), bytesRead, bytesWritten,
+                    comparisons, cpuMs, ioWaitMs);
+        }
+
+        String format() {
+            return RESULT_PREFIX + phases + " " + diskReads + " " + diskWrites + " " + bytesRead + " " + bytesWritten
+                    + " " + comparisons + " " + cpuMs + " " + ioWaitMs;
+        }
+
+        static Result parse(String line) {
+            String[] values = line.substring(RESULT_PREFIX.length()).trim().split(" ");
+            return new Result(Integer.parseInt(values[0]), Long.parseLong(values[1]), Long.parseLong(values[2]),
+                    Long.parseLong(values[3]), Long.parseLong(values[4]), Long.parseLong(values[5]),
+                    Long.parseLong(values[6]), Long.parseLong(values[7]));
+        }
+    }
+
+    // Partycja mieści się zwykle w kilku buforach, więc serie z ChunkRunGenerator scalają się w kilku fazach
+    static SortStats sort(String fileName, TapeFactory tapes, int bufferCount) throws IOException {
+        int capacity = ChunkRunGenerator.capacityOf(tapes.getRecordSize(), tapes.getBlockSize(), bufferCount);
+        return new NaturalMergeSorter(tapes, new ChunkRunGenerator(capacity)).sort(fileName);
+    }
+
+    // Argumenty: plik, rozmiar rekordu, rozmiar bloku, backend, kolejka, układ taśm pomocniczych,
+    // liczba buforów, katalogi na taśmy pomocnicze (po przecinku)
+    public static void main(String[] args) {
+        if (args.length != 8) {
+            System.err.println("Użycie: PartitionWorker plik rekord blok backend kolejka układ bufory katalogi");
+            System.exit(2);
+        }
+        try {
+            TapeFactory tapes = new TapeFactory(Integer.parseInt(args[1]), Integer.parseInt(args[2]),
+                    StorageType.valueOf(args[3]), Integer.parseInt(args[4]), RecordLayout.valueOf(args[5]), false,
+                    ScratchSpace.parse(args[7]));
+            SortStats stats = sort(args[0], tapes, Integer.parseInt(args[6]));
+            System.out.println(Result.of(stats).format());
+        } catch (IOException | RuntimeException e) {
+            System.err.println("Błąd sortowania partycji " + args[0] + ": " + e);
+            System.exit(1);
+        }
+    }
+}
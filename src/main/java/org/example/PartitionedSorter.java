@@ -0,0 +1,356 @@
+package org.example;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.net.URISyntaxException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Collectors;
+
+// Sortowanie przez podział zakresu: próbka kluczy g() wyznacza P - 1 granic (kwantyli), jeden przebieg
+// rozdziela rekordy na P taśm partycji, każdą partycję sortuje niezależny wykonawca (wątek albo osobny
+// proces JVM uruchomiony przez koordynatora), a posortowane partycje są sklejane bez scalania.
+// Wykonawcy nie dzielą pamięci, więc ten sam podział mógłby rozesłać partycje na inne maszyny.
+public class PartitionedSorter implements ExternalSorter {
+
+    private static final int SAMPLES_PER_PARTITION = 64;
+
+    private final TapeFactory tapes;
+    private final int partitions;
+    private final int workers;
+    private final boolean processes;
+    private final int bufferCount;
+
+    private long[] partitionSizes = new long[0];
+
+    // workers - ile partycji jest sortowanych naraz, processes - każda w osobnym procesie JVM,
+    // bufferCount - bloki pamięci jednego wykonawcy
+    public PartitionedSorter(TapeFactory tapes, int partitions, int workers, boolean processes, int bufferCount) {
+        if (partitions < 1) {
+            throw new IllegalArgumentException("Liczba partycji musi być >= 1, podano " + partitions);
+        }
+        if (workers < 1) {
+            throw new IllegalArgumentException("Liczba wykonawców musi być >= 1, podano " + workers);
+        }
+        this.tapes = tapes;
+        this.partitions = partitions;
+        this.workers = workers;
+        this.processes = processes;
+        this.bufferCount = bufferCount;
+    }
+
+    // Liczba rekordów w kolejnych partycjach ostatniego sortowania
+    public long[] getPartitionSizes() {
+        return partitionSizes.clone();
+    }
+
+    // Największa partycja względem równego podziału: 1.0 to idealne granice
+    public double getSkew() {
+        long total = 0;
+        long max = 0;
+        for (long size : partitionSizes) {
+            total += size;
+            max = Math.max(max, size);
+        }
+        return (total == 0) ? 1.0 : (double) max * partitionSizes.length / total;
+    }
+
+    @Override
+    public SortStats sort(String inputFileName, SortListener listener) throws IOException {
+        System.out.println("Rozpoczęto sortowanie z podziałem na " + partitions + " partycji ("
+                + workers + (processes ? " procesów" : " wątków") + ") pliku: " + inputFileName);
+        long startTime = System.currentTimeMillis();
+        List<PhaseStats> phases = new ArrayList<>();
+
+        Tape in = tapes.open(inputFileName);
+        Tape[] parts = new Tape[partitions];
+        try {
+            for (int p = 0; p < partitions; p++) {
+                parts[p] = tapes.open(tapes.getScratch().allocate("tape_part" + p, p));
+            }
+
+            // Faza 1: próbka kluczy z równo rozłożonych pozycji taśmy
+            PhaseTracker sampling = new PhaseTracker(listener, in);
+            sampling.begin(1);
+            long[] sample = sampleKeys(in);
+            long[] splitters = splittersOf(sample);
+            phases.add(sampling.end(1, 0, 0, splitters.length, 0));
+
+            // Faza 2: jeden przebieg rozdzielający rekordy według granic
+            Tape[] scatterTapes = new Tape[partitions + 1];
+            scatterTapes[0] = in;
+            System.arraycopy(parts, 0, scatterTapes, 1, partitions);
+            PhaseTracker scatter = new PhaseTracker(listener, scatterTapes);
+            scatter.begin(2);
+            long records = scatter(in, parts, splitters, tieWeightsOf(sample, splitters));
+            phases.add(scatter.end(2, 0, partitions, records, 0));
+            System.out.println("Partycje: " + Arrays.toString(partitionSizes)
+                    + String.format(" (nierównomierność %.2f)", getSkew()));
+
+            // Faza 3: niezależne sortowanie partycji
+            phases.add(sortPartitions(parts, records, listener));
+
+            // Faza 4: sklejenie posortowanych partycji na taśmę wejściową
+            PhaseTracker concat = new PhaseTracker(listener, scatterTapes);
+            concat.begin(4);
+            concatenate(parts, in);
+            phases.add(concat.end(4, partitions, partitions, records, 0));
+        } finally {
+            in.close();
+            for (Tape part : parts) {
+                if (part != null) {
+                    tapes.deleteScratch(part);
+                }
+            }
+        }
+
+        long reads = 0;
+        long writes = 0;
+        for (PhaseStats phase : phases) {
+            reads += phase.diskReads();
+            writes += phase.diskWrites();
+        }
+        long endTime = System.currentTimeMillis();
+        return new SortStats(phases.size(), reads, writes, (endTime - startTime), phases);
+    }
+
+    // Posortowane klucze z równo rozłożonych pozycji taśmy
+    private long[] sampleKeys(Tape in) throws IOException {
+        in.reset("r");
+        long count = in.length() / in.getRecordSize();
+        int samples = (int) Math.min(count, (long) SAMPLES_PER_PARTITION * partitions);
+        long[] keys = new long[samples];
+        Record record = new Record();
+        for (int i = 0; i < samples; i++) {
+            // Pozycje rosną, więc kilka próbek z jednego bloku kosztuje jeden odczyt
+            in.seek(count * i / samples * in.getRecordSize());
+            in.readRecord(record);
+            keys[i] = record.getSortKey();
+        }
+        in.close();
+        Arrays.sort(keys);
+        return keys;
+    }
+
+    // Granica j to klucz próbki na pozycji (j + 1) / P posortowanej próbki, czyli pierwszy klucz
+    // próbki partycji j + 1
+    private long[] splittersOf(long[] sample) {
+        long[] splitters = new long[(sample.length == 0) ? 0 : partitions - 1];
+        for (int j = 0; j < splitters.length; j++) {
+            splitters[j] = sample[sampleStart(j + 1, sample.length)];
+        }
+        return splitters;
+    }
+
+    private int sampleStart(int partition, int samples) {
+        return (int) ((long) partition * samples / partitions);
+    }
+
+    // Dla klucza równego granicy: ile jego próbek leży w zakresie próbki każdej partycji
+    private Map<Long, long[]> tieWeightsOf(long[] sample, long[] splitters) {
+        Map<Long, long[]> weights = new HashMap<>();
+        for (long splitter : splitters) {
+            weights.computeIfAbsent(splitter, key -> {
+                long[] counts = new long[partitions];
+                for (int p = 0; p < partitions; p++) {
+                    for (int i = sampleStart(p, sample.length); i < sampleStart(p + 1, sample.length); i++) {
+                        if (sample[i] == key) {
+                            counts[p]++;
+                        }
+                    }
+                }
+                return counts;
+            });
+        }
+        return weights;
+    }
+
+    // Partycja p dostaje klucze z [granica p - 1, granica p]. Klucz równy kilku granicom może trafić
+    // do każdej z partycji między nimi, więc częsty klucz jest rozkładany w proporcji do jego próbek
+    // w tych partycjach: skrajne partycje mają też inne klucze i dostają mniej.
+    private long scatter(Tape in, Tape[] parts, long[] splitters, Map<Long, long[]> tieWeights)
+            throws IOException {
+        in.reset("r");
+        for (Tape part : parts) {
+            part.reset("rw");
+            part.truncate();
+        }
+        partitionSizes = new long[partitions];
+        Map<Long, long[]> tieCounts = new HashMap<>();
+        Record record = new Record();
+        long records = 0;
+        while (in.readRecord(record)) {
+            long key = record.getSortKey();
+            int low = countBelow(splitters, key, false);
+            int high = countBelow(splitters, key, true);
+            int p = low;
+            if (low < high) {
+                p = leastFilled(tieWeights.get(key), tieCounts.computeIfAbsent(key, k -> new long[partitions]),
+                        low, high);
+            }
+            parts[p].writeRecord(record);
+            partitionSizes[p]++;
+            records++;
+        }
+        in.close();
+        for (Tape part : parts) {
+            part.close();
+        }
+        return records;
+    }
+
+    // Partycja z [low, high] o najmniejszej liczbie przydzielonych rekordów względem wagi
+    private static int leastFilled(long[] weights, long[] assigned, int low, int high) {
+        int best = -1;
+        for (int p = low; p <= high; p++) {
+            if (weights[p] > 0 && (best < 0 || assigned[p] * weights[best] < assigned[best] * weights[p])) {
+                best = p;
+            }
+        }
+        assigned[best]++;
+        return best;
+    }
+
+    // Liczba granic < key (albo <= key dla inclusive)
+    private static int countBelow(long[] splitters, long key, boolean inclusive) {
+        int low = 0;
+        int high = splitters.length;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (splitters[mid] < key || (inclusive && splitters[mid] == key)) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    // Liczniki wykonawców są sumowane w jedną fazę; partycji z jednym rekordem nie trzeba sortować
+    private PhaseStats sortPartitions(Tape[] parts, long records, SortListener listener) throws IOException {
+        listener.phaseStarted(3);
+        SortPhaseEvent event = new SortPhaseEvent();
+        event.begin();
+        long startNanos = System.nanoTime();
+
+        ExecutorService pool = Executors.newFixedThreadPool(workers);
+        List<Future<PartitionWorker.Result>> results = new ArrayList<>();
+        try {
+            for (int p = 0; p < partitions; p++) {
+                if (partitionSizes[p] > 1) {
+                    String fileName = parts[p].getFileName();
+                    Callable<PartitionWorker.Result> task = processes
+                            ? () -> sortInProcess(fileName)
+                            : () -> PartitionWorker.Result.of(PartitionWorker.sort(fileName, tapes, bufferCount));
+                    results.add(pool.submit(task));
+                }
+            }
+
+            long reads = 0;
+            long writes = 0;
+            long bytesRead = 0;
+            long bytesWritten = 0;
+            long comparisons = 0;
+            long cpuMs = 0;
+            long ioWaitMs = 0;
+            int maxPhases = 0;
+            for (Future<PartitionWorker.Result> future : results) {
+                PartitionWorker.Result result = future.get();
+                reads += result.diskReads();
+                writes += result.diskWrites();
+                bytesRead += result.bytesRead();
+                bytesWritten += result.bytesWritten();
+                comparisons += result.comparisons();
+                cpuMs += result.cpuMs();
+                ioWaitMs += result.ioWaitMs();
+                maxPhases = Math.max(maxPhases, result.phases());
+            }
+            long durationMs = (System.nanoTime() - startNanos) / 1_000_000;
+            System.out.println("Faza 3: posortowano " + results.size() + " partycji (najwięcej faz: " + maxPhases + ")");
+            PhaseStats stats = new PhaseStats(3, workers, partitions, records, reads, writes, durationMs, ioWaitMs,
+                    bytesRead, bytesWritten, comparisons, cpuMs, List.of());
+            PhaseTracker.publish(stats, event, listener);
+            return stats;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Przerwano sortowanie partycji", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException io) {
+                throw io;
+            }
+            throw new IOException("Błąd sortowania partycji", e.getCause());
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    // Osobna JVM z klasami tego programu; wypisuje postęp sortowania i na końcu wiersz z licznikami
+    private PartitionWorker.Result sortInProcess(String fileName) throws IOException, InterruptedException {
+        String directories = tapes.getScratch().getDirectories().stream()
+                .map(Path::toString).collect(Collectors.joining(","));
+        ProcessBuilder builder = new ProcessBuilder(
+                Path.of(System.getProperty("java.home"), "bin", "java").toString(),
+                "-cp", classPath(), PartitionWorker.class.getName(),
+                fileName, Integer.toString(tapes.getRecordSize()), Integer.toString(tapes.getBlockSize()),
+                tapes.getStorageType().name(), Integer.toString(tapes.getAsyncDepth()),
+                tapes.getScratchLayout().name(), Integer.toString(bufferCount), directories);
+        builder.redirectError(ProcessBuilder.Redirect.INHERIT);
+        Process process = builder.start();
+
+        PartitionWorker.Result result = null;
+        try (BufferedReader output = new BufferedReader(new InputStreamReader(process.getInputStream()))) {
+            String line;
+            while ((line = output.readLine()) != null) {
+                if (line.startsWith(PartitionWorker.RESULT_PREFIX)) {
+                    result = PartitionWorker.Result.parse(line);
+                }
+            }
+        } finally {
+            if (process.waitFor() != 0) {
+                throw new IOException("Proces sortujący " + fileName + " zakończył się kodem " + process.exitValue());
+            }
+        }
+        if (result == null) {
+            throw new IOException("Proces sortujący " + fileName + " nie zwrócił wyniku");
+        }
+        return result;
+    }
+
+    private static String classPath() throws IOException {
+        try {
+            return Path.of(PartitionWorker.class.getProtectionDomain().getCodeSource().getLocation().toURI())
+                    .toString();
+        } catch (URISyntaxException e) {
+            throw new IOException("Nieznana ścieżka klas programu", e);
+        }
+    }
+
+    private void concatenate(Tape[] parts, Tape out) throws IOException {
+        out.reset("rw");
+        out.truncate();
+        Record record = new Record();
+        for (Tape part : parts) {
+            part.reset("r");
+            // transferTo pomija bufor zapisu, więc przy indeksie bloków rekordy idą zwykłym zapisem
+            if (!tapes.isIndexed() && out.canTransferFrom(part)) {
+                out.transferFrom(part, 0, part.length());
+            } else {
+                while (part.readRecord(record)) {
+                    out.writeRecord(record);
+                }
+            }
+            part.close();
+        }
+        out.close();
+    }
+}
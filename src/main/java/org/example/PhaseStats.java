@@ -0,0 +1,64 @@
+package org.example;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public record PhaseStats(
+        int phase,
+        int fanIn,
+        long runs,
+        long records,
+        long diskReads,
+        long diskWrites,
+        long durationMs,
+        long ioWaitMs,
+        long bytesRead,
+        long bytesWritten,
+        long comparisons,
+        long cpuMs,
+        List<TapeStats> tapes
+) {
+    public PhaseStats(int phase, int fanIn, long runs, long records, long diskReads, long diskWrites,
+                      long durationMs, long ioWaitMs) {
+        this(phase, fanIn, runs, records, diskReads, diskWrites, durationMs, ioWaitMs, 0, 0, 0, 0, List.of());
+    }
+
+    // Ta sama faza pod innym numerem, gdy jest częścią większego sortowania
+    public PhaseStats withPhase(int newPhase) {
+        List<TapeStats> renumbered = new ArrayList<>(tapes.size());
+        for (TapeStats tape : tapes) {
+            renumbered.add(tape.withPhase(newPhase));
+        }
+        return new PhaseStats(newPhase, fanIn, runs, records, diskReads, diskWrites, durationMs, ioWaitMs,
+                bytesRead, bytesWritten, comparisons, cpuMs, List.copyOf(renumbered));
+    }
+
+    // Rekordy usunięte w tej fazie przez MergeReducer
+    public long recordsEliminated() {
+        long sum = 0;
+        for (TapeStats tape : tapes) {
+            sum += tape.recordsEliminated();
+        }
+        return sum;
+    }
+
+    public long logicalBytesRead() {
+        long sum = 0;
+        for (TapeStats tape : tapes) {
+            sum += tape.logicalBytesRead();
+        }
+        return sum;
+    }
+
+    public long logicalBytesWritten() {
+        long sum = 0;
+        for (TapeStats tape : tapes) {
+            sum += tape.logicalBytesWritten();
+        }
+        return sum;
+    }
+
+    public long computeMs() {
+        return Math.max(0, durationMs - ioWaitMs);
+    }
+}
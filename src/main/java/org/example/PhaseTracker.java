@@ -0,0 +1,85 @@
+package org.example;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.List;
+
+class PhaseTracker {
+
+    private static final ThreadMXBean THREADS = ManagementFactory.getThreadMXBean();
+
+    private final Tape[] tapes;
+    private final SortListener listener;
+    private final List<PhaseStats> phases = new ArrayList<>();
+
+    private final TapeStats[] start;
+    private SortPhaseEvent event;
+    private long startNanos = 0;
+    private long startCpuNanos = 0;
+    private long totalReads = 0;
+    private long totalWrites = 0;
+
+    PhaseTracker(SortListener listener, Tape... tapes) {
+        this.tapes = tapes;
+        this.listener = listener;
+        this.start = new TapeStats[tapes.length];
+    }
+
+    void begin(int phase) {
+        listener.phaseStarted(phase);
+        for (int i = 0; i < tapes.length; i++) {
+            start[i] = tapes[i].snapshot(phase);
+        }
+        event = new SortPhaseEvent();
+        event.begin();
+        startCpuNanos = cpuNanos();
+        startNanos = System.nanoTime();
+    }
+
+    PhaseStats end(int phase, int fanIn, long runs, long records, long comparisons) {
+        long durationMs = (System.nanoTime() - startNanos) / 1_000_000;
+        long cpuMs = (cpuNanos() - startCpuNanos) / 1_000_000;
+
+        List<TapeStats> tapeStats = new ArrayList<>(tapes.length);
+        long reads = 0;
+        long writes = 0;
+        long bytesRead = 0;
+        long bytesWritten = 0;
+        long waitNanos = 0;
+        for (int i = 0; i < tapes.length; i++) {
+            TapeStats delta = tapes[i].snapshot(phase).minus(start[i]);
+            tapeStats.add(delta);
+            reads += delta.blocksRead();
+            writes += delta.blocksWritten();
+            bytesRead += delta.bytesRead();
+            bytesWritten += delta.bytesWritten();
+            waitNanos += delta.ioWaitNanos();
+        }
+        totalReads += reads;
+        totalWrites += writes;
+
+        PhaseStats stats = new PhaseStats(phase, fanIn, runs, records, reads, writes, durationMs,
+                waitNanos / 1_000_000, bytesRead, bytesWritten, comparisons, cpuMs, List.copyOf(tapeStats));
+        phases.add(stats);
+        publish(stats, event, listener);
+        return stats;
+    }
+
+    long getTotalReads() { return totalReads; }
+    long getTotalWrites() { return totalWrites; }
+    List<PhaseStats> getPhases() { return List.copyOf(phases); }
+
+    static void publish(PhaseStats stats, SortPhaseEvent event, SortListener listener) {
+        event.commit(stats);
+        for (TapeStats tape : stats.tapes()) {
+            listener.tapeMeasured(tape);
+        }
+        listener.phaseFinished(stats);
+    }
+
+    // Czas procesora bieżącego wątku albo 0, jeśli JVM go nie udostępnia
+    static long cpuNanos() {
+        return THREADS.isCurrentThreadCpuTimeSupported() ? Math.max(0, THREADS.getCurrentThreadCpuTime()) : 0;
+    }
+}
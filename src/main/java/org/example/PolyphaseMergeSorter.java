@@ -0,0 +1,233 @@
+package org.example;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.PriorityQueue;
+
+public class PolyphaseMergeSorter implements ExternalSorter {
+
+    private final TapeFactory tapeFactory;
+    private final int tapeCount;
+
+    private long recordsMoved = 0;
+    private long comparisons = 0;
+
+    public PolyphaseMergeSorter(int recordSize, int blockSize, int tapeCount) {
+        this(new TapeFactory(recordSize, blockSize), tapeCount);
+    }
+
+    public PolyphaseMergeSorter(TapeFactory tapeFactory, int tapeCount) {
+        if (tapeCount < 3) {
+            throw new IllegalArgumentException("Sortowanie polifazowe wymaga co najmniej 3 taśm, podano " + tapeCount);
+        }
+        this.tapeFactory = tapeFactory;
+        this.tapeCount = tapeCount;
+    }
+
+    @Override
+    public SortStats sort(String inputFileName, SortListener listener) throws IOException {
+        final int n = tapeCount;
+
+        Tape tapeA = tapeFactory.open(inputFileName);
+        Tape[] tapes = new Tape[n];
+        Tape[] allTapes = new Tape[n + 1];
+        allTapes[0] = tapeA;
+        for (int i = 0; i < n; i++) {
+            tapes[i] = tapeFactory.createScratch("tape_p" + i, i);
+            allTapes[i + 1] = tapes[i];
+        }
+        PhaseTracker tracker = new PhaseTracker(listener, allTapes);
+
+        try {
+            // Długości rzeczywistych serii na każdej fizycznej taśmie (w kolejności odczytu)
+            @SuppressWarnings({"unchecked", "rawtypes"})
+            ArrayDeque<Long>[] runLengths = new ArrayDeque[n];
+            for (int i = 0; i < n; i++) {
+                runLengths[i] = new ArrayDeque<>();
+            }
+
+            System.out.println("Rozpoczęto sortowanie polifazowe (" + n + " taśm) pliku: " + inputFileName);
+            long startTime = System.currentTimeMillis();
+
+            // a[i] - idealna liczba serii (uogólniony ciąg Fibonacciego), d[i] - serie fikcyjne
+            int[] a = new int[n];
+            int[] d = new int[n];
+            int[] t = new int[n];
+            for (int i = 0; i < n - 1; i++) {
+                a[i] = 1;
+                d[i] = 1;
+            }
+            int level = 1;
+            int j = 0;
+            long totalRuns = 0;
+
+            System.out.println("Faza 1: Dystrybucja");
+            tracker.begin(1);
+            recordsMoved = 0;
+            comparisons = 0;
+
+            tapeA.reset("r");
+            for (Tape tape : tapes) {
+                tape.reset("rw");
+                tape.truncate();
+            }
+
+            Record next = tapeA.readRecord();
+            while (next != null) {
+                if (d[j] < d[j + 1]) {
+                    j++;
+                } else {
+                    if (d[j] == 0) {
+                        level++;
+                        int z = a[0];
+                        for (int i = 0; i < n - 1; i++) {
+                            d[i] = z + a[i + 1] - a[i];
+                            a[i] = z + a[i + 1];
+                        }
+                    }
+                    j = 0;
+                }
+                d[j]--;
+
+                long length = 0;
+                Record last;
+                do {
+                    tapes[j].writeRecord(next);
+                    recordsMoved++;
+                    length++;
+                    last = next;
+                    next = tapeA.readRecord();
+                } while (next != null && compare(next, last) >= 0);
+
+                runLengths[j].add(length);
+                totalRuns++;
+            }
+
+            tapeA.close();
+            for (int i = 0; i < n - 1; i++) {
+                tapes[i].reset("r");
+            }
+            tracker.end(1, 0, totalRuns, recordsMoved, comparisons);
+            System.out.println("Rozdzielono " + totalRuns + " serii na " + (n - 1) + " taśm.");
+
+            int phases = 1;
+
+            if (totalRuns > 1) {
+                for (int i = 0; i < n; i++) {
+                    t[i] = i;
+                }
+                int[] active = new int[n - 1];
+
+                while (level > 0) {
+                    phases++;
+                    boolean lastPhase = (level == 1);
+                    System.out.println("Faza " + phases + ": Scalanie" + (lastPhase ? " (wynik na taśmę A)" : ""));
+                    tracker.begin(phases);
+                    recordsMoved = 0;
+                    comparisons = 0;
+
+                    Tape out = lastPhase ? tapeA : tapes[t[n - 1]];
+                    out.reset("rw");
+                    out.truncate();
+
+                    long mergedRuns = 0;
+                    int z = a[n - 2];
+                    d[n - 1] = 0;
+                    do {
+                        int k = 0;
+                        for (int i = 0; i < n - 1; i++) {
+                            if (d[i] > 0) {
+                                d[i]--;
+                            } else {
+                                active[k++] = t[i];
+                            }
+                        }
+
+                        if (k == 0) {
+                            d[n - 1]++;
+                        } else {
+                            long length = mergeRuns(out, tapes, runLengths, active, k);
+                            if (!lastPhase) {
+                                runLengths[t[n - 1]].add(length);
+                            }
+                            mergedRuns += k;
+                        }
+                        z--;
+                    } while (z > 0);
+
+                    if (lastPhase) {
+                        out.close();
+                    } else {
+                        out.reset("r");
+                    }
+
+                    int tn = t[n - 1];
+                    int dn = d[n - 1];
+                    z = a[n - 2];
+                    for (int i = n - 1; i > 0; i--) {
+                        t[i] = t[i - 1];
+                        d[i] = d[i - 1];
+                        a[i] = a[i - 1] - z;
+                    }
+                    t[0] = tn;
+                    d[0] = dn;
+                    a[0] = z;
+
+                    if (!lastPhase) {
+                        tapes[t[n - 1]].reset("rw");
+                        tapes[t[n - 1]].truncate();
+                    }
+
+                    level--;
+                    tracker.end(phases, n - 1, mergedRuns, recordsMoved, comparisons);
+                }
+            }
+
+            long endTime = System.currentTimeMillis();
+
+            return new SortStats(phases, tracker.getTotalReads(), tracker.getTotalWrites(),
+                    (endTime - startTime), tracker.getPhases());
+        } finally {
+            for (Tape tape : tapes) {
+                tapeFactory.deleteScratch(tape);
+            }
+        }
+    }
+
+    private long mergeRuns(Tape out, Tape[] tapes, ArrayDeque<Long>[] runLengths,
+                           int[] active, int count) throws IOException {
+        Record[] heads = new Record[count];
+        long[] remaining = new long[count];
+        PriorityQueue<Integer> heap = new PriorityQueue<>(count, (x, y) -> {
+            int cmp = compare(heads[x], heads[y]);
+            return (cmp != 0) ? cmp : Integer.compare(x, y);
+        });
+
+        for (int i = 0; i < count; i++) {
+            remaining[i] = runLengths[active[i]].poll();
+            heads[i] = tapes[active[i]].readRecord();
+            remaining[i]--;
+            heap.add(i);
+        }
+
+        long length = 0;
+        while (!heap.isEmpty()) {
+            int i = heap.poll();
+            out.writeRecord(heads[i]);
+            recordsMoved++;
+            length++;
+
+            if (remaining[i] > 0) {
+                heads[i] = tapes[active[i]].readRecord();
+                remaining[i]--;
+                heap.add(i);
+            }
+        }
+        return length;
+    }
+
+    private int compare(Record left, Record right) {
+        comparisons++;
+        return left.compareTo(right);
+    }
+}
@@ -0,0 +1,50 @@
+package org.example;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+
+class RandomAccessStorage implements TapeStorage {
+
+    private final RandomAccessFile file;
+
+    RandomAccessStorage(String fileName, String mode) throws IOException {
+        this.file = new RandomAccessFile(fileName, mode);
+        this.file.seek(0);
+    }
+
+    @Override
+    public int read(ByteBuffer dst) throws IOException {
+        int bytesRead = file.read(dst.array(), dst.arrayOffset() + dst.position(), dst.remaining());
+        if (bytesRead > 0) {
+            dst.position(dst.position() + bytesRead);
+        }
+        return bytesRead;
+    }
+
+    @Override
+    public void write(ByteBuffer src) throws IOException {
+        file.write(src.array(), src.arrayOffset() + src.position(), src.remaining());
+        src.position(src.limit());
+    }
+
+    @Override
+    public void setLength(long length) throws IOException {
+        file.setLength(length);
+    }
+
+    @Override
+    public void seek(long position) throws IOException {
+        file.seek(position);
+    }
+
+    @Override
+    public long size() throws IOException {
+        return file.length();
+    }
+
+    @Override
+    public void close() throws IOException {
+        file.close();
+    }
+}
@@ -1,9 +1,11 @@
 package org.example;
 
+import java.nio.ByteBuffer;
 import java.io.DataInputStream;
 import java.io.DataOutputStream;
 import java.io.IOException;
 import java.io.EOFException;
+import java.util.Arrays;
 
 public class Record implements Comparable<Record> {
 
@@ -16,12 +18,23 @@ public class Record implements Comparable<Record> {
     public static final int RECORD_SIZE = 5 * Integer.BYTES;
 
     private double gValue;
+    private long sortKey;
+
+    // Dodatkowe bajty szerokiego rekordu (rozmiar rekordu > RECORD_SIZE); nie wpływają na porządek
+    private static final byte[] NO_PAYLOAD = new byte[0];
+    private byte[] payload = NO_PAYLOAD;
+    private int payloadLength = 0;
 
     public Record() {
         this.gValue = 0;
+        this.sortKey = toSortKey(0);
     }
 
     public Record(int a, int y, int c, int z, int x) {
+        set(a, y, c, z, x);
+    }
+
+    public final void set(int a, int y, int c, int z, int x) {
         this.a = a;
         this.y = y;
         this.c = c;
@@ -30,20 +43,135 @@ public class Record implements Comparable<Record> {
         calculateG();
     }
 
+    public void copyFrom(Record other) {
+        copyFieldsFrom(other);
+        setPayload(other.payload, 0, other.payloadLength);
+    }
+
+    // Kopiuje pola i klucz bez danych dodatkowych
+    public void copyFieldsFrom(Record other) {
+        this.a = other.a;
+        this.y = other.y;
+        this.c = other.c;
+        this.z = other.z;
+        this.x = other.x;
+        this.gValue = other.gValue;
+        this.sortKey = other.sortKey;
+    }
+
+    public int getPayloadLength() {
+        return payloadLength;
+    }
+
+    public byte[] getPayload() {
+        return Arrays.copyOf(payload, payloadLength);
+    }
+
+    public void setPayload(byte[] source, int offset, int length) {
+        if (payload.length < length) {
+            payload = new byte[length];
+        }
+        System.arraycopy(source, offset, payload, 0, length);
+        payloadLength = length;
+    }
+
+    // Liczba long (big-endian) z początku danych dodatkowych, np. licznik agregatu MergeReducer.COUNT
+    long getPayloadLong() {
+        long value = 0;
+        for (int i = 0; i < Long.BYTES; i++) {
+            value = (value << 8) | ((i < payloadLength) ? (payload[i] & 0xFF) : 0);
+        }
+        return value;
+    }
+
+    void setPayloadLong(long value) {
+        if (payloadLength < Long.BYTES) {
+            payload = Arrays.copyOf(payload, Long.BYTES);
+            payloadLength = Long.BYTES;
+        }
+        for (int i = Long.BYTES - 1; i >= 0; i--) {
+            payload[i] = (byte) value;
+            value >>>= 8;
+        }
+    }
+
+    // Zapisuje dokładnie length bajtów: dane dodatkowe uzupełnione zerami albo obcięte
+    void encodePayload(ByteBuffer buffer, int offset, int length) {
+        int copied = Math.min(length, payloadLength);
+        buffer.put(offset, payload, 0, copied);
+        for (int i = copied; i < length; i++) {
+            buffer.put(offset + i, (byte) 0);
+        }
+    }
+
+    void decodePayload(ByteBuffer buffer, int offset, int length) {
+        if (payload.length < length) {
+            payload = new byte[length];
+        }
+        buffer.get(offset, payload, 0, length);
+        payloadLength = length;
+    }
+
 
     public final void calculateG() {
-        double x2 = Math.pow(x, 2);
-        double c3 = Math.pow(c, 3);
-        double z4 = Math.pow(z, 4);
-        double y7 = Math.pow(y, 7);
+        this.gValue = g(a, y, c, z, x);
+        this.sortKey = toSortKey(gValue);
+    }
+
+    // Granice dokładnych potęg dla power(); BlockKernel liczy poza nimi po jednym rekordzie
+    static final int X_EXACT_LIMIT = 94_906_265;
+    static final int C_EXACT_LIMIT = 208_063;
+    static final int Z_EXACT_LIMIT = 9_741;
+    static final int Y_EXACT_LIMIT = 190;
+
+    static double g(int a, int y, int c, int z, int x) {
+        double x2 = power(x, 2, X_EXACT_LIMIT);
+        double c3 = power(c, 3, C_EXACT_LIMIT);
+        double z4 = power(z, 4, Z_EXACT_LIMIT);
+        double y7 = power(y, 7, Y_EXACT_LIMIT);
+
+        return 10.0 * a * (x2 + 3.0 * c3 * z4 - 5.0 * y7);
+    }
 
-        this.gValue = 10.0 * a * (x2 + 3.0 * c3 * z4 - 5.0 * y7);
+    // Potęga przez mnożenie long, gdy |base| <= exactLimit, czyli wynik mieści się dokładnie w double (2^53);
+    // Math.pow zwraca wtedy dokładnie tę samą wartość, tylko kilkadziesiąt razy wolniej
+    private static double power(int base, int exponent, int exactLimit) {
+        if (base > exactLimit || base < -exactLimit) {
+            return Math.pow(base, exponent);
+        }
+        long result = base;
+        for (int i = 1; i < exponent; i++) {
+            result *= base;
+        }
+        return result;
     }
-    
+
     public double getGValue() {
         return this.gValue;
     }
 
+    public long getSortKey() {
+        return this.sortKey;
+    }
+
+    // Bity double przekształcone tak, by porządek long był zgodny z Double.compare (także -0.0 i NaN).
+    public static long toSortKey(double value) {
+        long bits = Double.doubleToLongBits(value);
+        return bits ^ ((bits >> 63) & Long.MAX_VALUE);
+    }
+
+    public static double fromSortKey(long key) {
+        return Double.longBitsToDouble(key ^ ((key >> 63) & Long.MAX_VALUE));
+    }
+
+    public void getFields(int[] target) {
+        target[0] = a;
+        target[1] = y;
+        target[2] = c;
+        target[3] = z;
+        target[4] = x;
+    }
+
     public void write(DataOutputStream dos) throws IOException {
         dos.writeInt(a);
         dos.writeInt(y);
@@ -53,6 +181,33 @@ public class Record implements Comparable<Record> {
     }
 
 
+    public void encode(ByteBuffer buffer, int offset) {
+        buffer.putInt(offset, a);
+        buffer.putInt(offset + 4, y);
+        buffer.putInt(offset + 8, c);
+        buffer.putInt(offset + 12, z);
+        buffer.putInt(offset + 16, x);
+    }
+
+    public void decode(ByteBuffer buffer, int offset) {
+        set(buffer.getInt(offset),
+                buffer.getInt(offset + 4),
+                buffer.getInt(offset + 8),
+                buffer.getInt(offset + 12),
+                buffer.getInt(offset + 16));
+    }
+
+    // Odczyt rekordu z zapisanym kluczem: g() nie jest liczone ponownie.
+    public void decode(ByteBuffer buffer, int offset, long key) {
+        this.a = buffer.getInt(offset);
+        this.y = buffer.getInt(offset + 4);
+        this.c = buffer.getInt(offset + 8);
+        this.z = buffer.getInt(offset + 12);
+        this.x = buffer.getInt(offset + 16);
+        this.sortKey = key;
+        this.gValue = fromSortKey(key);
+    }
+
     public boolean read(DataInputStream dis) throws IOException {
         try {
             a = dis.readInt();
@@ -70,7 +225,7 @@ public class Record implements Comparable<Record> {
 
     @Override
     public int compareTo(Record other) {
-        return Double.compare(this.gValue, other.getGValue());
+        return Long.compare(this.sortKey, other.sortKey);
     }
 
     @Override
@@ -0,0 +1,43 @@
+package org.example;
+
+import java.nio.ByteBuffer;
+
+public enum RecordLayout {
+    // Pięć pól int, jak w pliku wejściowym
+    PLAIN(Record.RECORD_SIZE),
+    // Pięć pól int i gotowy klucz sortowania (long) - dla taśm pomocniczych
+    KEYED(Record.RECORD_SIZE + Long.BYTES),
+    // Ramki o zmiennej długości (varint z różnic pól); kodowanie jest w Tape, encode/decode nie obsługują
+    COMPRESSED(Record.RECORD_SIZE);
+
+    private final int recordSize;
+
+    RecordLayout(int recordSize) {
+        this.recordSize = recordSize;
+    }
+
+    public int recordSize() {
+        return recordSize;
+    }
+
+    void encode(Record record, ByteBuffer buffer, int offset) {
+        if (this == COMPRESSED) {
+            throw new UnsupportedOperationException("Układ COMPRESSED jest kodowany ramkami w Tape");
+        }
+        record.encode(buffer, offset);
+        if (this == KEYED) {
+            buffer.putLong(offset + Record.RECORD_SIZE, record.getSortKey());
+        }
+    }
+
+    void decode(Record record, ByteBuffer buffer, int offset) {
+        if (this == COMPRESSED) {
+            throw new UnsupportedOperationException("Układ COMPRESSED jest kodowany ramkami w Tape");
+        }
+        if (this == KEYED) {
+            record.decode(buffer, offset, buffer.getLong(offset + Record.RECORD_SIZE));
+        } else {
+            record.decode(buffer, offset);
+        }
+    }
+}
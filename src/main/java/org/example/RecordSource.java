@@ -0,0 +1,18 @@
+package org.example;
+
+import java.io.IOException;
+
+public interface RecordSource {
+
+    Record readRecord() throws IOException;
+
+    // Wczytuje następny rekord do target; taśmy robią to bez tworzenia nowego obiektu
+    default boolean readRecord(Record target) throws IOException {
+        Record record = readRecord();
+        if (record == null) {
+            return false;
+        }
+        target.copyFrom(record);
+        return true;
+    }
+}
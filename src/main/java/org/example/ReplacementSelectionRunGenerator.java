@@ -0,0 +1,72 @@
+package org.example;
+
+import java.io.IOException;
+import java.util.PriorityQueue;
+
+public class ReplacementSelectionRunGenerator implements RunGenerator {
+
+    private final int heapCapacity;
+
+    public ReplacementSelectionRunGenerator(int heapCapacity) {
+        this.heapCapacity = Math.max(1, heapCapacity);
+    }
+
+    public int getHeapCapacity() {
+        return heapCapacity;
+    }
+
+    @Override
+    public RunStats generate(RecordSource in, Tape[] outputs) throws IOException {
+        RunStatsCollector collector = new RunStatsCollector();
+        PriorityQueue<Entry> heap = new PriorityQueue<>(heapCapacity, (x, y) -> {
+            if (x.run != y.run) {
+                return Integer.compare(x.run, y.run);
+            }
+            return collector.compare(x.record, y.record);
+        });
+
+        Record record;
+        while (heap.size() < heapCapacity && (record = in.readRecord()) != null) {
+            heap.add(new Entry(0, record));
+        }
+
+        int currentRun = 0;
+        int current = 0;
+        long length = 0;
+
+        while (!heap.isEmpty()) {
+            Entry entry = heap.poll();
+            if (entry.run != currentRun) {
+                collector.add(length);
+                length = 0;
+                currentRun = entry.run;
+                current = (current + 1) % outputs.length;
+            }
+
+            Record last = entry.record;
+            outputs[current].writeRecord(last);
+            length++;
+
+            // Rekord mniejszy od ostatnio wypisanego trafia do następnej serii
+            Record next = in.readRecord();
+            if (next != null) {
+                entry.run = (collector.compare(next, last) >= 0) ? currentRun : currentRun + 1;
+                entry.record = next;
+                heap.add(entry);
+            }
+        }
+        collector.add(length);
+
+        return collector.toStats();
+    }
+
+    private static final class Entry {
+        private int run;
+        private Record record;
+
+        private Entry(int run, Record record) {
+            this.run = run;
+            this.record = record;
+        }
+    }
+}
@@ -0,0 +1,9 @@
+package org.example;
+
+import java.io.IOException;
+
+public interface RunGenerator {
+
+    // Zapisuje kolejne serie naprzemiennie na taśmy wyjściowe (outputs[0], outputs[1], ...).
+    RunStats generate(RecordSource in, Tape[] outputs) throws IOException;
+}
@@ -0,0 +1,71 @@
+package org.example;
+
+import java.io.IOException;
+import java.util.PriorityQueue;
+
+class RunMerger {
+
+    private final Tape[] inputs;
+    private final Record[] heads;
+    private final Record[] spares;
+    private final PriorityQueue<Integer> heap;
+    private long comparisons = 0;
+
+    RunMerger(Tape[] inputs) throws IOException {
+        this.inputs = inputs;
+        this.heads = new Record[inputs.length];
+        this.spares = new Record[inputs.length];
+        this.heap = new PriorityQueue<>(Math.max(1, inputs.length), (i, j) -> {
+            comparisons++;
+            int cmp = heads[i].compareTo(heads[j]);
+            return (cmp != 0) ? cmp : Integer.compare(i, j);
+        });
+
+        for (int i = 0; i < inputs.length; i++) {
+            heads[i] = inputs[i].readRecord();
+            spares[i] = new Record();
+        }
+    }
+
+    // Rozpoczyna kolejną grupę: po jednej serii z każdej niepustej taśmy.
+    boolean nextRun() {
+        heap.clear();
+        for (int i = 0; i < inputs.length; i++) {
+            if (heads[i] != null) {
+                heap.add(i);
+            }
+        }
+        return !heap.isEmpty();
+    }
+
+    long getComparisons() {
+        return comparisons;
+    }
+
+    int activeInputs() {
+        return heap.size();
+    }
+
+    // Zwrócony rekord jest ważny do następnego wywołania next().
+    Record next() throws IOException {
+        Integer i = heap.poll();
+        if (i == null) {
+            return null;
+        }
+
+        Record record = heads[i];
+        Record following = spares[i];
+        if (inputs[i].readRecord(following)) {
+            heads[i] = following;
+            spares[i] = record;
+            comparisons++;
+            if (following.compareTo(record) >= 0) {
+                heap.add(i);
+            }
+        } else {
+            heads[i] = null;
+            spares[i] = record;
+        }
+        return record;
+    }
+}
@@ -0,0 +1,13 @@
+package org.example;
+
+public record RunStats(
+        long runs,
+        long records,
+        long minLength,
+        long maxLength,
+        long comparisons
+) {
+    public double meanLength() {
+        return (runs == 0) ? 0.0 : (double) records / runs;
+    }
+}
@@ -0,0 +1,30 @@
+package org.example;
+
+class RunStatsCollector {
+
+    private long runs = 0;
+    private long records = 0;
+    private long minLength = Long.MAX_VALUE;
+    private long maxLength = 0;
+    private long comparisons = 0;
+
+    void add(long length) {
+        if (length <= 0) {
+            return;
+        }
+        runs++;
+        records += length;
+        minLength = Math.min(minLength, length);
+        maxLength = Math.max(maxLength, length);
+    }
+
+    // Porównanie liczone do statystyk generatora
+    int compare(Record left, Record right) {
+        comparisons++;
+        return left.compareTo(right);
+    }
+
+    RunStats toStats() {
+        return new RunStats(runs, records, (runs == 0) ? 0 : minLength, maxLength, comparisons);
+    }
+}
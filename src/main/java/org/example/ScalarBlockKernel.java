@@ -0,0 +1,63 @@
+package org.example;
+
+import java.nio.ByteBuffer;
+
+// Te same pętle co w Record, tylko po kolumnach bloku; działa bez modułu wektorowego
+final class ScalarBlockKernel implements BlockKernel {
+
+    static final ScalarBlockKernel INSTANCE = new ScalarBlockKernel();
+
+    private ScalarBlockKernel() {
+    }
+
+    @Override
+    public void decode(ByteBuffer block, int offset, int count, int recordSize, BlockColumns target) {
+        for (int i = 0; i < count; i++) {
+            int position = offset + i * recordSize;
+            target.a[i] = block.getInt(position);
+            target.y[i] = block.getInt(position + 4);
+            target.c[i] = block.getInt(position + 8);
+            target.z[i] = block.getInt(position + 12);
+            target.x[i] = block.getInt(position + 16);
+        }
+        target.count = count;
+    }
+
+    @Override
+    public void computeKeys(BlockColumns block) {
+        computeKeys(block, 0);
+    }
+
+    // Od pozycji from; wektorowy kernel liczy tak resztę bloku i pasy z polami poza dokładnym zakresem
+    static void computeKeys(BlockColumns block, int from) {
+        for (int i = from; i < block.count; i++) {
+            block.keys[i] = keyAt(block, i);
+        }
+    }
+
+    static long keyAt(BlockColumns block, int i) {
+        return Record.toSortKey(Record.g(block.a[i], block.y[i], block.c[i], block.z[i], block.x[i]));
+    }
+
+    @Override
+    public int findDescents(BlockColumns block, long previousKey, int[] positions) {
+        return findDescents(block, previousKey, positions, 0, 0);
+    }
+
+    static int findDescents(BlockColumns block, long previousKey, int[] positions, int from, int found) {
+        long previous = (from == 0) ? previousKey : block.keys[from - 1];
+        for (int i = from; i < block.count; i++) {
+            long key = block.keys[i];
+            if (key < previous) {
+                positions[found++] = i;
+            }
+            previous = key;
+        }
+        return found;
+    }
+
+    @Override
+    public String name() {
+        return "skalarny";
+    }
+}
@@ -0,0 +1,83 @@
+package org.example;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Katalogi (najlepiej na różnych dyskach) na taśmy pomocnicze sortowania. Każda taśma dostaje plik
+// o unikalnej nazwie, więc sortowania w tym samym katalogu nie nadpisują sobie taśm. Taśmy o kolejnych
+// numerach trafiają na kolejne katalogi: serie czytane z jednych dysków są zapisywane na inne,
+// a przepustowość scalania rośnie z liczbą urządzeń.
+public class ScratchSpace {
+
+    private final List<Path> directories;
+    private final AtomicInteger next = new AtomicInteger();
+
+    public ScratchSpace(List<Path> directories) throws IOException {
+        if (directories.isEmpty()) {
+            throw new IllegalArgumentException("Podaj co najmniej jeden katalog na taśmy pomocnicze");
+        }
+        this.directories = List.copyOf(directories);
+        for (Path directory : this.directories) {
+            Files.createDirectories(directory);
+        }
+    }
+
+    // Katalog roboczy, jak dotychczasowe taśmy pomocnicze
+    public static ScratchSpace workingDirectory() {
+        try {
+            return new ScratchSpace(List.of(Path.of(".")));
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    // Lista katalogów oddzielonych przecinkami, np. "/mnt/ssd0/tmp,/mnt/ssd1/tmp"
+    public static ScratchSpace parse(String directories) throws IOException {
+        List<Path> paths = new ArrayList<>();
+        for (String entry : directories.split(",")) {
+            if (!entry.isBlank()) {
+                paths.add(Path.of(entry.trim()));
+            }
+        }
+        return new ScratchSpace(paths);
+    }
+
+    public List<Path> getDirectories() {
+        return directories;
+    }
+
+    // Nowy pusty plik na kolejnym katalogu, np. dla serii sortowania równoległego
+    public String allocate(String prefix) throws IOException {
+        return allocate(prefix, next.getAndIncrement());
+    }
+
+    // device - numer taśmy w sorterze; createTempFile tworzy plik atomowo, więc nazwa jest unikalna
+    // także między procesami
+    public String allocate(String prefix, int device) throws IOException {
+        return Files.createTempFile(directoryOf(device), prefix + "_", ".bin").toString();
+    }
+
+    // Stała nazwa na katalogu taśmy device, dla taśm, które wznowione sortowanie musi odnaleźć
+    public String place(String fileName, int device) {
+        return directoryOf(device).resolve(fileName).toString();
+    }
+
+    // Usuwa plik taśmy razem z ewentualnym indeksem bloków
+    public void release(String fileName) throws IOException {
+        Files.deleteIfExists(Path.of(fileName));
+        BlockIndex.delete(fileName);
+    }
+
+    private Path directoryOf(int device) {
+        return directories.get(Math.floorMod(device, directories.size()));
+    }
+
+    @Override
+    public String toString() {
+        return directories.toString();
+    }
+}
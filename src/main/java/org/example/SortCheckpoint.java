@@ -0,0 +1,137 @@
+package org.example;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32C;
+
+// Plik <taśma>.checkpoint: ostatnia zakończona część fazy sortowania i stan taśm, z których można ją
+// kontynuować. DISTRIBUTED - serie fazy rozdzielone na taśmy pomocnicze (wejście, B, C),
+// MERGED - wynik scalania fazy (plik, który zastępuje wejście). Taśma jest opisana długością,
+// czasem modyfikacji i sumą CRC32C; checksum = -1, gdy suma nie jest znana (nieposortowane wejście).
+public record SortCheckpoint(int recordSize, int phase, Stage stage, long runs, List<TapeState> tapes) {
+
+    public enum Stage {
+        DISTRIBUTED,
+        MERGED
+    }
+
+    public record TapeState(String fileName, long length, long modified, long checksum) {
+
+        // Stan pliku po zapisie; wcześniej trzeba go zapisać na dysk (force)
+        public static TapeState capture(String fileName, long checksum) throws IOException {
+            Path path = Path.of(fileName);
+            return new TapeState(fileName, Files.size(path), modifiedOf(path), checksum);
+        }
+
+        // Ten sam stan pod inną nazwą pliku (po przeniesieniu zachowuje długość i czas modyfikacji)
+        public TapeState renamed(String newFileName) {
+            return new TapeState(newFileName, length, modified, checksum);
+        }
+
+        // Porównanie z plikiem na dysku; suma kontrolna wymaga odczytu całego pliku
+        public boolean matches() throws IOException {
+            Path path = Path.of(fileName);
+            if (!Files.exists(path) || Files.size(path) != length || modifiedOf(path) != modified) {
+                return false;
+            }
+            return checksum < 0 || checksumOf(path) == checksum;
+        }
+    }
+
+    public SortCheckpoint {
+        tapes = List.copyOf(tapes);
+    }
+
+    public static Path pathOf(String tapeName) {
+        return Path.of(tapeName + ".checkpoint");
+    }
+
+    // null, gdy taśma nie ma punktu kontrolnego
+    public static SortCheckpoint read(String tapeName) throws IOException {
+        Path path = pathOf(tapeName);
+        if (!Files.exists(path)) {
+            return null;
+        }
+        Properties properties = new Properties();
+        try (Reader reader = Files.newBufferedReader(path)) {
+            properties.load(reader);
+        }
+        try {
+            List<TapeState> tapes = new ArrayList<>();
+            int count = Integer.parseInt(properties.getProperty("tapes"));
+            for (int i = 0; i < count; i++) {
+                String[] entry = properties.getProperty("tape." + i).split(",");
+                tapes.add(new TapeState(properties.getProperty("tape." + i + ".file"), Long.parseLong(entry[0]),
+                        Long.parseLong(entry[1]), Long.parseLong(entry[2])));
+            }
+            return new SortCheckpoint(Integer.parseInt(properties.getProperty("recordSize")),
+                    Integer.parseInt(properties.getProperty("phase")),
+                    Stage.valueOf(properties.getProperty("stage")),
+                    Long.parseLong(properties.getProperty("runs")), tapes);
+        } catch (RuntimeException e) {
+            throw new IOException("Uszkodzony punkt kontrolny " + path + ": " + e.getMessage(), e);
+        }
+    }
+
+    // Zapis przez plik tymczasowy zapisany na dysk przed przeniesieniem, jak w TapeManifest
+    public void write(String tapeName) throws IOException {
+        Properties properties = new Properties();
+        properties.setProperty("recordSize", Integer.toString(recordSize));
+        properties.setProperty("phase", Integer.toString(phase));
+        properties.setProperty("stage", stage.name());
+        properties.setProperty("runs", Long.toString(runs));
+        properties.setProperty("tapes", Integer.toString(tapes.size()));
+        for (int i = 0; i < tapes.size(); i++) {
+            TapeState tape = tapes.get(i);
+            properties.setProperty("tape." + i + ".file", tape.fileName());
+            properties.setProperty("tape." + i, tape.length() + "," + tape.modified() + "," + tape.checksum());
+        }
+
+        Path path = pathOf(tapeName);
+        Path temporary = Path.of(path + ".tmp");
+        try (Writer writer = Files.newBufferedWriter(temporary)) {
+            properties.store(writer, "Punkt kontrolny sortowania taśmy " + tapeName);
+        }
+        force(temporary.toString());
+        Files.move(temporary, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    public static void delete(String tapeName) throws IOException {
+        Files.deleteIfExists(pathOf(tapeName));
+    }
+
+    // Zawartość pliku na dysku, zanim punkt kontrolny zacznie się na nią powoływać
+    public static void force(String fileName) throws IOException {
+        try (FileChannel channel = FileChannel.open(Path.of(fileName), StandardOpenOption.WRITE)) {
+            channel.force(true);
+        }
+    }
+
+    static long checksumOf(Path path) throws IOException {
+        CRC32C checksum = new CRC32C();
+        ByteBuffer buffer = ByteBuffer.allocate(1 << 16);
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            while (channel.read(buffer) > 0) {
+                buffer.flip();
+                checksum.update(buffer);
+                buffer.clear();
+            }
+        }
+        return checksum.getValue();
+    }
+
+    private static long modifiedOf(Path path) throws IOException {
+        return Files.getLastModifiedTime(path).to(TimeUnit.MICROSECONDS);
+    }
+}
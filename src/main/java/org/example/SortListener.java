@@ -0,0 +1,38 @@
+package org.example;
+
+// Wywoływany przez sortery na wątku, który wywołał sort(); wszystkie metody są opcjonalne
+public interface SortListener {
+
+    SortListener NONE = new SortListener() { };
+
+    default void phaseStarted(int phase) {
+    }
+
+    // Przyrost liczników jednej taśmy w zakończonej fazie (przed phaseFinished tej fazy)
+    default void tapeMeasured(TapeStats stats) {
+    }
+
+    default void phaseFinished(PhaseStats stats) {
+    }
+
+    // Ten sam słuchacz dla sortowania zagnieżdżonego: numery faz przesunięte o offset
+    default SortListener shifted(int offset) {
+        SortListener target = this;
+        return new SortListener() {
+            @Override
+            public void phaseStarted(int phase) {
+                target.phaseStarted(phase + offset);
+            }
+
+            @Override
+            public void tapeMeasured(TapeStats stats) {
+                target.tapeMeasured(stats.withPhase(stats.phase() + offset));
+            }
+
+            @Override
+            public void phaseFinished(PhaseStats stats) {
+                target.phaseFinished(stats.withPhase(stats.phase() + offset));
+            }
+        };
+    }
+}
@@ -0,0 +1,58 @@
+package org.example;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+@Name("org.example.SortPhase")
+@Label("Sort Phase")
+@Category("External Sort")
+class SortPhaseEvent extends Event {
+
+    @Label("Phase")
+    int phase;
+
+    @Label("Fan-in")
+    int fanIn;
+
+    @Label("Runs")
+    long runs;
+
+    @Label("Records")
+    long records;
+
+    @Label("Blocks Read")
+    long diskReads;
+
+    @Label("Blocks Written")
+    long diskWrites;
+
+    @Label("Bytes Read")
+    @DataAmount
+    long bytesRead;
+
+    @Label("Bytes Written")
+    @DataAmount
+    long bytesWritten;
+
+    @Label("Comparisons")
+    long comparisons;
+
+    void commit(PhaseStats stats) {
+        end();
+        if (shouldCommit()) {
+            phase = stats.phase();
+            fanIn = stats.fanIn();
+            runs = stats.runs();
+            records = stats.records();
+            diskReads = stats.diskReads();
+            diskWrites = stats.diskWrites();
+            bytesRead = stats.bytesRead();
+            bytesWritten = stats.bytesWritten();
+            comparisons = stats.comparisons();
+            commit();
+        }
+    }
+}
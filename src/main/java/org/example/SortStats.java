@@ -1,8 +1,15 @@
 package org.example;
 
+import java.util.List;
+
 public record SortStats(
         int phases,
         long diskReads,
         long diskWrites,
-        long durationMs
-) {}
+        long durationMs,
+        List<PhaseStats> phaseDetails
+) {
+    public SortStats(int phases, long diskReads, long diskWrites, long durationMs) {
+        this(phases, diskReads, diskWrites, durationMs, List.of());
+    }
+}
@@ -0,0 +1,169 @@
+package org.example;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+// Wynik StreamingSorter (albo TopKSelector); close() kończy ostatnią fazę i usuwa taśmy pomocnicze
+public class SortedIterator implements Iterator<Record>, Closeable {
+
+    private final Record[] memory;
+    private final int memoryCount;
+    private int memoryPos = 0;
+
+    private final RunMerger merger;
+    private final Tape result;
+    private final Record spare = new Record();
+    private final boolean ascending;
+    private final long runs;
+    private final Tape[] tapes;
+    private final PhaseTracker tracker;
+    private final long startTime;
+    private final int phases;
+
+    private Record pending = null;
+    private long delivered = 0;
+    private boolean finished = false;
+    private SortStats stats = null;
+
+    SortedIterator(Record[] memory, int memoryCount, Tape[] tapes, PhaseTracker tracker, long startTime) {
+        this(memory, memoryCount, true, tapes, tracker, startTime);
+    }
+
+    // ascending = false: rekordy malejąco (np. największe z TopKSelector), strumień nie jest wtedy SORTED
+    SortedIterator(Record[] memory, int memoryCount, boolean ascending, Tape[] tapes, PhaseTracker tracker,
+                   long startTime) {
+        this.memory = memory;
+        this.memoryCount = memoryCount;
+        this.merger = null;
+        this.result = null;
+        this.ascending = ascending;
+        this.runs = (memoryCount > 0) ? 1 : 0;
+        this.tapes = tapes;
+        this.tracker = tracker;
+        this.startTime = startTime;
+        this.phases = 1;
+    }
+
+    SortedIterator(RunMerger merger, long runs, Tape[] tapes, PhaseTracker tracker, long startTime, int phases) {
+        this.memory = null;
+        this.memoryCount = 0;
+        this.merger = merger;
+        this.result = null;
+        this.ascending = true;
+        this.runs = runs;
+        this.tapes = tapes;
+        this.tracker = tracker;
+        this.startTime = startTime;
+        this.phases = phases;
+        merger.nextRun();
+    }
+
+    // Wynik gotowy na taśmie (otwartej do odczytu): ostatnia faza to tylko jego odczyt
+    SortedIterator(Tape result, boolean ascending, Tape[] tapes, PhaseTracker tracker, long startTime, int phases) {
+        this.memory = null;
+        this.memoryCount = 0;
+        this.merger = null;
+        this.result = result;
+        this.ascending = ascending;
+        this.runs = 1;
+        this.tapes = tapes;
+        this.tracker = tracker;
+        this.startTime = startTime;
+        this.phases = phases;
+    }
+
+    @Override
+    public boolean hasNext() {
+        if (pending != null) {
+            return true;
+        }
+        if (finished) {
+            return false;
+        }
+        try {
+            if (merger != null) {
+                pending = merger.next();
+            } else if (result != null) {
+                pending = result.readRecord(spare) ? spare : null;
+            } else {
+                pending = (memoryPos < memoryCount) ? memory[memoryPos++] : null;
+            }
+            if (pending == null) {
+                close();
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return pending != null;
+    }
+
+    @Override
+    public Record next() {
+        Record record = new Record();
+        if (!next(record)) {
+            throw new NoSuchElementException();
+        }
+        return record;
+    }
+
+    // Wersja bez alokacji: kopiuje kolejny rekord do target
+    public boolean next(Record target) {
+        if (!hasNext()) {
+            return false;
+        }
+        target.copyFrom(pending);
+        pending = null;
+        delivered++;
+        return true;
+    }
+
+    public Stream<Record> stream() {
+        int characteristics = Spliterator.ORDERED | Spliterator.NONNULL | (ascending ? Spliterator.SORTED : 0);
+        Spliterator<Record> spliterator = Spliterators.spliteratorUnknownSize(this, characteristics);
+        return StreamSupport.stream(spliterator, false).onClose(() -> {
+            try {
+                close();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+    }
+
+    // Statystyki są pełne dopiero po wyczerpaniu iteratora albo po close()
+    public SortStats getStats() {
+        return stats;
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (finished) {
+            return;
+        }
+        finished = true;
+        pending = null;
+
+        for (Tape tape : tapes) {
+            tape.close();
+        }
+        if (merger != null) {
+            tracker.end(phases, (int) runs, runs, delivered, merger.getComparisons());
+        } else if (result != null) {
+            tracker.end(phases, 0, runs, delivered, 0);
+        }
+        for (Tape tape : tapes) {
+            Files.deleteIfExists(Path.of(tape.getFileName()));
+        }
+
+        stats = new SortStats(phases, tracker.getTotalReads(), tracker.getTotalWrites(),
+                System.currentTimeMillis() - startTime, tracker.getPhases());
+    }
+}
@@ -0,0 +1,22 @@
+package org.example;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+public enum StorageType {
+    RAF,
+    CHANNEL,
+    MMAP;
+
+    TapeStorage open(String fileName, String mode) throws IOException {
+        return switch (this) {
+            case RAF -> new RandomAccessStorage(fileName, mode);
+            case CHANNEL -> new ChannelStorage(fileName, mode);
+            case MMAP -> new MappedStorage(fileName, mode);
+        };
+    }
+
+    ByteBuffer allocate(int capacity) {
+        return (this == RAF) ? ByteBuffer.allocate(capacity) : ByteBuffer.allocateDirect(capacity);
+    }
+}
@@ -0,0 +1,186 @@
+package org.example;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.stream.Stream;
+
+// Sortuje strumień rekordów bez pliku wejściowego i bez zapisu wyniku: serie z dużego bufora trafiają
+// na taśmy pomocnicze, a ostatnie scalanie jest wykonywane leniwie, w miarę pobierania rekordów.
+public class StreamingSorter {
+
+    private final TapeFactory tapes;
+    private final int bufferCapacity;
+    private final int fanIn;
+
+    public StreamingSorter(int recordSize, int blockSize) {
+        this(new TapeFactory(recordSize, blockSize), 64, 16);
+    }
+
+    // bufferCount - liczba bloków pamięci na serię początkową, fanIn - liczba taśm scalanych naraz
+    public StreamingSorter(TapeFactory tapes, int bufferCount, int fanIn) {
+        if (fanIn < 2) {
+            throw new IllegalArgumentException("Stopień scalania k musi być >= 2, podano " + fanIn);
+        }
+        this.tapes = tapes;
+        this.bufferCapacity = ChunkRunGenerator.capacityOf(tapes.getRecordSize(), tapes.getBlockSize(), bufferCount);
+        this.fanIn = fanIn;
+    }
+
+    public SortedIterator sort(Iterator<Record> input) throws IOException {
+        return sort(() -> {
+            if (!input.hasNext()) {
+                return null;
+            }
+            // Wywołujący może podawać wciąż ten sam obiekt, a bufor serii przechowuje referencje
+            Record record = new Record();
+            record.copyFrom(input.next());
+            return record;
+        }, SortListener.NONE);
+    }
+
+    public SortedIterator sort(Stream<Record> input) throws IOException {
+        SortedIterator sorted = sort(input.iterator());
+        input.close();
+        return sorted;
+    }
+
+    // Surowe rekordy po 5 liczb int (big-endian) i ewentualnym ładunku, jak w plikach taśm
+    public SortedIterator sort(InputStream input) throws IOException {
+        int recordSize = tapes.getRecordSize();
+        int blockRecords = Math.max(1, tapes.getBlockSize() / recordSize);
+        ByteBuffer block = ByteBuffer.allocate(blockRecords * recordSize);
+        int[] position = {0, 0};
+        return sort(() -> {
+            if (position[0] + recordSize > position[1]) {
+                position[0] = 0;
+                position[1] = input.readNBytes(block.array(), 0, block.capacity());
+                // Krótszy odczyt oznacza koniec strumienia; urwany rekord to błąd, jak w TextRecordReader
+                if (position[1] % recordSize != 0) {
+                    throw new EOFException("Niepełny rekord na końcu strumienia: " + (position[1] % recordSize)
+                            + " z " + recordSize + " bajtów");
+                }
+                if (position[1] < recordSize) {
+                    return null;
+                }
+            }
+            Record record = new Record();
+            record.decode(block, position[0]);
+            if (recordSize > Record.RECORD_SIZE) {
+                record.decodePayload(block, position[0] + Record.RECORD_SIZE, recordSize - Record.RECORD_SIZE);
+            }
+            position[0] += recordSize;
+            return record;
+        }, SortListener.NONE);
+    }
+
+    public SortedIterator sort(RecordSource input, SortListener listener) throws IOException {
+        Tape[] front = new Tape[fanIn];
+        Tape[] back = new Tape[fanIn];
+        Tape[] all = new Tape[2 * fanIn];
+        for (int i = 0; i < fanIn; i++) {
+            front[i] = tapes.createScratch("tape_s", i);
+            back[i] = tapes.createScratch("tape_s", fanIn + i);
+            all[i] = front[i];
+            all[fanIn + i] = back[i];
+        }
+        // Taśmy usuwa SortedIterator.close(); po błędzie w trakcie faz trzeba je usunąć tutaj
+        try {
+            PhaseTracker tracker = new PhaseTracker(listener, all);
+            long startTime = System.currentTimeMillis();
+
+            // Faza 1: serie początkowe; jeśli całe wejście mieści się w buforze, taśmy nie są potrzebne
+            tracker.begin(1);
+            RunStatsCollector collector = new RunStatsCollector();
+            Record[] buffer = new Record[bufferCapacity];
+            int loaded = 0;
+            Record next = input.readRecord();
+            while (next != null && loaded < bufferCapacity) {
+                buffer[loaded++] = next;
+                next = input.readRecord();
+            }
+            Arrays.sort(buffer, 0, loaded, collector::compare);
+
+            if (next == null) {
+                tracker.end(1, 0, (loaded > 0) ? 1 : 0, loaded, collector.toStats().comparisons());
+                return new SortedIterator(buffer, loaded, all, tracker, startTime);
+            }
+
+            for (Tape tape : all) {
+                tape.reset("rw");
+                tape.truncate();
+            }
+            long runs = 0;
+            long records = 0;
+            while (loaded > 0) {
+                Tape out = front[(int) (runs % fanIn)];
+                for (int i = 0; i < loaded; i++) {
+                    out.writeRecord(buffer[i]);
+                    buffer[i] = null;
+                }
+                runs++;
+                records += loaded;
+
+                loaded = 0;
+                while (next != null && loaded < bufferCapacity) {
+                    buffer[loaded++] = next;
+                    next = input.readRecord();
+                }
+                Arrays.sort(buffer, 0, loaded, collector::compare);
+            }
+            buffer = null;
+            tracker.end(1, 0, runs, records, collector.toStats().comparisons());
+
+            // Kolejne fazy: po jednej serii z każdej taśmy, aż zostanie najwyżej jedna seria na taśmę
+            int phase = 1;
+            while (runs > fanIn) {
+                phase++;
+                tracker.begin(phase);
+                for (Tape tape : front) {
+                    tape.reset("r");
+                }
+                for (Tape tape : back) {
+                    tape.reset("rw");
+                    tape.truncate();
+                }
+
+                RunMerger merger = new RunMerger(front);
+                long merged = 0;
+                records = 0;
+                while (merger.nextRun()) {
+                    Tape out = back[(int) (merged % fanIn)];
+                    Record record;
+                    while ((record = merger.next()) != null) {
+                        out.writeRecord(record);
+                        records++;
+                    }
+                    merged++;
+                }
+                for (Tape tape : all) {
+                    tape.close();
+                }
+                tracker.end(phase, fanIn, runs, records, merger.getComparisons());
+
+                runs = merged;
+                Tape[] swap = front;
+                front = back;
+                back = swap;
+            }
+
+            // Ostatnie scalanie: bez taśmy wyjściowej, rekordy idą prosto do wywołującego
+            tracker.begin(phase + 1);
+            for (Tape tape : front) {
+                tape.reset("r");
+            }
+            return new SortedIterator(new RunMerger(front), runs, all, tracker, startTime, phase + 1);
+        } catch (IOException | RuntimeException e) {
+            for (Tape tape : all) {
+                tapes.deleteScratch(tape);
+            }
+            throw e;
+        }
+    }
+}
@@ -0,0 +1,208 @@
+package org.example;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+// Sortowanie przez klucze dla szerokich rekordów: scalane są tylko pary (pola klucza, numer rekordu),
+// a pełne rekordy są przepisywane raz, na końcu, w kolejności posortowanych par.
+public class TagSorter implements ExternalSorter {
+
+    // Para: pięć pól, z których liczone jest g(), i numer rekordu w pliku wejściowym
+    public static final int TAG_SIZE = Record.RECORD_SIZE + Long.BYTES;
+
+    // Duży blok dla gęstego przepisywania, gdy okno obejmuje znaczną część pliku
+    private static final int GATHER_BLOCKS = 16;
+
+    private final TapeFactory tapes;
+    private final TapeFactory tagTapes;
+    private final int threads;
+    private final int bufferCount;
+    private final int fanIn;
+    private final int windowCapacity;
+
+    public TagSorter(TapeFactory tapes, int threads, int bufferCount, int fanIn) {
+        this.tapes = tapes;
+        this.tagTapes = new TapeFactory(TAG_SIZE, tapes.getBlockSize(), tapes.getStorageType(),
+                tapes.getAsyncDepth(), tapes.getScratchLayout(), false, tapes.getScratch());
+        this.threads = threads;
+        this.bufferCount = bufferCount;
+        this.fanIn = fanIn;
+        this.windowCapacity = ChunkRunGenerator.capacityOf(tapes.getRecordSize(), tapes.getBlockSize(), bufferCount);
+    }
+
+    // Wybiera sortowanie przez klucze albo zwykłe sortowanie równoległe na podstawie rozmiaru pliku
+    public static ExternalSorter auto(TapeFactory tapes, int threads, int bufferCount, int fanIn) {
+        return (inputFileName, listener) -> {
+            long records = Files.size(Path.of(inputFileName)) / tapes.getRecordSize();
+            boolean tag = prefersTagSort(tapes.getRecordSize(), tapes.getBlockSize(), records, bufferCount, fanIn);
+            System.out.println("Rekord " + tapes.getRecordSize() + " B, klucz " + TAG_SIZE + " B: "
+                    + (tag ? "sortowanie przez klucze" : "sortowanie pełnych rekordów"));
+            ExternalSorter sorter = tag
+                    ? new TagSorter(tapes, threads, bufferCount, fanIn)
+                    : new ParallelExternalSorter(tapes, threads, bufferCount, fanIn);
+            return sorter.sort(inputFileName, listener);
+        };
+    }
+
+    // Porównuje szacowany koszt na rekord w bajtach: zwykle 2 * przebiegi * R,
+    // przez klucze R (wydobycie) + odczyt w kolejności par + R (zapis) + (1 + 2 * przebiegi) * T
+    public static boolean prefersTagSort(int recordSize, int blockSize, long records, int bufferCount, int fanIn) {
+        int window = ChunkRunGenerator.capacityOf(recordSize, blockSize, bufferCount);
+        int recordPasses = passes(records, window, fanIn);
+        int tagPasses = passes(records, ChunkRunGenerator.capacityOf(TAG_SIZE, blockSize, bufferCount), fanIn);
+        double direct = 2.0 * recordPasses * recordSize;
+        int gatherBlock = gatherBlockSize(recordSize, blockSize, records, window);
+        double tagged = 2.0 * recordSize + gatherCost(gatherBlock, recordSize, blockSize, records, window)
+                + (1.0 + 2.0 * tagPasses) * TAG_SIZE;
+        return tagged < direct;
+    }
+
+    // Tworzenie serii plus poziomy scalania, jak w ParallelExternalSorter
+    private static int passes(long records, int capacity, int fanIn) {
+        long runs = (records + capacity - 1) / capacity;
+        int levels = 1;
+        for (long width = fanIn; width < runs; width *= fanIn) {
+            levels++;
+        }
+        return 1 + levels;
+    }
+
+    // Rozmiar bloku przy przepisywaniu: jeden rekord, zwykły blok albo duży blok, co taniej wychodzi
+    static int gatherBlockSize(int recordSize, int blockSize, long records, int window) {
+        int best = recordSize;
+        for (int candidate : new int[] {blockSize, blockSize * GATHER_BLOCKS}) {
+            candidate = Math.max(candidate, recordSize);
+            if (gatherCost(candidate, recordSize, blockSize, records, window)
+                    < gatherCost(best, recordSize, blockSize, records, window)) {
+                best = candidate;
+            }
+        }
+        return best;
+    }
+
+    // Koszt odczytu jednego rekordu w kolejności par: bloki trafione przez okno razy
+    // (rozmiar bloku + koszt przesunięcia, liczony jak odczyt jednego zwykłego bloku)
+    private static double gatherCost(int gatherBlock, int recordSize, int blockSize, long records, int window) {
+        long blocks = Math.max(1, (records * recordSize + gatherBlock - 1) / gatherBlock);
+        long touched = Math.min(Math.min(window, records), blocks);
+        return (double) touched * (gatherBlock + blockSize) / Math.max(1, Math.min(window, records));
+    }
+
+    @Override
+    public SortStats sort(String inputFileName, SortListener listener) throws IOException {
+        System.out.println("Rozpoczęto sortowanie przez klucze pliku: " + inputFileName);
+        long startTime = System.currentTimeMillis();
+        List<PhaseStats> phases = new ArrayList<>();
+
+        // Pliki par i wyniku są czytane przez open() jak zwykłe taśmy, więc mają układ PLAIN;
+        // unikalne nazwy z katalogów pomocniczych, usuwane także po wyjątku
+        String tagFileName = tagTapes.getScratch().allocate("tape_tag", 0);
+        String outputFileName = tapes.getScratch().allocate("tape_tag_out", 1);
+        try {
+            // Faza 1: wydobycie par z pliku wejściowego
+            Tape in = tapes.open(inputFileName);
+            Tape tagOut = tagTapes.open(tagFileName);
+            PhaseTracker extract = new PhaseTracker(listener, in, tagOut);
+            extract.begin(1);
+            in.reset("r");
+            tagOut.reset("rw");
+            tagOut.truncate();
+
+            Record record = new Record();
+            Record tag = new Record();
+            byte[] index = new byte[Long.BYTES];
+            ByteBuffer indexBuffer = ByteBuffer.wrap(index);
+            long records = 0;
+            while (in.readRecord(record)) {
+                tag.copyFieldsFrom(record);
+                indexBuffer.putLong(0, records);
+                tag.setPayload(index, 0, Long.BYTES);
+                tagOut.writeRecord(tag);
+                records++;
+            }
+            in.close();
+            tagOut.close();
+            phases.add(extract.end(1, 0, 0, records, 0));
+            System.out.println("Faza 1: wydobyto " + records + " kluczy");
+
+            // Kolejne fazy: zwykłe sortowanie zewnętrzne pliku par
+            ParallelExternalSorter tagSorter = new ParallelExternalSorter(tagTapes, threads, bufferCount, fanIn);
+            SortStats tagStats = tagSorter.sort(tagFileName, listener.shifted(1));
+            for (PhaseStats phase : tagStats.phaseDetails()) {
+                phases.add(phase.withPhase(phase.phase() + 1));
+            }
+
+            // Ostatnia faza: przepisanie pełnych rekordów oknami; w oknie odczyt idzie rosnąco po pozycji w pliku
+            int gatherPhase = phases.size() + 1;
+            int gatherBlock = gatherBlockSize(tapes.getRecordSize(), tapes.getBlockSize(), records, windowCapacity);
+            Tape source = new Tape(inputFileName, tapes.getRecordSize(), gatherBlock, tapes.getStorageType());
+            Tape tags = tagTapes.open(tagFileName);
+            Tape out = tapes.open(outputFileName);
+            PhaseTracker gather = new PhaseTracker(listener, source, tags, out);
+            gather.begin(gatherPhase);
+            source.reset("r");
+            tags.reset("r");
+            out.reset("rw");
+            out.truncate();
+
+            int window = (int) Math.max(1, Math.min(windowCapacity, records));
+            Record[] slots = new Record[window];
+            for (int i = 0; i < window; i++) {
+                slots[i] = new Record();
+            }
+            long[] order = new long[window];
+            long gathered = 0;
+            while (true) {
+                int loaded = 0;
+                while (loaded < window && tags.readRecord(tag)) {
+                    // numer rekordu * rozmiar okna + miejsce w oknie: po sortowaniu kolejność odczytu z pliku
+                    order[loaded] = ByteBuffer.wrap(tag.getPayload()).getLong() * window + loaded;
+                    loaded++;
+                }
+                if (loaded == 0) {
+                    break;
+                }
+
+                Arrays.sort(order, 0, loaded);
+                for (int i = 0; i < loaded; i++) {
+                    long recordIndex = order[i] / window;
+                    int slot = (int) (order[i] % window);
+                    source.seek(recordIndex * tapes.getRecordSize());
+                    if (!source.readRecord(slots[slot])) {
+                        throw new IOException("Brak rekordu " + recordIndex + " w pliku " + inputFileName);
+                    }
+                }
+                for (int i = 0; i < loaded; i++) {
+                    out.writeRecord(slots[i]);
+                }
+                gathered += loaded;
+            }
+            source.close();
+            tags.close();
+            out.close();
+            phases.add(gather.end(gatherPhase, 0, 1, gathered, 0));
+            System.out.println("Faza " + gatherPhase + ": przepisano " + gathered + " rekordów");
+
+            Files.move(Path.of(outputFileName), Path.of(inputFileName), StandardCopyOption.REPLACE_EXISTING);
+            BlockIndex.move(outputFileName, inputFileName);
+        } finally {
+            tagTapes.getScratch().release(tagFileName);
+            tapes.getScratch().release(outputFileName);
+        }
+
+        long reads = 0;
+        long writes = 0;
+        for (PhaseStats phase : phases) {
+            reads += phase.diskReads();
+            writes += phase.diskWrites();
+        }
+        long endTime = System.currentTimeMillis();
+        return new SortStats(phases.size(), reads, writes, (endTime - startTime), phases);
+    }
+}
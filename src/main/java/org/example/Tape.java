@@ -1,31 +1,100 @@
 package org.example;
 
 import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+import java.util.function.Consumer;
+import java.util.zip.CRC32C;
 
-public class Tape {
+public class Tape implements RecordSource {
+
+    private static final int ASYNC_BLOCKS_PER_CHUNK = 16;
+
+    // Ramka układu COMPRESSED: nagłówek (długość danych, liczba rekordów - po 2 bajty bez znaku),
+    // potem pola rekordów jako varint z różnic zigzag względem poprzedniego rekordu ramki
+    private static final int FRAME_HEADER = 4;
+    private static final int MAX_ENCODED_FIELDS = 5 * 5;
+    private static final int MAX_FRAME = FRAME_HEADER + 0xFFFF;
 
     private final String fileName;
-    private RandomAccessFile file;
+    private final StorageType storageType;
+    private final int asyncDepth;
+    private final RecordLayout layout;
+    private TapeStorage file;
     private final int recordSize;
+    private final int payloadSize;
     private final int blockSize;
 
-    private final byte[] readBuffer;
+    private final ByteBuffer readBuffer;
     private int readBufferPos = 0;
     private int readBufferLimit = 0;
+    private long readFileOffset = 0;
 
-    private final byte[] writeBuffer;
+    private final ByteBuffer writeBuffer;
     private int writeBufferPos = 0;
 
     private long diskReads = 0;
     private long diskWrites = 0;
+    private long bytesRead = 0;
+    private long bytesWritten = 0;
+    private long recordsRead = 0;
+    private long recordsWritten = 0;
+    private long ioWaitNanos = 0;
+
+    private final byte[] frame;
+    private final ByteBuffer frameBuffer;
+    private int frameLength = 0;
+    private int frameRecords = 0;
+    private int frameRemaining = 0;
+    private final int[] previous = new int[5];
+    private final int[] fields = new int[5];
+
+    // Rzadki indeks bloków: budowany przy zapisie od początku taśmy, wczytywany przy pierwszym zapytaniu
+    private BlockIndex.Builder indexBuilder;
+    private BlockIndex index;
+
+    // Redukcja równych kluczy przy zapisie (MergeReducer); eliminated - rekordy usunięte przez poprzednie
+    private MergeReducer.Writer reducer;
+    private long eliminated = 0;
+
+    // Suma CRC32C bloków zapisanych od truncate(); traci ważność przy zapisie nie po kolei
+    private CRC32C checksum;
+    private long checksumBytes = 0;
+    private boolean checksumValid = false;
 
     public Tape(String fileName, int recordSize, int blockSize) throws IOException {
+        this(fileName, recordSize, blockSize, StorageType.RAF);
+    }
+
+    public Tape(String fileName, int recordSize, int blockSize, StorageType storageType) throws IOException {
+        this(fileName, recordSize, blockSize, storageType, 0);
+    }
+
+    public Tape(String fileName, int recordSize, int blockSize, StorageType storageType, int asyncDepth)
+            throws IOException {
+        this(fileName, recordSize, blockSize, storageType, asyncDepth, RecordLayout.PLAIN);
+    }
+
+    public Tape(String fileName, int recordSize, int blockSize, StorageType storageType, int asyncDepth,
+                RecordLayout layout) throws IOException {
         this.fileName = fileName;
-        this.recordSize = recordSize;
-        this.blockSize = Math.max(blockSize, recordSize);
+        this.storageType = storageType;
+        this.asyncDepth = asyncDepth;
+        this.layout = layout;
+        // recordSize > RECORD_SIZE oznacza szeroki rekord: za polami (i kluczem w KEYED) idą dane dodatkowe
+        this.payloadSize = Math.max(0, recordSize - Record.RECORD_SIZE);
+        this.recordSize = layout.recordSize() + payloadSize;
+        this.blockSize = Math.max(blockSize,
+                (layout == RecordLayout.COMPRESSED) ? FRAME_HEADER + MAX_ENCODED_FIELDS + payloadSize : this.recordSize);
+        if (layout == RecordLayout.COMPRESSED && FRAME_HEADER + MAX_ENCODED_FIELDS + payloadSize > MAX_FRAME) {
+            throw new IllegalArgumentException("Rekord " + recordSize + " B jest za duży dla układu COMPRESSED");
+        }
+        this.frame = (layout == RecordLayout.COMPRESSED) ? new byte[Math.min(this.blockSize, MAX_FRAME)] : null;
+        this.frameBuffer = (frame != null) ? ByteBuffer.wrap(frame) : null;
 
-        this.readBuffer = new byte[this.blockSize];
-        this.writeBuffer = new byte[this.blockSize];
+        this.readBuffer = storageType.allocate(this.blockSize);
+        this.writeBuffer = storageType.allocate(this.blockSize);
 
         File f = new File(fileName);
         if (!f.exists()) {
@@ -33,96 +102,467 @@ public class Tape {
         }
     }
 
+    // Dociąga bloki, aż w buforze będzie co najmniej bytes bajtów od bieżącej pozycji
+    private boolean ensureReadable(int bytes) throws IOException {
+        while (readBufferPos + bytes > readBufferLimit) {
+            if (!fillReadBuffer()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
     private boolean fillReadBuffer() throws IOException {
         int leftover = readBufferLimit - readBufferPos;
         if (leftover > 0) {
-            System.arraycopy(readBuffer, readBufferPos, readBuffer, 0, leftover);
+            readBuffer.limit(readBufferLimit).position(readBufferPos);
+            readBuffer.compact();
         }
 
         readBufferPos = 0;
-        int bytesRead = file.read(readBuffer, leftover, blockSize - leftover);
+        readBuffer.limit(blockSize).position(leftover);
+        long waitStart = System.nanoTime();
+        int bytesRead = file.read(readBuffer);
+        ioWaitNanos += System.nanoTime() - waitStart;
 
         if (bytesRead > 0) {
             diskReads++;
+            this.bytesRead += bytesRead;
+            readFileOffset += bytesRead;
             readBufferLimit = leftover + bytesRead;
-        } else {
-            readBufferLimit = leftover;
+            return true;
         }
-
-        return readBufferLimit >= recordSize;
+        readBufferLimit = leftover;
+        return false;
     }
 
+    @Override
     public Record readRecord() throws IOException {
-        if (readBufferPos + recordSize > readBufferLimit) {
-            if (!fillReadBuffer()) {
-                return null;
+        Record record = new Record();
+        return readRecord(record) ? record : null;
+    }
+
+    public boolean readRecord(Record target) throws IOException {
+        if (layout == RecordLayout.COMPRESSED) {
+            return readCompressed(target);
+        }
+        if (!ensureReadable(recordSize)) {
+            return false;
+        }
+
+        layout.decode(target, readBuffer, readBufferPos);
+        if (payloadSize > 0) {
+            target.decodePayload(readBuffer, readBufferPos + layout.recordSize(), payloadSize);
+        }
+        readBufferPos += recordSize;
+        recordsRead++;
+        return true;
+    }
+
+    // Kolejne rekordy w kolumnach: wszystkie całe rekordy wczytanego bloku (najwyżej pojemność target)
+    // z kluczami policzonymi przez kernel. Zwraca ich liczbę; 0 na końcu taśmy.
+    public int readBlock(BlockColumns target, BlockKernel kernel) throws IOException {
+        target.count = 0;
+        if (layout == RecordLayout.COMPRESSED) {
+            Record record = new Record();
+            while (target.count < target.capacity() && readCompressed(record)) {
+                target.add(record);
+            }
+        } else if (ensureReadable(recordSize)) {
+            int count = Math.min(target.capacity(), (readBufferLimit - readBufferPos) / recordSize);
+            kernel.decode(readBuffer, readBufferPos, count, recordSize, target);
+            readBufferPos += count * recordSize;
+            recordsRead += count;
+        }
+        kernel.computeKeys(target);
+        return target.count;
+    }
+
+    private boolean readCompressed(Record target) throws IOException {
+        if (frameRemaining == 0) {
+            if (!ensureReadable(FRAME_HEADER)) {
+                return false;
+            }
+            int length = Short.toUnsignedInt(readBuffer.getShort(readBufferPos));
+            frameRemaining = Short.toUnsignedInt(readBuffer.getShort(readBufferPos + 2));
+            readBufferPos += FRAME_HEADER;
+            if (!ensureReadable(length)) {
+                throw new EOFException("Niepełna ramka na taśmie " + fileName);
             }
+            Arrays.fill(previous, 0);
         }
 
-        if (readBufferPos + recordSize > readBufferLimit) {
-            return null;
+        for (int i = 0; i < fields.length; i++) {
+            int value = 0;
+            int shift = 0;
+            byte b;
+            do {
+                b = readBuffer.get(readBufferPos++);
+                value |= (b & 0x7F) << shift;
+                shift += 7;
+            } while (b < 0);
+            previous[i] += (value >>> 1) ^ -(value & 1);
+        }
+        target.set(previous[0], previous[1], previous[2], previous[3], previous[4]);
+        if (payloadSize > 0) {
+            target.decodePayload(readBuffer, readBufferPos, payloadSize);
+            readBufferPos += payloadSize;
+        }
+        frameRemaining--;
+        recordsRead++;
+        return true;
+    }
+
+    private void writeCompressed(Record record) throws IOException {
+        if (frameLength + MAX_ENCODED_FIELDS + payloadSize > frame.length - FRAME_HEADER || frameRecords == 0xFFFF) {
+            emitFrame();
+        }
+        if (frameRecords == 0) {
+            Arrays.fill(previous, 0);
         }
 
-        DataInputStream dis = new DataInputStream(
-                new ByteArrayInputStream(readBuffer, readBufferPos, recordSize)
-        );
+        record.getFields(fields);
+        int pos = FRAME_HEADER + frameLength;
+        for (int i = 0; i < fields.length; i++) {
+            int delta = fields[i] - previous[i];
+            int value = (delta << 1) ^ (delta >> 31);
+            while ((value & ~0x7F) != 0) {
+                frame[pos++] = (byte) ((value & 0x7F) | 0x80);
+                value >>>= 7;
+            }
+            frame[pos++] = (byte) value;
+            previous[i] = fields[i];
+        }
+        if (payloadSize > 0) {
+            record.encodePayload(frameBuffer, pos, payloadSize);
+            pos += payloadSize;
+        }
+        frameLength = pos - FRAME_HEADER;
+        frameRecords++;
+        recordsWritten++;
+    }
 
-        Record record = new Record();
-        if (!record.read(dis)) {
-            return null;
+    // Ramka trafia do bufora zapisu; może przechodzić przez granicę bloku, bo przy odczycie
+    // bufor ma rozmiar bloku, a ramka nie jest od niego większa
+    private void emitFrame() throws IOException {
+        if (frameRecords == 0) {
+            return;
         }
+        frame[0] = (byte) (frameLength >>> 8);
+        frame[1] = (byte) frameLength;
+        frame[2] = (byte) (frameRecords >>> 8);
+        frame[3] = (byte) frameRecords;
 
-        readBufferPos += recordSize;
-        return record;
+        int total = FRAME_HEADER + frameLength;
+        int copied = 0;
+        while (copied < total) {
+            if (writeBufferPos == blockSize) {
+                flushBlock();
+            }
+            int length = Math.min(total - copied, blockSize - writeBufferPos);
+            writeBuffer.put(writeBufferPos, frame, copied, length);
+            writeBufferPos += length;
+            copied += length;
+        }
+        frameLength = 0;
+        frameRecords = 0;
     }
 
     public void writeRecord(Record record) throws IOException {
-        if (writeBufferPos + recordSize > blockSize) {
-            flush();
+        if (reducer != null) {
+            reducer.write(record);
+            return;
         }
+        writeDirect(record);
+    }
 
-        ByteArrayOutputStream baos = new ByteArrayOutputStream(recordSize);
-        record.write(new DataOutputStream(baos));
-        byte[] recordBytes = baos.toByteArray();
+    // Zapis z pominięciem redukcji; przez tę metodę MergeReducer zapisuje rekordy, które zostają
+    void writeDirect(Record record) throws IOException {
+        if (layout == RecordLayout.COMPRESSED) {
+            writeCompressed(record);
+            return;
+        }
+        if (writeBufferPos + recordSize > blockSize) {
+            flushBlock();
+        }
 
-        System.arraycopy(recordBytes, 0, writeBuffer, writeBufferPos, recordBytes.length);
-        writeBufferPos += recordBytes.length;
+        layout.encode(record, writeBuffer, writeBufferPos);
+        if (payloadSize > 0) {
+            record.encodePayload(writeBuffer, writeBufferPos + layout.recordSize(), payloadSize);
+        }
+        writeBufferPos += recordSize;
+        recordsWritten++;
+        if (indexBuilder != null && indexBuilder.isActive()) {
+            indexBuilder.add(record.getSortKey());
+        }
     }
 
     public void flush() throws IOException {
+        if (reducer != null) {
+            reducer.flush();
+        }
+        if (frame != null) {
+            emitFrame();
+        }
+        flushBlock();
+    }
+
+    private void flushBlock() throws IOException {
         if (writeBufferPos > 0) {
-            file.write(writeBuffer, 0, writeBufferPos);
+            writeBuffer.limit(writeBufferPos).position(0);
+            if (checksum != null) {
+                checksum.update(writeBuffer.duplicate());
+                checksumBytes += writeBufferPos;
+            }
+            TapeFlushEvent event = new TapeFlushEvent();
+            event.begin();
+            long waitStart = System.nanoTime();
+            file.write(writeBuffer);
+            ioWaitNanos += System.nanoTime() - waitStart;
+            event.end();
+            if (event.shouldCommit()) {
+                event.tape = fileName;
+                event.bytes = writeBufferPos;
+                event.commit();
+            }
+            writeBuffer.clear();
             diskWrites++;
+            bytesWritten += writeBufferPos;
             writeBufferPos = 0;
         }
     }
 
+    // Przesuwa taśmę na podany bajt pliku (np. początek zakresu rekordów); bufory są opróżniane.
+    public void seek(long offset) throws IOException {
+        if (indexBuilder != null && indexBuilder.isActive() && offset != indexBuilder.records() * recordSize) {
+            indexBuilder.invalidate();
+        }
+        if (checksumValid && offset != checksumBytes + writeBufferPos) {
+            checksumValid = false;
+        }
+        // Cel wewnątrz wczytanego bloku: wystarczy przesunąć pozycję, bez ponownego odczytu
+        long bufferStart = readFileOffset - readBufferLimit;
+        if (frame == null && writeBufferPos == 0 && offset >= bufferStart && offset < readFileOffset) {
+            readBufferPos = (int) (offset - bufferStart);
+            return;
+        }
+        flush();
+        file.seek(offset);
+        readBufferPos = 0;
+        readBufferLimit = 0;
+        readFileOffset = offset;
+        frameRemaining = 0;
+    }
+
+    public long length() throws IOException {
+        flush();
+        return file.size();
+    }
+
+    // Pozycja w pliku następnego rekordu, który zwróci readRecord().
+    public long getReadOffset() {
+        return readFileOffset - (readBufferLimit - readBufferPos);
+    }
+
+    public boolean supportsTransfer() {
+        return file != null && file.channel() != null;
+    }
+
+    // transferTo kopiuje bajty bez zmian, więc obie taśmy muszą mieć ten sam układ rekordu,
+    // a przesunięcia rekordów są znane tylko dla układów o stałej długości
+    public boolean canTransferFrom(Tape source) {
+        return supportsTransfer() && source.supportsTransfer() && layout == source.layout
+                && layout != RecordLayout.COMPRESSED && reducer == null;
+    }
+
+    // Kopiuje bajty [offset, offset + length) taśmy source na koniec tej taśmy przez FileChannel.transferTo.
+    // Zapis liczy się jak ceil(length / blockSize) bloków, tak jak przy zwykłym buforowaniu.
+    public void transferFrom(Tape source, long offset, long length) throws IOException {
+        if (!canTransferFrom(source)) {
+            throw new IOException("Taśmy " + source.fileName + " -> " + fileName + " nie obsługują transferTo");
+        }
+        flush();
+        if (indexBuilder != null && indexBuilder.isActive()) {
+            indexBuilder.invalidate();
+        }
+        checksumValid = false;
+
+        FileChannel in = source.file.channel();
+        FileChannel out = file.channel();
+        long waitStart = System.nanoTime();
+        long transferred = 0;
+        while (transferred < length) {
+            long n = in.transferTo(offset + transferred, length - transferred, out);
+            if (n <= 0) {
+                throw new EOFException("Nieoczekiwany koniec taśmy " + source.fileName);
+            }
+            transferred += n;
+        }
+        ioWaitNanos += System.nanoTime() - waitStart;
+        diskWrites += (length + blockSize - 1) / blockSize;
+        bytesWritten += length;
+        recordsWritten += length / recordSize;
+    }
+
     public void close() throws IOException {
         flush();
         if (file != null) {
+            long waitStart = System.nanoTime();
             file.close();
+            ioWaitNanos += System.nanoTime() - waitStart;
             file = null;
         }
+        if (indexBuilder != null && indexBuilder.isActive()) {
+            indexBuilder.finish();
+            if (indexBuilder.isSorted()) {
+                index = indexBuilder.build(fileName);
+                index.write(fileName);
+            } else {
+                index = null;
+                BlockIndex.delete(fileName);
+            }
+        }
     }
 
     public void reset(String mode) throws IOException {
         if (file != null) {
             close();
         }
-        file = new RandomAccessFile(fileName, mode);
-        file.seek(0);
+        file = storageType.open(fileName, mode);
+        if (asyncDepth > 0) {
+            file = new AsyncStorage(file, storageType, blockSize * ASYNC_BLOCKS_PER_CHUNK, asyncDepth, fileName);
+        }
         readBufferPos = 0;
         readBufferLimit = 0;
+        readFileOffset = 0;
         writeBufferPos = 0;
+        frameLength = 0;
+        frameRecords = 0;
+        frameRemaining = 0;
     }
 
     public void truncate() throws IOException {
         if (file != null) {
             file.setLength(0);
         }
+        if (indexBuilder != null) {
+            indexBuilder.start();
+        }
+        if (reducer != null) {
+            reducer.reset();
+        }
+        if (checksum != null) {
+            checksum.reset();
+            checksumBytes = 0;
+            checksumValid = true;
+        }
+    }
+
+    // Kolejne zapisy przechodzą przez redukcję równych kluczy (null wyłącza); raw = rekordy z wejścia,
+    // które nie były jeszcze redukowane. Zapisywane serie muszą być posortowane.
+    public void setReducer(MergeReducer mergeReducer, boolean raw) throws IOException {
+        if (reducer != null) {
+            reducer.flush();
+            eliminated += reducer.getEliminated();
+        }
+        reducer = (mergeReducer != null) ? mergeReducer.writer(this, raw) : null;
+    }
+
+    public long getRecordsEliminated() {
+        return eliminated + ((reducer != null) ? reducer.getEliminated() : 0);
+    }
+
+    // Po truncate() taśma zbiera klucze zapisywanych rekordów i przy close() zapisuje indeks <taśma>.idx,
+    // o ile rekordy szły w porządku rosnącym; inaczej usuwa stary indeks
+    public void enableIndex() {
+        if (layout == RecordLayout.COMPRESSED) {
+            throw new IllegalStateException("Indeks bloków wymaga rekordów stałej długości");
+        }
+        indexBuilder = new BlockIndex.Builder(recordSize, blockSize);
+    }
+
+    // Po truncate() taśma liczy CRC32C zapisywanych bloków, bez ponownego odczytu pliku
+    public void enableChecksum() {
+        checksum = new CRC32C();
+    }
+
+    // Suma zawartości zapisanej od truncate() (po flush() albo close()); -1, gdy nie jest znana
+    public long getChecksum() {
+        return (checksum != null && checksumValid) ? checksum.getValue() : -1;
+    }
+
+    public BlockIndex getIndex() throws IOException {
+        if (index == null) {
+            index = BlockIndex.read(fileName);
+            if (index == null || index.getRecordSize() != recordSize) {
+                index = null;
+                throw new IOException("Taśma " + fileName + " nie ma aktualnego indeksu bloków");
+            }
+        }
+        return index;
+    }
+
+    public void setIndex(BlockIndex index) {
+        this.index = index;
+    }
+
+    // Ustawia taśmę na pierwszym rekordzie o kluczu >= key: wyszukiwanie binarne w indeksie
+    // i odczyt jednego bloku. false, gdy wszystkie klucze są mniejsze.
+    public boolean seekToKey(long key) throws IOException {
+        BlockIndex blocks = getIndex();
+        int block = blocks.findBlock(key);
+        if (block == blocks.blocks()) {
+            return false;
+        }
+        seek(blocks.offset(block));
+        Record record = new Record();
+        for (int i = 0; i < blocks.count(block); i++) {
+            long offset = getReadOffset();
+            if (!readRecord(record)) {
+                break;
+            }
+            if (record.getSortKey() >= key) {
+                seek(offset);
+                return true;
+            }
+        }
+        throw new IOException("Indeks bloków nie pasuje do taśmy " + fileName);
+    }
+
+    // Przekazuje rekordy z g() w [low, high] w kolejności taśmy; rekord jest używany ponownie.
+    // Czyta tylko bloki, w których są pasujące rekordy (i najwyżej jeden blok za nimi).
+    public long rangeScan(double low, double high, Consumer<Record> action) throws IOException {
+        // -0.0 i 0.0 mają różne klucze, a w przedziale liczbowym są tą samą wartością
+        long lowKey = Record.toSortKey(low == 0 ? -0.0 : low);
+        long highKey = Record.toSortKey(high == 0 ? 0.0 : high);
+        if (lowKey > highKey || !seekToKey(lowKey)) {
+            return 0;
+        }
+        Record record = new Record();
+        long count = 0;
+        while (readRecord(record) && record.getSortKey() <= highKey) {
+            action.accept(record);
+            count++;
+        }
+        return count;
+    }
+
+    // Liczniki od utworzenia taśmy; przyrost w fazie daje TapeStats.minus
+    public TapeStats snapshot(int phase) {
+        return new TapeStats(phase, fileName, Record.RECORD_SIZE + payloadSize, diskReads, diskWrites,
+                bytesRead, bytesWritten, recordsRead, recordsWritten, ioWaitNanos, getRecordsEliminated());
     }
 
     public long getDiskReads() { return diskReads; }
     public long getDiskWrites() { return diskWrites; }
+    public long getBytesRead() { return bytesRead; }
+    public long getBytesWritten() { return bytesWritten; }
+    public long getRecordsRead() { return recordsRead; }
+    public long getRecordsWritten() { return recordsWritten; }
+    public long getIoWaitNanos() { return ioWaitNanos; }
     public String getFileName() { return fileName; }
+    public StorageType getStorageType() { return storageType; }
+    public RecordLayout getLayout() { return layout; }
+    public int getRecordSize() { return recordSize; }
+    public int getPayloadSize() { return payloadSize; }
 }
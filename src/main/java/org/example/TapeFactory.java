@@ -0,0 +1,83 @@
+package org.example;
+
+import java.io.IOException;
+
+public class TapeFactory {
+
+    private final int recordSize;
+    private final int blockSize;
+    private final StorageType storageType;
+    private final int asyncDepth;
+    private final RecordLayout scratchLayout;
+    private final boolean indexed;
+    private final ScratchSpace scratch;
+
+    public TapeFactory(int recordSize, int blockSize) {
+        this(recordSize, blockSize, StorageType.RAF);
+    }
+
+    public TapeFactory(int recordSize, int blockSize, StorageType storageType) {
+        this(recordSize, blockSize, storageType, 0);
+    }
+
+    // asyncDepth > 0 włącza odczyt z wyprzedzeniem i zapis w tle z kolejką o tej głębokości
+    public TapeFactory(int recordSize, int blockSize, StorageType storageType, int asyncDepth) {
+        this(recordSize, blockSize, storageType, asyncDepth, RecordLayout.PLAIN);
+    }
+
+    // scratchLayout = KEYED zapisuje na taśmach pomocniczych gotowy klucz, więc scalanie nie liczy g() ponownie
+    public TapeFactory(int recordSize, int blockSize, StorageType storageType, int asyncDepth,
+                       RecordLayout scratchLayout) {
+        this(recordSize, blockSize, storageType, asyncDepth, scratchLayout, false);
+    }
+
+    // indexed = true: taśmy z open() (wejście i wynik sortowania) zapisane w porządku rosnącym
+    // dostają rzadki indeks bloków <taśma>.idx do zapytań o zakres g()
+    public TapeFactory(int recordSize, int blockSize, StorageType storageType, int asyncDepth,
+                       RecordLayout scratchLayout, boolean indexed) {
+        this(recordSize, blockSize, storageType, asyncDepth, scratchLayout, indexed, ScratchSpace.workingDirectory());
+    }
+
+    // scratch - katalogi, na które createScratch rozkłada taśmy pomocnicze
+    public TapeFactory(int recordSize, int blockSize, StorageType storageType, int asyncDepth,
+                       RecordLayout scratchLayout, boolean indexed, ScratchSpace scratch) {
+        this.recordSize = recordSize;
+        this.blockSize = blockSize;
+        this.storageType = storageType;
+        this.asyncDepth = asyncDepth;
+        this.scratchLayout = scratchLayout;
+        this.indexed = indexed;
+        this.scratch = scratch;
+    }
+
+    public Tape open(String fileName) throws IOException {
+        Tape tape = new Tape(fileName, recordSize, blockSize, storageType, asyncDepth);
+        if (indexed) {
+            tape.enableIndex();
+        }
+        return tape;
+    }
+
+    public Tape openScratch(String fileName) throws IOException {
+        return new Tape(fileName, recordSize, blockSize, storageType, asyncDepth, scratchLayout);
+    }
+
+    // Taśma pomocnicza w nowym pliku o unikalnej nazwie na katalogu dla taśmy numer device;
+    // po użyciu usuwana przez deleteScratch
+    public Tape createScratch(String prefix, int device) throws IOException {
+        return openScratch(scratch.allocate(prefix, device));
+    }
+
+    public void deleteScratch(Tape tape) throws IOException {
+        tape.close();
+        scratch.release(tape.getFileName());
+    }
+
+    public ScratchSpace getScratch() { return scratch; }
+    public int getRecordSize() { return recordSize; }
+    public int getBlockSize() { return blockSize; }
+    public StorageType getStorageType() { return storageType; }
+    public int getAsyncDepth() { return asyncDepth; }
+    public RecordLayout getScratchLayout() { return scratchLayout; }
+    public boolean isIndexed() { return indexed; }
+}
@@ -0,0 +1,22 @@
+package org.example;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+@Name("org.example.TapeFlush")
+@Label("Tape Flush")
+@Category("External Sort")
+@StackTrace(false)
+class TapeFlushEvent extends Event {
+
+    @Label("Tape")
+    String tape;
+
+    @Label("Bytes")
+    @DataAmount
+    long bytes;
+}
@@ -0,0 +1,88 @@
+package org.example;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+
+// Plik <taśma>.manifest: ile rekordów na początku taśmy jest posortowanych, klucz ostatniego z nich
+// (do sprawdzenia, czy taśma nie została nadpisana) i posortowane poziomy jeszcze nie scalone z taśmą.
+public record TapeManifest(long sortedRecords, long lastSortKey, List<Level> levels) {
+
+    public record Level(String fileName, long records) {
+    }
+
+    public TapeManifest {
+        levels = List.copyOf(levels);
+    }
+
+    public long levelRecords() {
+        long sum = 0;
+        for (Level level : levels) {
+            sum += level.records();
+        }
+        return sum;
+    }
+
+    public TapeManifest withLevels(List<Level> newLevels) {
+        return new TapeManifest(sortedRecords, lastSortKey, newLevels);
+    }
+
+    public static Path pathOf(String tapeName) {
+        return Path.of(tapeName + ".manifest");
+    }
+
+    // null, gdy taśma nie ma manifestu
+    public static TapeManifest read(String tapeName) throws IOException {
+        Path path = pathOf(tapeName);
+        if (!Files.exists(path)) {
+            return null;
+        }
+        Properties properties = new Properties();
+        try (Reader reader = Files.newBufferedReader(path)) {
+            properties.load(reader);
+        }
+        try {
+            List<Level> levels = new ArrayList<>();
+            String list = properties.getProperty("levels", "").trim();
+            if (!list.isEmpty()) {
+                for (String entry : list.split(",")) {
+                    int colon = entry.lastIndexOf(':');
+                    levels.add(new Level(entry.substring(0, colon), Long.parseLong(entry.substring(colon + 1))));
+                }
+            }
+            return new TapeManifest(Long.parseLong(properties.getProperty("sorted")),
+                    Long.parseLong(properties.getProperty("lastKey")), levels);
+        } catch (RuntimeException e) {
+            throw new IOException("Uszkodzony manifest " + path + ": " + e.getMessage(), e);
+        }
+    }
+
+    // Zapis przez plik tymczasowy, żeby przerwany zapis nie zostawił połowy manifestu
+    public void write(String tapeName) throws IOException {
+        Properties properties = new Properties();
+        properties.setProperty("sorted", Long.toString(sortedRecords));
+        properties.setProperty("lastKey", Long.toString(lastSortKey));
+        List<String> entries = new ArrayList<>();
+        for (Level level : levels) {
+            entries.add(level.fileName() + ":" + level.records());
+        }
+        properties.setProperty("levels", String.join(",", entries));
+
+        Path path = pathOf(tapeName);
+        Path temporary = Path.of(path + ".tmp");
+        try (Writer writer = Files.newBufferedWriter(temporary)) {
+            properties.store(writer, "Posortowana część taśmy " + tapeName);
+        }
+        Files.move(temporary, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    public static void delete(String tapeName) throws IOException {
+        Files.deleteIfExists(pathOf(tapeName));
+    }
+}
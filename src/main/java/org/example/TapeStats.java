@@ -0,0 +1,38 @@
+package org.example;
+
+public record TapeStats(
+        int phase,
+        String tape,
+        int logicalRecordSize,
+        long blocksRead,
+        long blocksWritten,
+        long bytesRead,
+        long bytesWritten,
+        long recordsRead,
+        long recordsWritten,
+        long ioWaitNanos,
+        long recordsEliminated
+) {
+    // Bajty rekordów przed kodowaniem (pola i dane dodatkowe); bytesRead/bytesWritten to bajty na dysku
+    public long logicalBytesRead() {
+        return recordsRead * logicalRecordSize;
+    }
+
+    public long logicalBytesWritten() {
+        return recordsWritten * logicalRecordSize;
+    }
+
+    public TapeStats withPhase(int newPhase) {
+        return new TapeStats(newPhase, tape, logicalRecordSize, blocksRead, blocksWritten, bytesRead, bytesWritten,
+                recordsRead, recordsWritten, ioWaitNanos, recordsEliminated);
+    }
+
+    // Przyrost liczników od wcześniejszego odczytu tej samej taśmy
+    public TapeStats minus(TapeStats earlier) {
+        return new TapeStats(phase, tape, logicalRecordSize,
+                blocksRead - earlier.blocksRead, blocksWritten - earlier.blocksWritten,
+                bytesRead - earlier.bytesRead, bytesWritten - earlier.bytesWritten,
+                recordsRead - earlier.recordsRead, recordsWritten - earlier.recordsWritten,
+                ioWaitNanos - earlier.ioWaitNanos, recordsEliminated - earlier.recordsEliminated);
+    }
+}
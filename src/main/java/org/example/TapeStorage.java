@@ -0,0 +1,27 @@
+package org.example;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+public interface TapeStorage extends Closeable {
+
+    // Czyta od bieżącej pozycji do dst (do dst.remaining() bajtów); -1 na końcu pliku.
+    int read(ByteBuffer dst) throws IOException;
+
+    // Zapisuje wszystkie pozostałe bajty src na bieżącej pozycji.
+    void write(ByteBuffer src) throws IOException;
+
+    void setLength(long length) throws IOException;
+
+    // Ustawia pozycję kolejnego odczytu/zapisu.
+    void seek(long position) throws IOException;
+
+    long size() throws IOException;
+
+    // Kanał pliku dla transferTo; null, jeśli backend go nie udostępnia.
+    default FileChannel channel() {
+        return null;
+    }
+}
@@ -0,0 +1,97 @@
+package org.example;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+
+// Import pliku tekstowego połączony z tworzeniem serii: liczby są parsowane prosto do bufora serii,
+// więc nieposortowany plik .bin nie jest ani zapisywany, ani ponownie czytany.
+public class TextIngest {
+
+    private final ParallelExternalSorter sorter;
+    private final int threads;
+
+    private long textBytes = 0;
+
+    public TextIngest(TapeFactory tapes, int threads, int bufferCount, int fanIn) {
+        this.sorter = new ParallelExternalSorter(tapes, threads, bufferCount, fanIn);
+        this.threads = threads;
+    }
+
+    // Przy kilku wątkach plik jest dzielony na fragmenty na granicach wierszy,
+    // więc każdy rekord musi się wtedy mieścić w jednym wierszu.
+    public SortStats ingest(String textFileName, String outputFileName, SortListener listener) throws IOException {
+        Path path = Path.of(textFileName);
+        textBytes = Files.size(path);
+        System.out.println("Import z sortowaniem (" + threads + " wątków) pliku: " + textFileName);
+
+        List<Callable<RecordSource>> sources = new ArrayList<>();
+        long[] bounds = split(path, threads);
+        for (int i = 0; i + 1 < bounds.length; i++) {
+            long start = bounds[i];
+            long end = bounds[i + 1];
+            if (end > start) {
+                sources.add(() -> new TextRecordReader(path, start, end));
+            }
+        }
+        SortStats stats = sorter.sort(sources, outputFileName, listener);
+
+        long parseMs = stats.phaseDetails().isEmpty() ? 0 : stats.phaseDetails().get(0).durationMs();
+        System.out.printf("Wczytano %.1f MB tekstu: faza 1 w %d ms (%.1f MB/s), całość w %d ms (%.1f MB/s)%n",
+                textBytes / 1e6, parseMs, throughput(textBytes, parseMs),
+                stats.durationMs(), throughput(textBytes, stats.durationMs()));
+        return stats;
+    }
+
+    public long getTextBytes() {
+        return textBytes;
+    }
+
+    public static double throughput(long bytes, long ms) {
+        return bytes / 1e6 / (Math.max(1, ms) / 1000.0);
+    }
+
+    // Granice parts fragmentów: każda poza pierwszą i ostatnią leży tuż za znakiem nowego wiersza
+    static long[] split(Path path, int parts) throws IOException {
+        long size = Files.size(path);
+        long[] bounds = new long[parts + 1];
+        bounds[parts] = size;
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            ByteBuffer probe = ByteBuffer.allocate(4096);
+            for (int i = 1; i < parts; i++) {
+                long position = Math.max(bounds[i - 1], size * i / parts);
+                bounds[i] = lineStart(channel, probe, position, size);
+            }
+        }
+        return bounds;
+    }
+
+    // Pierwsza pozycja >= position, przed którą jest '\n' (albo koniec pliku)
+    private static long lineStart(FileChannel channel, ByteBuffer probe, long position, long size)
+            throws IOException {
+        if (position == 0) {
+            return 0;
+        }
+        long offset = position - 1;
+        while (offset < size) {
+            probe.clear();
+            int read = channel.read(probe, offset);
+            if (read <= 0) {
+                break;
+            }
+            for (int i = 0; i < read; i++) {
+                if (probe.get(i) == '\n') {
+                    return offset + i + 1;
+                }
+            }
+            offset += read;
+        }
+        return size;
+    }
+}
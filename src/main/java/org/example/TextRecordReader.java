@@ -0,0 +1,164 @@
+package org.example;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+// Czyta rekordy z pliku tekstowego (po 5 liczb całkowitych rozdzielonych białymi znakami) bez Scannera:
+// blok bajtów z kanału jest parsowany w jednej pętli do tablicy liczb, a rekordy są z niej składane.
+// Może czytać tylko zakres bajtów [start, end).
+public class TextRecordReader implements RecordSource, Closeable {
+
+    private static final int BUFFER_SIZE = 1 << 20;
+    private static final int FIELDS = 5;
+
+    private final FileChannel channel;
+    private final ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+    private final byte[] bytes = buffer.array();
+    private final long end;
+
+    // Liczby sparsowane z bieżącego bloku; każda zajmuje w tekście co najmniej 2 bajty
+    private final int[] values = new int[BUFFER_SIZE / 2 + 2 * FIELDS];
+    private int valueCount = 0;
+    private int valuePosition = 0;
+
+    // Stan liczby przeciętej granicą bloku
+    private long current = 0;
+    private int digits = 0;
+    private boolean signed = false;
+    private boolean negative = false;
+
+    private long filePosition;
+    private long records = 0;
+    private boolean exhausted = false;
+
+    public TextRecordReader(Path path) throws IOException {
+        this(path, 0, Long.MAX_VALUE);
+    }
+
+    public TextRecordReader(Path path, long start, long end) throws IOException {
+        this.channel = FileChannel.open(path, StandardOpenOption.READ);
+        this.filePosition = start;
+        this.end = Math.min(end, channel.size());
+    }
+
+    @Override
+    public Record readRecord() throws IOException {
+        Record record = new Record();
+        return readRecord(record) ? record : null;
+    }
+
+    @Override
+    public boolean readRecord(Record target) throws IOException {
+        while (valueCount - valuePosition < FIELDS) {
+            if (exhausted) {
+                int left = valueCount - valuePosition;
+                if (left == 0) {
+                    return false;
+                }
+                throw new IOException("Niepełny rekord nr " + (records + 1) + ": " + left + " z 5 liczb");
+            }
+            fill();
+        }
+        int[] v = values;
+        int p = valuePosition;
+        target.set(v[p], v[p + 1], v[p + 2], v[p + 3], v[p + 4]);
+        valuePosition = p + FIELDS;
+        records++;
+        return true;
+    }
+
+    public long getRecords() {
+        return records;
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    private void fill() throws IOException {
+        int left = valueCount - valuePosition;
+        System.arraycopy(values, valuePosition, values, 0, left);
+        valuePosition = 0;
+        valueCount = left;
+
+        int read = 0;
+        if (filePosition < end) {
+            buffer.clear();
+            buffer.limit((int) Math.min(BUFFER_SIZE, end - filePosition));
+            read = Math.max(0, channel.read(buffer, filePosition));
+        }
+        if (read == 0) {
+            exhausted = true;
+            endToken();
+            return;
+        }
+        filePosition += read;
+        parse(read);
+    }
+
+    // Liczby dzielą dowolne białe znaki; znak '+' lub '-' tylko na początku liczby
+    private void parse(int length) throws IOException {
+        byte[] b = bytes;
+        int[] v = values;
+        int count = valueCount;
+        long value = current;
+        int n = digits;
+        for (int i = 0; i < length; i++) {
+            int c = b[i] & 0xFF;
+            int d = c - '0';
+            if (d >= 0 && d <= 9) {
+                value = value * 10 + d;
+                if (value > (long) Integer.MAX_VALUE + 1) {
+                    throw new IOException("Liczba poza zakresem int w rekordzie nr " + recordAt(count));
+                }
+                n++;
+            } else if (c <= ' ') {
+                if (n > 0) {
+                    v[count++] = toInt(value, count);
+                    value = 0;
+                    n = 0;
+                    signed = false;
+                } else if (signed) {
+                    throw new IOException("Sam znak bez cyfr w rekordzie nr " + recordAt(count));
+                }
+            } else if ((c == '-' || c == '+') && n == 0 && !signed) {
+                signed = true;
+                negative = (c == '-');
+            } else {
+                throw new IOException("Niepoprawny znak '" + (char) c + "' w rekordzie nr " + recordAt(count));
+            }
+        }
+        valueCount = count;
+        current = value;
+        digits = n;
+    }
+
+    private void endToken() throws IOException {
+        if (digits > 0) {
+            values[valueCount] = toInt(current, valueCount);
+            valueCount++;
+        } else if (signed) {
+            throw new IOException("Sam znak bez cyfr w rekordzie nr " + recordAt(valueCount));
+        }
+        current = 0;
+        digits = 0;
+        signed = false;
+    }
+
+    private int toInt(long value, int index) throws IOException {
+        long result = (signed && negative) ? -value : value;
+        if (result > Integer.MAX_VALUE) {
+            throw new IOException("Liczba poza zakresem int w rekordzie nr " + recordAt(index));
+        }
+        return (int) result;
+    }
+
+    private long recordAt(int index) {
+        return records + (index - valuePosition) / FIELDS + 1;
+    }
+}
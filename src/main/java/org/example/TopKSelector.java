@@ -0,0 +1,311 @@
+package org.example;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+
+// K najmniejszych (albo największych) rekordów według g() bez pełnego sortowania, w jednym przebiegu
+// odczytu wejścia. Gdy K mieści się w buforze, wystarcza kopiec ograniczony do K rekordów.
+// Dla większego K rekordy lepsze od progu zbierają się w buforze, posortowane porcje idą na taśmy serii,
+// a co pewien czas serie są scalane z dotychczasowym wynikiem obciętym do K rekordów; K-ty rekord
+// wyniku staje się nowym progiem, więc reszta wejścia jest odrzucana bez zapisu.
+// Wynik jest w kolejności rangi: rosnąco dla najmniejszych, malejąco dla największych.
+public class TopKSelector {
+
+
+    private final TapeFactory tapes;
+    private final int capacity;
+    private final int fanIn;
+
+    // bufferCount - bloki pamięci na kopiec albo bufor porcji, fanIn - ile taśm scala jedno łączenie
+    public TopKSelector(TapeFactory tapes, int bufferCount, int fanIn) {
+        if (fanIn < 2) {
+            throw new IllegalArgumentException("Stopień scalania k musi być >= 2, podano " + fanIn);
+        }
+        this.tapes = tapes;
+        this.capacity = ChunkRunGenerator.capacityOf(tapes.getRecordSize(), tapes.getBlockSize(), bufferCount);
+        this.fanIn = fanIn;
+    }
+
+    // Największe K, które jest wybierane w pamięci
+    public int getCapacity() {
+        return capacity;
+    }
+
+    public SortStats select(String inputFileName, String outputFileName, long k, boolean largest) throws IOException {
+        return select(inputFileName, outputFileName, k, largest, SortListener.NONE);
+    }
+
+    public SortStats select(String inputFileName, String outputFileName, long k, boolean largest,
+                            SortListener listener) throws IOException {
+        long startTime = System.currentTimeMillis();
+        Tape out = tapes.open(outputFileName);
+        PhaseTracker tracker = run(inputFileName, out, k, largest, listener);
+        return new SortStats(tracker.getPhases().size(), tracker.getTotalReads(), tracker.getTotalWrites(),
+                System.currentTimeMillis() - startTime, tracker.getPhases());
+    }
+
+    // Wynik jako iterator; przy K większym niż bufor jest najpierw zapisywany na taśmę pomocniczą
+    public SortedIterator iterate(String inputFileName, long k, boolean largest, SortListener listener)
+            throws IOException {
+        long startTime = System.currentTimeMillis();
+        checkK(k);
+        if (k <= capacity) {
+            Record[] best = new Record[(int) k];
+            PhaseTracker tracker = selectInMemory(inputFileName, null, best, largest, listener);
+            int count = 0;
+            while (count < best.length && best[count] != null) {
+                count++;
+            }
+            return new SortedIterator(best, count, !largest, new Tape[0], tracker, startTime);
+        }
+        Tape result = tapes.createScratch("tape_topk_out", 0);
+        // Taśmę wyniku usuwa SortedIterator.close(); po błędzie wyboru trzeba ją usunąć tutaj
+        try {
+            PhaseTracker tracker = run(inputFileName, result, k, largest, listener);
+            int phase = tracker.getPhases().size() + 1;
+            tracker.begin(phase);
+            result.reset("r");
+            return new SortedIterator(result, !largest, new Tape[] {result}, tracker, startTime, phase);
+        } catch (IOException | RuntimeException e) {
+            tapes.deleteScratch(result);
+            throw e;
+        }
+    }
+
+    private PhaseTracker run(String inputFileName, Tape out, long k, boolean largest, SortListener listener)
+            throws IOException {
+        checkK(k);
+        if (k <= capacity) {
+            return selectInMemory(inputFileName, out, new Record[(int) k], largest, listener);
+        }
+        return selectExternal(inputFileName, out, k, largest, listener);
+    }
+
+    // K w pamięci: na szczycie kopca najgorszy z wybranych, zastępowany przez lepszy rekord z wejścia.
+    // best jest wypełniane wynikiem w kolejności rangi; out może być null.
+    private PhaseTracker selectInMemory(String inputFileName, Tape out, Record[] best, boolean largest,
+                                        SortListener listener)
+            throws IOException {
+        Tape in = tapes.open(inputFileName);
+        PhaseTracker tracker = (out != null) ? new PhaseTracker(listener, in, out) : new PhaseTracker(listener, in);
+        tracker.begin(1);
+        in.reset("r");
+
+        RunStatsCollector collector = new RunStatsCollector();
+        Comparator<Record> rank = rankOf(collector, largest);
+        int k = best.length;
+        PriorityQueue<Record> heap = new PriorityQueue<>(Math.max(1, k), rank.reversed());
+        Record record = new Record();
+        long records = 0;
+        while (in.readRecord(record)) {
+            records++;
+            if (heap.size() < k) {
+                heap.add(record);
+                record = new Record();
+            } else if (k > 0 && rank.compare(record, heap.peek()) < 0) {
+                Record worst = heap.poll();
+                heap.add(record);
+                record = worst;
+            }
+        }
+        in.close();
+
+        int count = heap.size();
+        heap.toArray(best);
+        Arrays.sort(best, 0, count, rank);
+        if (out != null) {
+            out.reset("rw");
+            out.truncate();
+            for (int i = 0; i < count; i++) {
+                out.writeRecord(best[i]);
+            }
+            out.close();
+        }
+        tracker.end(1, 0, (count > 0) ? 1 : 0, records, collector.toStats().comparisons());
+        System.out.println("Wybrano " + count + " z " + records + " rekordów w jednym przebiegu");
+        return tracker;
+    }
+
+    private PhaseTracker selectExternal(String inputFileName, Tape out, long k, boolean largest, SortListener listener)
+            throws IOException {
+        Tape in = tapes.open(inputFileName);
+        // Każda seria na własnej taśmie: w układzie COMPRESSED nie da się przeskoczyć do rekordu po przesunięciu
+        Tape[] runs = new Tape[fanIn - 1];
+        for (int i = 0; i < runs.length; i++) {
+            runs[i] = tapes.createScratch("tape_topk_run", i);
+        }
+        Tape[] best = {tapes.createScratch("tape_topk_best", fanIn - 1),
+                tapes.createScratch("tape_topk_best", fanIn)};
+        List<Tape> all = new ArrayList<>(List.of(in, best[0], best[1], out));
+        all.addAll(Arrays.asList(runs));
+        PhaseTracker tracker = new PhaseTracker(listener, all.toArray(new Tape[0]));
+
+        RunStatsCollector collector = new RunStatsCollector();
+        Comparator<Record> rank = rankOf(collector, largest);
+        Selection selection = new Selection(runs, best, k, rank);
+
+        try {
+            // Faza 1: jedyny przebieg po wejściu; łączenia serii z wynikiem też są liczone do tej fazy
+            tracker.begin(1);
+            in.reset("r");
+            Record[] buffer = new Record[capacity];
+            for (int i = 0; i < capacity; i++) {
+                buffer[i] = new Record();
+            }
+            int loaded = 0;
+            long records = 0;
+            while (in.readRecord(buffer[loaded])) {
+                records++;
+                if (selection.hasCutoff && rank.compare(buffer[loaded], selection.cutoff) >= 0) {
+                    continue;
+                }
+                if (++loaded == capacity) {
+                    selection.addRun(buffer, loaded);
+                    loaded = 0;
+                }
+            }
+            if (loaded > 0) {
+                selection.addRun(buffer, loaded);
+            }
+            in.close();
+            tracker.end(1, 0, selection.totalRuns, records, collector.toStats().comparisons());
+            System.out.println("Faza 1: " + selection.candidates + " z " + records + " rekordów przeszło próg, "
+                    + selection.compactions + " łączeń z wynikiem");
+
+            // Faza 2: wynik i pozostałe serie scalane na taśmę wyjściową, obcięte do K rekordów
+            tracker.begin(2);
+            long comparisons = collector.toStats().comparisons();
+            int inputs = selection.runLengths.size() + 1;
+            long written = selection.merge(out);
+            tracker.end(2, inputs, inputs, written, collector.toStats().comparisons() - comparisons);
+            System.out.println("Faza 2: wybrano " + written + " rekordów");
+        } finally {
+            in.close();
+            out.close();
+            for (Tape run : runs) {
+                tapes.deleteScratch(run);
+            }
+            tapes.deleteScratch(best[0]);
+            tapes.deleteScratch(best[1]);
+        }
+        return tracker;
+    }
+
+    private static void checkK(long k) {
+        if (k < 0) {
+            throw new IllegalArgumentException("K musi być >= 0, podano " + k);
+        }
+    }
+
+    private static Comparator<Record> rankOf(RunStatsCollector collector, boolean largest) {
+        return largest ? (left, right) -> collector.compare(right, left) : collector::compare;
+    }
+
+    // Stan wyboru dla K większego niż bufor: posortowane serie na taśmach serii i dotychczasowy wynik
+    private static final class Selection {
+        private final Tape[] runs;
+        private final Tape[] best;
+        private final long k;
+        private final Comparator<Record> rank;
+
+        private final List<Long> runLengths = new ArrayList<>();
+        private long runRecords = 0;
+        private int current = 0;
+        private long bestCount = 0;
+        private final Record cutoff = new Record();
+        private boolean hasCutoff = false;
+
+        private long totalRuns = 0;
+        private long candidates = 0;
+        private long compactions = 0;
+
+        private Selection(Tape[] runs, Tape[] best, long k, Comparator<Record> rank) {
+            this.runs = runs;
+            this.best = best;
+            this.k = k;
+            this.rank = rank;
+        }
+
+        private void addRun(Record[] buffer, int loaded) throws IOException {
+            Arrays.sort(buffer, 0, loaded, rank);
+            Tape run = runs[runLengths.size()];
+            run.reset("rw");
+            run.truncate();
+            for (int i = 0; i < loaded; i++) {
+                run.writeRecord(buffer[i]);
+            }
+            run.close();
+            runLengths.add((long) loaded);
+            runRecords += loaded;
+            totalRuns++;
+            candidates += loaded;
+            // Łączenie, gdy skończyły się taśmy do odczytu serii albo serie mają razem K rekordów
+            if (runLengths.size() == runs.length || runRecords >= k) {
+                Tape next = best[1 - current];
+                long written = merge(next);
+                current = 1 - current;
+                bestCount = written;
+                compactions++;
+            }
+        }
+
+        // Scala wynik i serie na out, najwyżej K rekordów; pełny wynik ustala nowy próg
+        private long merge(Tape out) throws IOException {
+            int count = runLengths.size() + 1;
+            Tape[] inputs = new Tape[count];
+            long[] remaining = new long[count];
+            inputs[0] = best[current];
+            remaining[0] = bestCount;
+            for (int i = 0; i < runLengths.size(); i++) {
+                inputs[i + 1] = runs[i];
+                remaining[i + 1] = runLengths.get(i);
+                runs[i].reset("r");
+            }
+            best[current].reset("r");
+
+            Record[] heads = new Record[count];
+            for (int i = 0; i < count; i++) {
+                heads[i] = new Record();
+                if (remaining[i] > 0 && inputs[i].readRecord(heads[i])) {
+                    remaining[i]--;
+                } else {
+                    heads[i] = null;
+                }
+            }
+            out.reset("rw");
+            out.truncate();
+
+            long written = 0;
+            while (written < k) {
+                int min = -1;
+                for (int i = 0; i < count; i++) {
+                    if (heads[i] != null && (min < 0 || rank.compare(heads[i], heads[min]) < 0)) {
+                        min = i;
+                    }
+                }
+                if (min < 0) {
+                    break;
+                }
+                out.writeRecord(heads[min]);
+                written++;
+                if (written == k) {
+                    cutoff.copyFrom(heads[min]);
+                    hasCutoff = true;
+                }
+                if (remaining[min] > 0 && inputs[min].readRecord(heads[min])) {
+                    remaining[min]--;
+                } else {
+                    heads[min] = null;
+                }
+            }
+            out.close();
+            runLengths.clear();
+            runRecords = 0;
+            return written;
+        }
+    }
+}
@@ -0,0 +1,147 @@
+package org.example;
+
+import jdk.incubator.vector.DoubleVector;
+import jdk.incubator.vector.IntVector;
+import jdk.incubator.vector.LongVector;
+import jdk.incubator.vector.VectorMask;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorShape;
+import jdk.incubator.vector.VectorSpecies;
+
+import java.nio.ByteBuffer;
+
+// Kernel na jdk.incubator.vector: pasy double najszerszego wektora procesora, pasy int o połowę
+// węższego (ta sama liczba pasów). g() liczone mnożeniem w double jest dokładne w tych samych
+// granicach co Record.power; pasy z polem poza nimi (Math.pow) są liczone skalarnie.
+final class VectorBlockKernel implements BlockKernel {
+
+    static final VectorBlockKernel INSTANCE = new VectorBlockKernel();
+
+    private static final VectorSpecies<Double> DOUBLES = DoubleVector.SPECIES_PREFERRED;
+    private static final VectorSpecies<Long> LONGS = VectorSpecies.of(long.class, DOUBLES.vectorShape());
+    private static final VectorSpecies<Integer> INTS = (DOUBLES.length() < 2) ? null
+            : VectorSpecies.of(int.class, VectorShape.forBitSize(DOUBLES.vectorBitSize() / 2));
+
+    private VectorBlockKernel() {
+    }
+
+    static boolean isSupported() {
+        return INTS != null;
+    }
+
+    // Blok jako tablica int (big-endian, jak Record.encode), a kolumny zbierane gatherem co recordSize / 4
+    @Override
+    public void decode(ByteBuffer block, int offset, int count, int recordSize, BlockColumns target) {
+        if (recordSize % Integer.BYTES != 0) {
+            ScalarBlockKernel.INSTANCE.decode(block, offset, count, recordSize, target);
+            return;
+        }
+        int stride = recordSize / Integer.BYTES;
+        int words = count * stride;
+        if (target.words.length < words) {
+            target.words = new int[words];
+        }
+        block.duplicate().position(offset).limit(offset + count * recordSize).slice().asIntBuffer()
+                .get(target.words, 0, words);
+
+        int lanes = INTS.length();
+        int[] map = new int[lanes];
+        for (int j = 0; j < lanes; j++) {
+            map[j] = j * stride;
+        }
+        int[] w = target.words;
+        int i = 0;
+        for (; i + lanes <= count; i += lanes) {
+            int base = i * stride;
+            IntVector.fromArray(INTS, w, base, map, 0).intoArray(target.a, i);
+            IntVector.fromArray(INTS, w, base + 1, map, 0).intoArray(target.y, i);
+            IntVector.fromArray(INTS, w, base + 2, map, 0).intoArray(target.c, i);
+            IntVector.fromArray(INTS, w, base + 3, map, 0).intoArray(target.z, i);
+            IntVector.fromArray(INTS, w, base + 4, map, 0).intoArray(target.x, i);
+        }
+        for (; i < count; i++) {
+            int base = i * stride;
+            target.a[i] = w[base];
+            target.y[i] = w[base + 1];
+            target.c[i] = w[base + 2];
+            target.z[i] = w[base + 3];
+            target.x[i] = w[base + 4];
+        }
+        target.count = count;
+    }
+
+    @Override
+    public void computeKeys(BlockColumns block) {
+        int lanes = DOUBLES.length();
+        int i = 0;
+        for (; i + lanes <= block.count; i += lanes) {
+            IntVector a = IntVector.fromArray(INTS, block.a, i);
+            IntVector y = IntVector.fromArray(INTS, block.y, i);
+            IntVector c = IntVector.fromArray(INTS, block.c, i);
+            IntVector z = IntVector.fromArray(INTS, block.z, i);
+            IntVector x = IntVector.fromArray(INTS, block.x, i);
+            VectorMask<Integer> inexact = outside(x, Record.X_EXACT_LIMIT).or(outside(c, Record.C_EXACT_LIMIT))
+                    .or(outside(z, Record.Z_EXACT_LIMIT)).or(outside(y, Record.Y_EXACT_LIMIT));
+
+            DoubleVector ad = toDoubles(a);
+            DoubleVector yd = toDoubles(y);
+            DoubleVector cd = toDoubles(c);
+            DoubleVector zd = toDoubles(z);
+            DoubleVector xd = toDoubles(x);
+            // Kolejność działań jak w Record.g: 10.0 * a * (x2 + 3.0 * c3 * z4 - 5.0 * y7)
+            DoubleVector x2 = xd.mul(xd);
+            DoubleVector c3 = cd.mul(cd).mul(cd);
+            DoubleVector z4 = zd.mul(zd).mul(zd).mul(zd);
+            DoubleVector y7 = yd.mul(yd).mul(yd).mul(yd).mul(yd).mul(yd).mul(yd);
+            DoubleVector g = ad.mul(10.0).mul(x2.add(c3.mul(3.0).mul(z4)).sub(y7.mul(5.0)));
+
+            // Record.toSortKey: bits ^ ((bits >> 63) & Long.MAX_VALUE); NaN nie wychodzi z dokładnych pasów
+            LongVector bits = g.viewAsIntegralLanes();
+            bits.lanewise(VectorOperators.XOR, bits.lanewise(VectorOperators.ASHR, 63).and(Long.MAX_VALUE))
+                    .intoArray(block.keys, i);
+
+            if (inexact.anyTrue()) {
+                for (int lane = 0; lane < lanes; lane++) {
+                    if (inexact.laneIsSet(lane)) {
+                        block.keys[i + lane] = ScalarBlockKernel.keyAt(block, i + lane);
+                    }
+                }
+            }
+        }
+        ScalarBlockKernel.computeKeys(block, i);
+    }
+
+    private static VectorMask<Integer> outside(IntVector values, int limit) {
+        return values.compare(VectorOperators.GT, limit).or(values.compare(VectorOperators.LT, -limit));
+    }
+
+    private static DoubleVector toDoubles(IntVector values) {
+        return (DoubleVector) values.convertShape(VectorOperators.I2D, DOUBLES, 0);
+    }
+
+    // Porównanie wektora kluczy z wektorem przesuniętym o jeden; zestawione bity maski to spadki
+    @Override
+    public int findDescents(BlockColumns block, long previousKey, int[] positions) {
+        int found = 0;
+        if (block.count > 0 && block.keys[0] < previousKey) {
+            positions[found++] = 0;
+        }
+        int lanes = LONGS.length();
+        int i = 1;
+        for (; i + lanes <= block.count; i += lanes) {
+            LongVector current = LongVector.fromArray(LONGS, block.keys, i);
+            LongVector previous = LongVector.fromArray(LONGS, block.keys, i - 1);
+            long descents = current.compare(VectorOperators.LT, previous).toLong();
+            while (descents != 0) {
+                positions[found++] = i + Long.numberOfTrailingZeros(descents);
+                descents &= descents - 1;
+            }
+        }
+        return (i < block.count) ? ScalarBlockKernel.findDescents(block, previousKey, positions, i, found) : found;
+    }
+
+    @Override
+    public String name() {
+        return "wektorowy (" + DOUBLES.length() + " pasów double)";
+    }
+}
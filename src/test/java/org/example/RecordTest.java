@@ -0,0 +1,64 @@
+package org.example;
+
+import org.junit.jupiter.api.Test;
+
+import java.math.BigInteger;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class RecordTest {
+
+    private static final BigInteger EXACT = BigInteger.ONE.shiftLeft(53);
+
+    // Межі power(): найбільша основа, для якої степінь ще точно вміщується в double (2^53)
+    @Test
+    public void exactLimitsAreLargestExactBases() {
+        int[][] limits = {{2, Record.X_EXACT_LIMIT}, {3, Record.C_EXACT_LIMIT}, {4, Record.Z_EXACT_LIMIT},
+            {7, Record.Y_EXACT_LIMIT}};
+        for (int[] limit : limits) {
+            int exponent = limit[0];
+            int base = limit[1];
+            assertTrue(BigInteger.valueOf(base).pow(exponent).compareTo(EXACT) <= 0, "Za duża granica " + base);
+            assertTrue(BigInteger.valueOf(base + 1L).pow(exponent).compareTo(EXACT) > 0, "Za mała granica " + base);
+        }
+    }
+
+    // g() liczone mnożeniem musi dać te same bity co wzór z Math.pow, także przy granicach dokładności
+    @Test
+    public void gMatchesMathPow() {
+        int[] limits = {Record.X_EXACT_LIMIT, Record.C_EXACT_LIMIT, Record.Z_EXACT_LIMIT, Record.Y_EXACT_LIMIT};
+        for (int limit : limits) {
+            for (int d = -2; d <= 2; d++) {
+                for (int base : new int[] {limit + d, -limit - d}) {
+                    assertSameG(1, 0, 0, 0, base);
+                    assertSameG(1, 0, base, 1, 0);
+                    assertSameG(1, 0, 1, base, 0);
+                    assertSameG(1, base, 0, 0, 0);
+                }
+            }
+        }
+
+        Random rand = new Random(42);
+        int[] edge = {0, 1, -1, 2, 20, 190, 191, -191, 9_741, 9_742, 208_063, 208_064, 94_906_265, 94_906_266,
+            Integer.MAX_VALUE, Integer.MIN_VALUE};
+        for (int i = 0; i < 20000; i++) {
+            int a = edge[rand.nextInt(edge.length)];
+            int y = (i % 2 == 0) ? edge[rand.nextInt(edge.length)] : rand.nextInt(401) - 200;
+            int c = edge[rand.nextInt(edge.length)];
+            int z = (i % 3 == 0) ? edge[rand.nextInt(edge.length)] : rand.nextInt(20001) - 10000;
+            int x = edge[rand.nextInt(edge.length)];
+            assertSameG(a, y, c, z, x);
+        }
+    }
+
+    private static void assertSameG(int a, int y, int c, int z, int x) {
+        double expected = 10.0 * a * (Math.pow(x, 2) + 3.0 * Math.pow(c, 3) * Math.pow(z, 4) - 5.0 * Math.pow(y, 7));
+        String fields = a + " " + y + " " + c + " " + z + " " + x;
+        assertEquals(Double.doubleToLongBits(expected), Double.doubleToLongBits(Record.g(a, y, c, z, x)),
+                "g() dla " + fields);
+        assertEquals(Double.doubleToLongBits(expected),
+                Double.doubleToLongBits(new Record(a, y, c, z, x).getGValue()), "getGValue() dla " + fields);
+    }
+}
@@ -11,8 +11,14 @@ import org.junit.jupiter.params.provider.CsvSource;
 import java.io.FileWriter;
 import java.io.IOException;
 import java.io.PrintWriter;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Random;
 
+import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
 
@@ -21,20 +27,100 @@ public class SortExperimentTest {
 
     private static final int BLOCK_SIZE = 4096;
     private static final int RECORD_SIZE = Record.RECORD_SIZE;
+    private static final int BUFFER_COUNT = 10;
     private static PrintWriter resultsWriter;
+    private static PrintWriter largeBufferResultsWriter;
+    private static PrintWriter kWayResultsWriter;
+    private static PrintWriter polyphaseResultsWriter;
+    private static PrintWriter replacementSelectionResultsWriter;
+    private static PrintWriter storageResultsWriter;
+    private static PrintWriter asyncResultsWriter;
+    private static PrintWriter parallelResultsWriter;
+    private static PrintWriter metricsResultsWriter;
+    private static PrintWriter streamingResultsWriter;
+    private static PrintWriter compressionResultsWriter;
+    private static PrintWriter tagSortResultsWriter;
+    private static PrintWriter adaptiveResultsWriter;
+    private static PrintWriter incrementalResultsWriter;
+    private static PrintWriter topKResultsWriter;
+    private static PrintWriter reducerResultsWriter;
+    private static PrintWriter checkpointResultsWriter;
+    private static PrintWriter scratchResultsWriter;
+    private static PrintWriter partitionedResultsWriter;
+    private static PrintWriter countingResultsWriter;
+    private static long singleThreadTimeMs = 0;
 
     // Цей метод виконається ОДИН РАЗ перед усіма тестами
     @BeforeAll
     public static void setup() throws IOException {
         resultsWriter = new PrintWriter(new FileWriter("test_results.csv"));
         resultsWriter.println("N,r,F_prakt,O_prakt,F_teor,K,O_teor,IsSorted,TimeMs");
+        largeBufferResultsWriter = new PrintWriter(new FileWriter("test_results_large_buffers.csv"));
+        largeBufferResultsWriter.println("N,n,r,F_prakt,O_prakt,F_teor,K,O_teor,IsSorted,TimeMs");
+        kWayResultsWriter = new PrintWriter(new FileWriter("test_results_kway.csv"));
+        kWayResultsWriter.println("N,k,r,F_prakt,O_prakt,F_teor,K,O_teor,IsSorted,TimeMs");
+        polyphaseResultsWriter = new PrintWriter(new FileWriter("test_results_polyphase.csv"));
+        polyphaseResultsWriter.println("N,T,r,F_prakt,O_prakt,RecordsMoved,RecordsPerPhase,IsSorted,TimeMs");
+        replacementSelectionResultsWriter = new PrintWriter(new FileWriter("test_results_replacement_selection.csv"));
+        replacementSelectionResultsWriter.println("N,M,Input,Runs,MinRun,MeanRun,MaxRun,F_prakt,O_prakt,IsSorted,TimeMs");
+        storageResultsWriter = new PrintWriter(new FileWriter("test_results_storage.csv"));
+        storageResultsWriter.println("N,Algorithm,Storage,F_prakt,Reads,Writes,IsSorted,TimeMs");
+        asyncResultsWriter = new PrintWriter(new FileWriter("test_results_async.csv"));
+        asyncResultsWriter.println("N,Storage,Depth,F_prakt,Reads,Writes,IoWaitMs,ComputeMs,IsSorted,TimeMs");
+        parallelResultsWriter = new PrintWriter(new FileWriter("test_results_parallel.csv"));
+        parallelResultsWriter.println("N,Threads,F_prakt,Reads,Writes,IsSorted,TimeMs,Speedup");
+        metricsResultsWriter = new PrintWriter(new FileWriter("test_results_metrics.csv"));
+        metricsResultsWriter.println("N,Algorithm,Phase,FanIn,Runs,Records,Reads,Writes,BytesRead,BytesWritten,"
+                + "Comparisons,TimeMs,CpuMs,IoWaitMs,Tapes");
+        streamingResultsWriter = new PrintWriter(new FileWriter("test_results_streaming.csv"));
+        streamingResultsWriter.println("N,Mode,F_prakt,Reads,Writes,IsSorted,TimeMs");
+        compressionResultsWriter = new PrintWriter(new FileWriter("test_results_compression.csv"));
+        compressionResultsWriter.println("N,Algorithm,Layout,F_prakt,Reads,Writes,PhysicalBytes,LogicalBytes,"
+                + "ScratchPhysicalBytes,ScratchLogicalBytes,IsSorted,TimeMs");
+        tagSortResultsWriter = new PrintWriter(new FileWriter("test_results_tag_sort.csv"));
+        tagSortResultsWriter.println("N,RecordSize,Mode,PrefersTag,F_prakt,Reads,Writes,BytesRead,BytesWritten,IsSorted,TimeMs");
+        adaptiveResultsWriter = new PrintWriter(new FileWriter("test_results_adaptive.csv"));
+        adaptiveResultsWriter.println("N,Input,Mode,r,Runs,MinRun,MeanRun,F_prakt,O_prakt,Comparisons,IsSorted,TimeMs");
+        incrementalResultsWriter = new PrintWriter(new FileWriter("test_results_incremental.csv"));
+        incrementalResultsWriter.println("N,Delta,Mode,Levels,F_prakt,O_prakt,K,IsSorted,TimeMs");
+        topKResultsWriter = new PrintWriter(new FileWriter("test_results_topk.csv"));
+        topKResultsWriter.println("N,TopK,Order,Layout,Mode,F_prakt,O_prakt,InputReads,K,IsCorrect,TimeMs");
+        reducerResultsWriter = new PrintWriter(new FileWriter("test_results_reducer.csv"));
+        reducerResultsWriter.println("N,Reducer,F_prakt,O_prakt,Output,Eliminated,EliminatedPerPhase,IsCorrect,TimeMs");
+        checkpointResultsWriter = new PrintWriter(new FileWriter("test_results_checkpoint.csv"));
+        checkpointResultsWriter.println("N,CrashPhase,Case,F_prakt,PhasesRun,O_prakt,IsSorted,TimeMs");
+        scratchResultsWriter = new PrintWriter(new FileWriter("test_results_scratch.csv"));
+        scratchResultsWriter.println("N,Algorithm,Directories,F_prakt,O_prakt,WritesDir0,WritesDir1,IsSorted,TimeMs");
+        partitionedResultsWriter = new PrintWriter(new FileWriter("test_results_partitioned.csv"));
+        partitionedResultsWriter.println("N,P,Workers,Mode,Input,F_prakt,O_prakt,Skew,Partitions,IsSorted,TimeMs");
+        countingResultsWriter = new PrintWriter(new FileWriter("test_results_counting.csv"));
+        countingResultsWriter.println("N,Keys,MaxKeys,Indexed,Mode,F_prakt,O_prakt,Buckets,IsSorted,TimeMs");
     }
 
     // Цей метод виконається ОДИН РАЗ після всіх тестів
     @AfterAll
     public static void teardown() {
         resultsWriter.close();
-        System.out.println("Результати тестів збережено у test_results.csv");
+        largeBufferResultsWriter.close();
+        kWayResultsWriter.close();
+        polyphaseResultsWriter.close();
+        replacementSelectionResultsWriter.close();
+        storageResultsWriter.close();
+        asyncResultsWriter.close();
+        parallelResultsWriter.close();
+        metricsResultsWriter.close();
+        streamingResultsWriter.close();
+        compressionResultsWriter.close();
+        tagSortResultsWriter.close();
+        adaptiveResultsWriter.close();
+        incrementalResultsWriter.close();
+        topKResultsWriter.close();
+        reducerResultsWriter.close();
+        checkpointResultsWriter.close();
+        scratchResultsWriter.close();
+        partitionedResultsWriter.close();
+        countingResultsWriter.close();
+        System.out.println("Результати тестів збережено у test_results*.csv");
     }
 
     // Це серце нашого тесту. Він запуститься 6 разів,
@@ -77,8 +163,1245 @@ public class SortExperimentTest {
         assertTrue(sorted, "Файл " + filename + " НЕ відсортовано!");
     }
 
+    // Той самий експеримент для сортування з великими буферами (n буферів по BLOCK_SIZE),
+    // щоб порівняти обидва алгоритми на тих самих розмірах N.
+    @ParameterizedTest
+    @CsvSource({"1000", "5000", "10000", "20000", "50000", "100000"})
+    @Order(2)
+    public void runLargeBufferSortExperiment(int N) throws IOException {
+        String filename = "test_file_" + N + ".bin";
+        System.out.println("--- Running large buffer test for N = " + N + " ---");
+
+        generateFile(filename, N);
+
+        LargeBufferSorter sorter = new LargeBufferSorter(RECORD_SIZE, BLOCK_SIZE, BUFFER_COUNT);
+        SortStats stats = sorter.sort(filename);
+
+        boolean sorted = isFileSorted(filename);
+
+        // Початкові серії мають довжину n * b записів
+        int b = BLOCK_SIZE / RECORD_SIZE;
+        int K = (int) Math.ceil((double) N / b);
+        int r = (int) Math.ceil((double) N / sorter.getBufferCapacity());
+        int F_teor = (int) Math.ceil(Math.log(r) / Math.log(2));
+        long O_teor = 2L * K + (long) F_teor * 2 * K;
+
+        long O_prakt = stats.diskReads() + stats.diskWrites();
+
+        String resultLine = String.format("%d,%d,%d,%d,%d,%d,%d,%d,%b,%d",
+                N, BUFFER_COUNT, r, stats.phases(), O_prakt, F_teor, K, O_teor, sorted, stats.durationMs());
+        largeBufferResultsWriter.println(resultLine);
+
+        assertTrue(sorted, "Файл " + filename + " НЕ відсортовано!");
+    }
+
+    // Злиття k-шляхове: кількість фаз має зменшитися до ceil(log_k r)
+    @ParameterizedTest
+    @CsvSource({"10000,8", "100000,8", "100000,16", "100000,64"})
+    @Order(3)
+    public void runKWaySortExperiment(int N, int k) throws IOException {
+        String filename = "test_file_" + N + ".bin";
+        System.out.println("--- Running k-way test for N = " + N + ", k = " + k + " ---");
+
+        generateFile(filename, N);
+        int r = countInitialRuns(filename);
+
+        KWayMergeSorter sorter = new KWayMergeSorter(RECORD_SIZE, BLOCK_SIZE, k);
+        SortStats stats = sorter.sort(filename);
+
+        boolean sorted = isFileSorted(filename);
+
+        int b = BLOCK_SIZE / RECORD_SIZE;
+        int K = (int) Math.ceil((double) N / b);
+        int F_teor = (int) Math.ceil(Math.log(r) / Math.log(k));
+        long O_teor = (long) F_teor * 4 * K;
+
+        long O_prakt = stats.diskReads() + stats.diskWrites();
+
+        String resultLine = String.format("%d,%d,%d,%d,%d,%d,%d,%d,%b,%d",
+                N, k, r, stats.phases(), O_prakt, F_teor, K, O_teor, sorted, stats.durationMs());
+        kWayResultsWriter.println(resultLine);
+
+        assertTrue(sorted, "Файл " + filename + " НЕ відсортовано!");
+        assertTrue(stats.phases() <= F_teor + 1, "Забагато фаз: " + stats.phases());
+    }
+
+    // Сортування поліфазне: кожна фаза злиття переносить лише частину записів
+    @ParameterizedTest
+    @CsvSource({"1000,3", "10000,3", "100000,3", "100000,4", "100000,8"})
+    @Order(4)
+    public void runPolyphaseSortExperiment(int N, int T) throws IOException {
+        String filename = "test_file_" + N + ".bin";
+        System.out.println("--- Running polyphase test for N = " + N + ", T = " + T + " ---");
+
+        generateFile(filename, N);
+        int r = countInitialRuns(filename);
+
+        PolyphaseMergeSorter sorter = new PolyphaseMergeSorter(RECORD_SIZE, BLOCK_SIZE, T);
+        SortStats stats = sorter.sort(filename);
+
+        boolean sorted = isFileSorted(filename);
+
+        long recordsMoved = 0;
+        for (PhaseStats phase : stats.phaseDetails()) {
+            recordsMoved += phase.records();
+        }
+        long O_prakt = stats.diskReads() + stats.diskWrites();
+
+        String resultLine = String.format("%d,%d,%d,%d,%d,%d,%d,%b,%d",
+                N, T, r, stats.phases(), O_prakt, recordsMoved, recordsMoved / stats.phases(),
+                sorted, stats.durationMs());
+        polyphaseResultsWriter.println(resultLine);
+
+        assertTrue(sorted, "Файл " + filename + " НЕ відсортовано!");
+        assertTrue(countInitialRuns(filename) <= 1, "Файл " + filename + " має більше однієї серії!");
+    }
+
+    // Вибір із заміщенням: на випадкових даних серії ~2M, на відсортованих - одна серія
+    @ParameterizedTest
+    @CsvSource({"10000", "100000"})
+    @Order(5)
+    public void runReplacementSelectionExperiment(int N) throws IOException {
+        String filename = "test_file_" + N + ".bin";
+        System.out.println("--- Running replacement selection test for N = " + N + " ---");
+
+        generateFile(filename, N);
+        int heapCapacity = ChunkRunGenerator.capacityOf(RECORD_SIZE, BLOCK_SIZE, BUFFER_COUNT);
+
+        for (String input : new String[] {"random", "sorted"}) {
+            NaturalMergeSorter sorter = new NaturalMergeSorter(RECORD_SIZE, BLOCK_SIZE,
+                    new ReplacementSelectionRunGenerator(heapCapacity));
+            SortStats stats = sorter.sort(filename);
+            RunStats runs = sorter.getInitialRunStats();
+
+            boolean sorted = isFileSorted(filename);
+            long O_prakt = stats.diskReads() + stats.diskWrites();
+
+            String resultLine = String.format(java.util.Locale.ROOT, "%d,%d,%s,%d,%d,%.1f,%d,%d,%d,%b,%d",
+                    N, heapCapacity, input, runs.runs(), runs.minLength(), runs.meanLength(),
+                    runs.maxLength(), stats.phases(), O_prakt, sorted, stats.durationMs());
+            replacementSelectionResultsWriter.println(resultLine);
+
+            assertTrue(sorted, "Файл " + filename + " НЕ відсортовано!");
+            assertEquals(N, runs.records());
+            if (input.equals("random")) {
+                assertTrue(runs.runs() < Math.ceil((double) N / heapCapacity),
+                        "Серії закороткі: " + runs.meanLength());
+            } else {
+                assertEquals(1, runs.runs());
+            }
+        }
+    }
+
+    // Ті самі дані для кожного бекенду (RAF, FileChannel, mmap); кількість блоків має збігатися
+    @ParameterizedTest
+    @CsvSource({"20000", "100000"})
+    @Order(6)
+    public void runStorageExperiment(int N) throws IOException {
+        String source = "test_file_" + N + ".bin";
+        System.out.println("--- Running storage backend test for N = " + N + " ---");
+        generateFile(source, N);
+
+        SortStats rafStats = null;
+        for (StorageType type : StorageType.values()) {
+            for (String algorithm : new String[] {"natural", "kway8"}) {
+                String filename = "test_file_" + N + "_" + type + ".bin";
+                Files.copy(Path.of(source), Path.of(filename), StandardCopyOption.REPLACE_EXISTING);
+
+                TapeFactory tapes = new TapeFactory(RECORD_SIZE, BLOCK_SIZE, type);
+                ExternalSorter sorter = algorithm.equals("natural")
+                        ? new NaturalMergeSorter(tapes, null)
+                        : new KWayMergeSorter(tapes, 8);
+                SortStats stats = sorter.sort(filename);
+                boolean sorted = isFileSorted(filename);
+
+                storageResultsWriter.println(String.format("%d,%s,%s,%d,%d,%d,%b,%d",
+                        N, algorithm, type, stats.phases(), stats.diskReads(), stats.diskWrites(),
+                        sorted, stats.durationMs()));
+
+                assertTrue(sorted, "Файл " + filename + " НЕ відсортовано!");
+                assertEquals(N, countRecords(filename));
+                if (algorithm.equals("kway8")) {
+                    if (rafStats == null) {
+                        rafStats = stats;
+                    }
+                    assertEquals(rafStats.diskReads(), stats.diskReads());
+                    assertEquals(rafStats.diskWrites(), stats.diskWrites());
+                }
+                Files.delete(Path.of(filename));
+            }
+        }
+    }
+
+    // Асинхронне читання наперед / запис у фоні: час очікування на I/O проти часу порівнянь
+    @ParameterizedTest
+    @CsvSource({"RAF,0", "RAF,2", "RAF,8", "CHANNEL,0", "CHANNEL,2", "CHANNEL,8"})
+    @Order(7)
+    public void runAsyncExperiment(StorageType type, int depth) throws IOException {
+        int N = 100000;
+        String filename = "test_file_" + N + ".bin";
+        System.out.println("--- Running async test for " + type + ", depth = " + depth + " ---");
+        generateFile(filename, N);
+
+        KWayMergeSorter sorter = new KWayMergeSorter(new TapeFactory(RECORD_SIZE, BLOCK_SIZE, type, depth), 8);
+        SortStats stats = sorter.sort(filename);
+        boolean sorted = isFileSorted(filename);
+
+        long ioWaitMs = 0;
+        long computeMs = 0;
+        for (PhaseStats phase : stats.phaseDetails()) {
+            ioWaitMs += phase.ioWaitMs();
+            computeMs += phase.computeMs();
+        }
+
+        asyncResultsWriter.println(String.format("%d,%s,%d,%d,%d,%d,%d,%d,%b,%d",
+                N, type, depth, stats.phases(), stats.diskReads(), stats.diskWrites(),
+                ioWaitMs, computeMs, sorted, stats.durationMs()));
+
+        assertTrue(sorted, "Файл " + filename + " НЕ відсортовано!");
+        assertEquals(N, countRecords(filename));
+    }
+
+    // Паралельне сортування: прискорення від 1 до N ядер.
+    // Розмір задається -Dparallel.n (наприклад 10000000), за замовчуванням 200000.
+    @ParameterizedTest
+    @CsvSource({"1", "2", "4", "8"})
+    @Order(8)
+    public void runParallelExperiment(int threads) throws IOException {
+        int N = Integer.getInteger("parallel.n", 200000);
+        String filename = "test_file_parallel.bin";
+        System.out.println("--- Running parallel test for N = " + N + ", threads = " + threads + " ---");
+        generateFile(filename, N);
+
+        ParallelExternalSorter sorter = new ParallelExternalSorter(
+                new TapeFactory(RECORD_SIZE, BLOCK_SIZE), threads, 64, 16);
+        SortStats stats = sorter.sort(filename);
+        boolean sorted = isFileSorted(filename);
+
+        if (threads == 1) {
+            singleThreadTimeMs = stats.durationMs();
+        }
+        double speedup = (singleThreadTimeMs > 0 && stats.durationMs() > 0)
+                ? (double) singleThreadTimeMs / stats.durationMs() : 1.0;
+
+        parallelResultsWriter.println(String.format(java.util.Locale.ROOT, "%d,%d,%d,%d,%d,%b,%d,%.2f",
+                N, threads, stats.phases(), stats.diskReads(), stats.diskWrites(),
+                sorted, stats.durationMs(), speedup));
+
+        assertTrue(sorted, "Файл " + filename + " НЕ відсортовано!");
+        assertEquals(N, countRecords(filename));
+    }
+
+    // Метрики по фазах і по стрічках через SortListener. Суми по стрічках мають збігатися з фазою,
+    // а фази - з підсумком; для природного злиття O_prakt не більше 4 * (K + 1) на фазу.
+    @ParameterizedTest
+    @CsvSource({"10000,natural", "10000,kway8", "10000,polyphase4", "10000,parallel4",
+            "100000,natural", "100000,kway8", "100000,polyphase4", "100000,parallel4"})
+    @Order(9)
+    public void runMetricsExperiment(int N, String algorithm) throws IOException {
+        String filename = "test_file_" + N + ".bin";
+        System.out.println("--- Running metrics test for N = " + N + ", " + algorithm + " ---");
+        generateFile(filename, N);
+
+        TapeFactory tapes = new TapeFactory(RECORD_SIZE, BLOCK_SIZE);
+        ExternalSorter sorter = switch (algorithm) {
+            case "natural" -> new NaturalMergeSorter(tapes, null);
+            case "kway8" -> new KWayMergeSorter(tapes, 8);
+            case "polyphase4" -> new PolyphaseMergeSorter(tapes, 4);
+            default -> new ParallelExternalSorter(tapes, 4, 64, 16);
+        };
+
+        List<Integer> started = new ArrayList<>();
+        List<TapeStats> tapeEvents = new ArrayList<>();
+        List<PhaseStats> finished = new ArrayList<>();
+        SortStats stats = sorter.sort(filename, new SortListener() {
+            @Override
+            public void phaseStarted(int phase) {
+                started.add(phase);
+            }
+
+            @Override
+            public void tapeMeasured(TapeStats tape) {
+                tapeEvents.add(tape);
+            }
+
+            @Override
+            public void phaseFinished(PhaseStats phase) {
+                finished.add(phase);
+            }
+        });
+        assertTrue(isFileSorted(filename), "Файл " + filename + " НЕ відсортовано!");
+
+        assertEquals(stats.phaseDetails(), finished);
+        assertEquals(stats.phases(), started.size());
+        long reads = 0;
+        long writes = 0;
+        for (PhaseStats phase : stats.phaseDetails()) {
+            long tapeReads = 0;
+            long tapeWrites = 0;
+            long tapeBytes = 0;
+            for (TapeStats tape : tapeEvents) {
+                if (tape.phase() == phase.phase()) {
+                    tapeReads += tape.blocksRead();
+                    tapeWrites += tape.blocksWritten();
+                    tapeBytes += tape.bytesWritten();
+                }
+            }
+            assertEquals(phase.diskReads(), tapeReads);
+            assertEquals(phase.diskWrites(), tapeWrites);
+            assertEquals(phase.bytesWritten(), tapeBytes);
+            assertTrue(phase.comparisons() > 0, "Faza " + phase.phase() + " bez porównań");
+            reads += phase.diskReads();
+            writes += phase.diskWrites();
+
+            metricsResultsWriter.println(String.format("%d,%s,%d,%d,%d,%d,%d,%d,%d,%d,%d,%d,%d,%d,%d",
+                    N, algorithm, phase.phase(), phase.fanIn(), phase.runs(), phase.records(),
+                    phase.diskReads(), phase.diskWrites(), phase.bytesRead(), phase.bytesWritten(),
+                    phase.comparisons(), phase.durationMs(), phase.cpuMs(), phase.ioWaitMs(), phase.tapes().size()));
+        }
+        assertEquals(stats.diskReads(), reads);
+        assertEquals(stats.diskWrites(), writes);
+
+        if (algorithm.equals("natural")) {
+            int K = (int) Math.ceil((double) N / (BLOCK_SIZE / RECORD_SIZE));
+            long O_prakt = stats.diskReads() + stats.diskWrites();
+            assertTrue(O_prakt <= (long) stats.phases() * 4 * (K + 1),
+                    "O_prakt = " + O_prakt + " przy F = " + stats.phases() + ", K = " + K);
+        }
+    }
+
+    // Потокове сортування: той самий алгоритм (великі буфери + k-шляхове злиття), що й паралельний
+    // сортувальник з одним потоком, але останнє злиття віддається споживачу без запису на диск.
+    @ParameterizedTest
+    @CsvSource({"0", "1", "1000", "20000", "100000", "500000"})
+    @Order(10)
+    public void runStreamingExperiment(int N) throws IOException {
+        String filename = "test_file_streaming.bin";
+        System.out.println("--- Running streaming test for N = " + N + " ---");
+        generateFile(filename, N);
+
+        TapeFactory tapes = new TapeFactory(RECORD_SIZE, BLOCK_SIZE);
+        StreamingSorter streaming = new StreamingSorter(tapes, 64, 4);
+        long count = 0;
+        boolean sorted = true;
+        SortStats streamStats;
+        try (SortedIterator iterator = streaming.sort(Files.newInputStream(Path.of(filename)))) {
+            Record last = null;
+            while (iterator.hasNext()) {
+                Record record = iterator.next();
+                sorted &= (last == null || record.compareTo(last) >= 0);
+                last = record;
+                count++;
+            }
+            streamStats = iterator.getStats();
+        }
+        streamingResultsWriter.println(String.format("%d,stream,%d,%d,%d,%b,%d", N, streamStats.phases(),
+                streamStats.diskReads(), streamStats.diskWrites(), sorted, streamStats.durationMs()));
+
+        SortStats fileStats = new ParallelExternalSorter(tapes, 1, 64, 4).sort(filename);
+        boolean fileSorted = isFileSorted(filename);
+        streamingResultsWriter.println(String.format("%d,file,%d,%d,%d,%b,%d", N, fileStats.phases(),
+                fileStats.diskReads(), fileStats.diskWrites(), fileSorted, fileStats.durationMs()));
+
+        assertTrue(sorted, "Strumień nie jest posortowany");
+        assertEquals(N, count);
+        assertEquals(List.of(), scratchFiles(Path.of("."), "tape_s_"), "Nie usunięto taśm pomocniczych");
+        if (streamStats.phases() > 1) {
+            assertTrue(streamStats.diskWrites() < fileStats.diskWrites(),
+                    "Strumień zapisuje " + streamStats.diskWrites() + " bloków, plik " + fileStats.diskWrites());
+        }
+
+        // Ten sam wynik przez Stream<Record> z wielokrotnie używanym obiektem rekordu
+        try (SortedIterator again = streaming.sort(readAll(filename).iterator())) {
+            assertEquals(N, again.stream().count());
+        }
+
+        // Urwany ostatni rekord przerywa sortowanie zamiast cicho zgubić jego bajty
+        byte[] bytes = Files.readAllBytes(Path.of(filename));
+        byte[] truncated = java.util.Arrays.copyOf(bytes, bytes.length + 3);
+        org.junit.jupiter.api.Assertions.assertThrows(java.io.EOFException.class,
+                () -> streaming.sort(new java.io.ByteArrayInputStream(truncated)).close());
+        assertEquals(List.of(), scratchFiles(Path.of("."), "tape_s_"), "Nie usunięto taśm po błędzie");
+    }
+
+    // Стиснутий формат стрічок-посередників: фізичні байти проти логічних (5 int на запис).
+    // Вхідна стрічка A лишається без стиснення, тому окремо рахуємо лише допоміжні стрічки.
+    @ParameterizedTest
+    @CsvSource({"100000,natural", "100000,kway8", "100000,polyphase4"})
+    @Order(11)
+    public void runCompressionExperiment(int N, String algorithm) throws IOException {
+        String source = "test_file_" + N + ".bin";
+        System.out.println("--- Running compression test for N = " + N + ", " + algorithm + " ---");
+        generateFile(source, N);
+        assertCompressedRoundTrip();
+
+        byte[] expected = null;
+        long plainScratchBytes = 0;
+        for (RecordLayout layout : RecordLayout.values()) {
+            String filename = "test_file_" + N + "_" + layout + ".bin";
+            Files.copy(Path.of(source), Path.of(filename), StandardCopyOption.REPLACE_EXISTING);
+
+            TapeFactory tapes = new TapeFactory(RECORD_SIZE, BLOCK_SIZE, StorageType.RAF, 0, layout);
+            ExternalSorter sorter = switch (algorithm) {
+                case "natural" -> new NaturalMergeSorter(tapes, null);
+                case "kway8" -> new KWayMergeSorter(tapes, 8);
+                default -> new PolyphaseMergeSorter(tapes, 4);
+            };
+            SortStats stats = sorter.sort(filename);
+            boolean sorted = isFileSorted(filename);
+
+            long physical = 0;
+            long logical = 0;
+            long scratchPhysical = 0;
+            long scratchLogical = 0;
+            for (PhaseStats phase : stats.phaseDetails()) {
+                physical += phase.bytesRead() + phase.bytesWritten();
+                logical += phase.logicalBytesRead() + phase.logicalBytesWritten();
+                for (TapeStats tape : phase.tapes()) {
+                    if (!tape.tape().equals(filename)) {
+                        scratchPhysical += tape.bytesRead() + tape.bytesWritten();
+                        scratchLogical += tape.logicalBytesRead() + tape.logicalBytesWritten();
+                    }
+                }
+            }
+            compressionResultsWriter.println(String.format("%d,%s,%s,%d,%d,%d,%d,%d,%d,%d,%b,%d",
+                    N, algorithm, layout, stats.phases(), stats.diskReads(), stats.diskWrites(),
+                    physical, logical, scratchPhysical, scratchLogical, sorted, stats.durationMs()));
+
+            assertTrue(sorted, "Файл " + filename + " НЕ відсортовано!");
+            byte[] result = Files.readAllBytes(Path.of(filename));
+            if (expected == null) {
+                expected = result;
+            }
+            assertTrue(java.util.Arrays.equals(expected, result), "Inny wynik dla układu " + layout);
+            if (layout == RecordLayout.PLAIN) {
+                plainScratchBytes = scratchPhysical;
+            }
+            if (layout == RecordLayout.COMPRESSED) {
+                assertTrue(scratchPhysical * 3 < plainScratchBytes,
+                        "Kompresja taśm pomocniczych: " + scratchPhysical + " vs " + plainScratchBytes);
+            }
+            Files.delete(Path.of(filename));
+        }
+    }
+
+    // Широкі записи: повне сортування проти сортування пар (ключ, номер запису).
+    // Dane dodatkowe są wyznaczane z numeru rekordu, więc po sortowaniu sprawdzamy, czy nic się nie rozjechało.
+    @ParameterizedTest
+    @CsvSource({"20000,20", "20000,256", "10000,2048"})
+    @Order(12)
+    public void runTagSortExperiment(int N, int recordSize) throws IOException {
+        System.out.println("--- Running tag sort test for N = " + N + ", record " + recordSize + " B ---");
+        String source = "test_file_" + N + "_wide.bin";
+        generateWideFile(source, N, recordSize);
+        TapeFactory tapes = new TapeFactory(recordSize, BLOCK_SIZE);
+        boolean prefersTag = TagSorter.prefersTagSort(recordSize, BLOCK_SIZE, N, BUFFER_COUNT, 16);
+
+        long[] bytesMoved = new long[2];
+        String[] modes = {"direct", "tag"};
+        for (int m = 0; m < modes.length; m++) {
+            String filename = "test_file_" + N + "_" + modes[m] + ".bin";
+            Files.copy(Path.of(source), Path.of(filename), StandardCopyOption.REPLACE_EXISTING);
+            ExternalSorter sorter = (m == 0)
+                    ? new ParallelExternalSorter(tapes, 2, BUFFER_COUNT, 16)
+                    : new TagSorter(tapes, 2, BUFFER_COUNT, 16);
+            SortStats stats = sorter.sort(filename);
+            boolean sorted = isWideFileSorted(filename, N, recordSize);
+
+            long bytesRead = 0;
+            long bytesWritten = 0;
+            for (PhaseStats phase : stats.phaseDetails()) {
+                bytesRead += phase.bytesRead();
+                bytesWritten += phase.bytesWritten();
+            }
+            bytesMoved[m] = bytesRead + bytesWritten;
+            tagSortResultsWriter.println(String.format("%d,%d,%s,%b,%d,%d,%d,%d,%d,%b,%d",
+                    N, recordSize, modes[m], prefersTag, stats.phases(), stats.diskReads(), stats.diskWrites(),
+                    bytesRead, bytesWritten, sorted, stats.durationMs()));
+
+            assertTrue(sorted, "Файл " + filename + " НЕ відсортовано!");
+            assertEquals(List.of(), scratchFiles(Path.of("."), "tape_tag"), "Nie usunięto plików par");
+            Files.delete(Path.of(filename));
+        }
+        Files.delete(Path.of(source));
+
+        // Model kosztu: wąskie rekordy sortujemy wprost, bardzo szerokie przez klucze
+        if (recordSize == RECORD_SIZE) {
+            assertTrue(!prefersTag, "Для вузьких записів сортування пар не має сенсу");
+        }
+        if (recordSize >= 2048) {
+            assertTrue(prefersTag, "Для широких записів очікується сортування пар");
+            assertTrue(bytesMoved[1] < bytesMoved[0], "Bajty: przez klucze " + bytesMoved[1] + " vs " + bytesMoved[0]);
+        }
+    }
+
+    // Адаптивні серії: незростаючі відрізки розвертаються групами рівних ключів, короткі серії
+    // добудовуються вставлянням. Відсортовані, обернені й майже відсортовані дані дають одну серію.
+    // Рівні ключі лишаються в порядку входу, хоча в даних багато повторів.
+    @ParameterizedTest
+    @CsvSource({"5000", "100000"})
+    @Order(13)
+    public void runAdaptiveRunsExperiment(int N) throws IOException {
+        String source = "test_file_" + N + "_adaptive.bin";
+        System.out.println("--- Running adaptive runs test for N = " + N + " ---");
+        generateFile(source, N);
+        List<Record> records = readAll(source);
+        int minRun = 64;
+
+        for (String input : new String[] {"random", "sorted", "reverse", "near"}) {
+            List<Record> data = new ArrayList<>(records);
+            if (!input.equals("random")) {
+                data.sort(null);
+            }
+            if (input.equals("reverse")) {
+                java.util.Collections.reverse(data);
+            }
+            if (input.equals("near")) {
+                // Приблизно кожен 20-й запис переставлено з сусіднім
+                Random rand = new Random(N);
+                for (int i = 1; i < data.size(); i++) {
+                    if (rand.nextInt(20) == 0) {
+                        java.util.Collections.swap(data, i - 1, i);
+                    }
+                }
+            }
+
+            long naturalPhases = 0;
+            for (String mode : new String[] {"natural", "adaptive"}) {
+                writeRecords(source, data);
+                int r = countInitialRuns(source);
+                TapeFactory tapes = new TapeFactory(RECORD_SIZE, BLOCK_SIZE);
+                AdaptiveRunGenerator generator = new AdaptiveRunGenerator(tapes, minRun, BUFFER_COUNT);
+                NaturalMergeSorter sorter = new NaturalMergeSorter(tapes, mode.equals("adaptive") ? generator : null);
+                SortStats stats = sorter.sort(source);
+                boolean sorted = isFileSorted(source);
+
+                RunStats runs = sorter.getInitialRunStats();
+                long comparisons = 0;
+                for (PhaseStats phase : stats.phaseDetails()) {
+                    comparisons += phase.comparisons();
+                }
+                adaptiveResultsWriter.println(String.format(java.util.Locale.ROOT,
+                        "%d,%s,%s,%d,%d,%d,%.1f,%d,%d,%d,%b,%d",
+                        N, input, mode, r, (runs == null) ? r : runs.runs(), (runs == null) ? 0 : runs.minLength(),
+                        (runs == null) ? 0.0 : runs.meanLength(), stats.phases(),
+                        stats.diskReads() + stats.diskWrites(), comparisons, sorted, stats.durationMs()));
+
+                assertTrue(sorted, "Файл " + source + " НЕ відсортовано (" + input + ", " + mode + ")!");
+                assertEquals(N, countRecords(source));
+                if (mode.equals("natural")) {
+                    naturalPhases = stats.phases();
+                    continue;
+                }
+
+                assertEquals(N, runs.records());
+                if (input.equals("random")) {
+                    assertTrue(runs.meanLength() >= minRun, "Серії закороткі: " + runs.meanLength());
+                    assertTrue(stats.phases() < naturalPhases, "Фази: " + stats.phases() + " vs " + naturalPhases);
+                } else {
+                    assertEquals(1, runs.runs(), "Очікується одна серія для " + input);
+                    assertTrue(stats.phases() <= 2, "Фази: " + stats.phases());
+                }
+            }
+
+            if (input.equals("reverse")) {
+                assertStableRuns(source, data, minRun);
+            }
+        }
+        Files.delete(Path.of(source));
+        assertEquals(List.of(), scratchFiles(Path.of("."), "tape_rev"), "Допоміжну стрічку не видалено");
+    }
+
+    // Одна серія з оберненого входу має дорівнювати стабільному сортуванню: рівні ключі в порядку входу
+    private void assertStableRuns(String source, List<Record> data, int minRun) throws IOException {
+        String output = "test_file_adaptive_run.bin";
+        writeRecords(source, data);
+        TapeFactory tapes = new TapeFactory(RECORD_SIZE, BLOCK_SIZE);
+        Tape in = tapes.open(source);
+        Tape out = tapes.open(output);
+        in.reset("r");
+        out.reset("rw");
+        out.truncate();
+        RunStats runs = new AdaptiveRunGenerator(tapes, minRun, BUFFER_COUNT).generate(in, new Tape[] {out});
+        in.close();
+        out.close();
+
+        List<Record> expected = new ArrayList<>(data);
+        expected.sort(null);
+        assertEquals(1, runs.runs(), "Очікується одна серія");
+        assertEquals(expected.stream().map(Record::toString).toList(),
+                readAll(output).stream().map(Record::toString).toList(), "Рівні ключі переставлено");
+        Files.delete(Path.of(output));
+    }
+
+    // Інкрементальне сортування: відсортована база + невелика дописана порція.
+    // Po dopisaniu wystarcza jeden przebieg scalania zamiast pełnego sortowania od nowa.
+    @ParameterizedTest
+    @CsvSource({"100000,1000", "100000,20000"})
+    @Order(14)
+    public void runIncrementalExperiment(int N, int delta) throws IOException {
+        String filename = "test_file_" + N + "_inc.bin";
+        String copy = "test_file_" + N + "_full.bin";
+        System.out.println("--- Running incremental sort test for N = " + N + ", delta = " + delta + " ---");
+        TapeFactory tapes = new TapeFactory(RECORD_SIZE, BLOCK_SIZE);
+        IncrementalSorter sorter = new IncrementalSorter(tapes,
+                new ParallelExternalSorter(tapes, 1, BUFFER_COUNT, 16), BUFFER_COUNT);
+
+        TapeManifest.delete(filename);
+        generateFile(filename, N);
+        sorter.sort(filename);
+        assertEquals(N, TapeManifest.read(filename).sortedRecords());
+
+        appendRandom(filename, delta);
+        Files.copy(Path.of(filename), Path.of(copy), StandardCopyOption.REPLACE_EXISTING);
+        int K = (int) Math.ceil((double) (N + delta) / (BLOCK_SIZE / RECORD_SIZE));
+
+        SortStats full = new NaturalMergeSorter(RECORD_SIZE, BLOCK_SIZE).sort(copy);
+        SortStats incremental = sorter.sort(filename);
+        boolean sorted = isFileSorted(filename);
+        long oFull = full.diskReads() + full.diskWrites();
+        long oIncremental = incremental.diskReads() + incremental.diskWrites();
+        incrementalResultsWriter.println(String.format("%d,%d,full,0,%d,%d,%d,%b,%d",
+                N, delta, full.phases(), oFull, K, isFileSorted(copy), full.durationMs()));
+        incrementalResultsWriter.println(String.format("%d,%d,incremental,1,%d,%d,%d,%b,%d",
+                N, delta, incremental.phases(), oIncremental, K, sorted, incremental.durationMs()));
+
+        assertTrue(sorted, "Файл " + filename + " НЕ відсортовано!");
+        assertEquals(N + delta, countRecords(filename));
+        assertEquals(N + delta, TapeManifest.read(filename).sortedRecords());
+        assertTrue(oIncremental < oFull / 4, "Operacje: " + oIncremental + " vs pełne " + oFull);
+        // Scalenie to jeden odczyt i jeden zapis całości plus posortowanie samej porcji
+        assertTrue(oIncremental <= 2L * K + 8L * delta / (BLOCK_SIZE / RECORD_SIZE) + 16,
+                "Więcej niż jeden przebieg: " + oIncremental + " przy K = " + K);
+
+        // Poziomy jak w LSM: kilka porcji czeka osobno, taśma cały czas ma wszystkie rekordy
+        int[] deltas = {delta, delta / 2, 3 * delta};
+        long total = N + delta;
+        for (int d : deltas) {
+            appendRandom(filename, d);
+            total += d;
+            SortStats stats = sorter.append(filename, SortListener.NONE);
+            TapeManifest manifest = TapeManifest.read(filename);
+            assertEquals(total, countRecords(filename));
+            assertEquals(total - N - delta, manifest.levelRecords());
+            assertTrue(manifest.levels().size() <= 2, "Poziomy: " + manifest.levels());
+            incrementalResultsWriter.println(String.format("%d,%d,append,%d,%d,%d,%d,%b,%d",
+                    N, d, manifest.levels().size(), stats.phases(), stats.diskReads() + stats.diskWrites(),
+                    K, false, stats.durationMs()));
+        }
+        TapeManifest beforeCompaction = TapeManifest.read(filename);
+        SortStats compacted = sorter.sort(filename);
+        incrementalResultsWriter.println(String.format("%d,%d,compact,%d,%d,%d,%d,%b,%d",
+                N, 0, beforeCompaction.levels().size(), compacted.phases(),
+                compacted.diskReads() + compacted.diskWrites(), K, isFileSorted(filename), compacted.durationMs()));
+        assertTrue(isFileSorted(filename));
+        assertEquals(total, countRecords(filename));
+        assertTrue(TapeManifest.read(filename).levels().isEmpty());
+        for (TapeManifest.Level level : beforeCompaction.levels()) {
+            assertTrue(!Files.exists(Path.of(level.fileName())), "Nie usunięto poziomu " + level.fileName());
+        }
+        assertEquals(List.of(), scratchFiles(Path.of("."), "tape_inc"), "Nie usunięto taśmy wyniku scalania");
+
+        // Taśma zmieniona poza manifestem: pełne sortowanie zamiast scalania z nieposortowanym początkiem
+        Tape tape = new Tape(filename, RECORD_SIZE, BLOCK_SIZE);
+        tape.reset("rw");
+        tape.seek((total - 1) * RECORD_SIZE);
+        tape.writeRecord(new Record(1, 1, 1, 1, 1));
+        tape.close();
+        sorter.sort(filename);
+        assertTrue(isFileSorted(filename));
+        assertEquals(total, countRecords(filename));
+
+        TapeManifest.delete(filename);
+        Files.delete(Path.of(filename));
+        Files.delete(Path.of(copy));
+    }
+
+    // Вибір K найменших/найбільших без повного сортування.
+    // Wejście jest czytane dokładnie raz; wynik ma te same klucze co początek (koniec) pełnego sortowania.
+    @ParameterizedTest
+    @CsvSource({"100000,10,false,PLAIN", "100000,1000,true,PLAIN", "100000,20000,false,PLAIN",
+            "100000,20000,true,PLAIN", "100000,60000,false,PLAIN", "100000,20000,false,KEYED",
+            "100000,20000,false,COMPRESSED", "100000,60000,true,COMPRESSED"})
+    @Order(15)
+    public void runTopKExperiment(int N, int topK, boolean largest, RecordLayout layout) throws IOException {
+        String filename = "test_file_" + N + "_topk.bin";
+        String copy = "test_file_" + N + "_topk_full.bin";
+        String output = "test_file_" + N + "_topk_out.bin";
+        String order = largest ? "largest" : "smallest";
+        System.out.println("--- Running top-K test for N = " + N + ", K = " + topK + " (" + order + ", " + layout + ") ---");
+        generateFile(filename, N);
+        Files.copy(Path.of(filename), Path.of(copy), StandardCopyOption.REPLACE_EXISTING);
+        int K = (int) Math.ceil((double) N / (BLOCK_SIZE / RECORD_SIZE));
+
+        SortStats full = new NaturalMergeSorter(RECORD_SIZE, BLOCK_SIZE).sort(copy);
+        List<Record> sorted = readAll(copy);
+        long[] expected = new long[topK];
+        for (int i = 0; i < topK; i++) {
+            expected[i] = sorted.get(largest ? N - 1 - i : i).getSortKey();
+        }
+
+        // Serie i wynik pośredni na taśmach pomocniczych w wybranym układzie
+        TopKSelector selector = new TopKSelector(new TapeFactory(RECORD_SIZE, BLOCK_SIZE, StorageType.RAF, 0, layout),
+                BUFFER_COUNT, 16);
+        SortStats stats = selector.select(filename, output, topK, largest);
+        List<Record> selected = readAll(output);
+        boolean correct = selected.size() == topK;
+        for (int i = 0; correct && i < topK; i++) {
+            correct = selected.get(i).getSortKey() == expected[i];
+        }
+        long inputReads = 0;
+        for (PhaseStats phase : stats.phaseDetails()) {
+            for (TapeStats tape : phase.tapes()) {
+                if (tape.tape().equals(filename)) {
+                    inputReads += tape.blocksRead();
+                }
+            }
+        }
+        long oFull = full.diskReads() + full.diskWrites();
+        long oTopK = stats.diskReads() + stats.diskWrites();
+        topKResultsWriter.println(String.format("%d,%d,%s,%s,full,%d,%d,%d,%d,%b,%d",
+                N, topK, order, layout, full.phases(), oFull, K, K, isFileSorted(copy), full.durationMs()));
+        topKResultsWriter.println(String.format("%d,%d,%s,%s,%s,%d,%d,%d,%d,%b,%d",
+                N, topK, order, layout, topK <= selector.getCapacity() ? "heap" : "partition", stats.phases(), oTopK,
+                inputReads, K, correct, stats.durationMs()));
+
+        assertTrue(correct, "Wynik top-K różny od pełnego sortowania");
+        assertEquals(K, inputReads, "Wejście czytane więcej niż raz");
+        assertTrue(oTopK < oFull / 2, "Operacje: " + oTopK + " vs pełne " + oFull);
+
+        // Ten sam wynik jako iterator
+        try (SortedIterator iterator = selector.iterate(filename, topK, largest, SortListener.NONE)) {
+            Record record = new Record();
+            int count = 0;
+            while (iterator.next(record)) {
+                assertEquals(expected[count], record.getSortKey(), "Rekord " + count + " iteratora");
+                count++;
+            }
+            assertEquals(topK, count);
+            assertTrue(iterator.getStats().phases() >= 1);
+        }
+
+        Files.delete(Path.of(filename));
+        Files.delete(Path.of(copy));
+        Files.delete(Path.of(output));
+        assertEquals(List.of(), scratchFiles(Path.of("."), "tape_topk"), "Nie usunięto taśm pomocniczych top-K");
+    }
+
+    // Redukcja przy scalaniu: wynik porównany z grupami kluczy policzonymi w pamięci,
+    // a liczba operacji z pełnym sortowaniem bez redukcji
+    @ParameterizedTest
+    @CsvSource({"20000,distinct", "20000,first", "20000,count", "20000,min", "20000,max",
+            "100000,distinct", "100000,first", "100000,count"})
+    @Order(16)
+    public void runReducerExperiment(int N, String mode) throws IOException {
+        String filename = "test_file_" + N + "_reduce.bin";
+        String copy = "test_file_" + N + "_reduce_full.bin";
+        System.out.println("--- Running reducer test for N = " + N + ", " + mode + " ---");
+        MergeReducer reducer = switch (mode) {
+            case "distinct" -> MergeReducer.distinct();
+            case "first" -> MergeReducer.first();
+            case "count" -> MergeReducer.count();
+            case "min" -> MergeReducer.min(MergeReducer.FIELD_X);
+            default -> MergeReducer.max(MergeReducer.FIELD_X);
+        };
+        int recordSize = (reducer.getMode() == MergeReducer.Mode.COUNT) ? RECORD_SIZE + Long.BYTES : RECORD_SIZE;
+        if (recordSize == RECORD_SIZE) {
+            generateFile(filename, N);
+        } else {
+            generateWideFile(filename, N, recordSize);
+        }
+        Files.copy(Path.of(filename), Path.of(copy), StandardCopyOption.REPLACE_EXISTING);
+
+        // Grupy kluczy wejścia: liczba rekordów, najmniejsze i największe x
+        java.util.Map<Long, long[]> groups = new java.util.HashMap<>();
+        java.util.Set<String> distinct = new java.util.HashSet<>();
+        int[] fields = new int[5];
+        for (Record record : readAll(filename, recordSize)) {
+            record.getFields(fields);
+            long[] group = groups.computeIfAbsent(record.getSortKey(),
+                    key -> new long[] {0, Long.MAX_VALUE, Long.MIN_VALUE});
+            group[0]++;
+            group[1] = Math.min(group[1], fields[MergeReducer.FIELD_X]);
+            group[2] = Math.max(group[2], fields[MergeReducer.FIELD_X]);
+            distinct.add(record.toString());
+        }
+
+        SortStats plain = new NaturalMergeSorter(recordSize, BLOCK_SIZE).sort(copy);
+        SortStats stats = new NaturalMergeSorter(new TapeFactory(recordSize, BLOCK_SIZE), null, reducer)
+                .sort(filename);
+
+        List<Record> output = readAll(filename, recordSize);
+        boolean correct = true;
+        java.util.Set<String> seen = new java.util.HashSet<>();
+        long counted = 0;
+        Record last = null;
+        for (Record record : output) {
+            record.getFields(fields);
+            long[] group = groups.get(record.getSortKey());
+            correct &= group != null && (last == null || record.compareTo(last) >= 0);
+            if (!correct) {
+                break;
+            }
+            if (reducer.getMode() == MergeReducer.Mode.DISTINCT) {
+                correct = seen.add(record.toString());
+            } else {
+                correct = last == null || record.getSortKey() != last.getSortKey();
+            }
+            switch (reducer.getMode()) {
+                case COUNT -> {
+                    correct &= MergeReducer.countOf(record) == group[0];
+                    counted += MergeReducer.countOf(record);
+                }
+                case MIN -> correct &= fields[MergeReducer.FIELD_X] == group[1];
+                case MAX -> correct &= fields[MergeReducer.FIELD_X] == group[2];
+                default -> { }
+            }
+            last = record;
+        }
+        int expected = (reducer.getMode() == MergeReducer.Mode.DISTINCT) ? distinct.size() : groups.size();
+        correct &= output.size() == expected;
+        if (reducer.getMode() == MergeReducer.Mode.COUNT) {
+            correct &= counted == N;
+        }
+
+        long eliminated = 0;
+        StringBuilder perPhase = new StringBuilder();
+        for (PhaseStats phase : stats.phaseDetails()) {
+            eliminated += phase.recordsEliminated();
+            perPhase.append(perPhase.length() > 0 ? "|" : "").append(phase.recordsEliminated());
+        }
+        long oPlain = plain.diskReads() + plain.diskWrites();
+        long oReduced = stats.diskReads() + stats.diskWrites();
+        reducerResultsWriter.println(String.format("%d,none,%d,%d,%d,0,0,%b,%d", N, plain.phases(), oPlain, N,
+                isFileSorted(copy, recordSize), plain.durationMs()));
+        reducerResultsWriter.println(String.format("%d,%s,%d,%d,%d,%d,%s,%b,%d", N, reducer, stats.phases(),
+                oReduced, output.size(), eliminated, perPhase, correct, stats.durationMs()));
+
+        assertTrue(correct, "Wynik redukcji " + reducer + " nie zgadza się z grupami wejścia");
+        assertEquals(N - output.size(), eliminated, "Suma usuniętych rekordów w fazach");
+        assertTrue(oReduced < oPlain, "Operacje: " + oReduced + " vs bez redukcji " + oPlain);
+
+        Files.delete(Path.of(filename));
+        Files.delete(Path.of(copy));
+    }
+
+    // Przerwane sortowanie z punktami kontrolnymi: wyjątek na początku fazy crashPhase udaje awarię procesu.
+    // Wznowienie musi dać ten sam plik co sortowanie bez przerwy i wykonać tylko brakujące fazy.
+    // renamed - awaria między zapisem punktu kontrolnego a zamianą wejścia na wynik scalania
+    @ParameterizedTest
+    @CsvSource({"20000,2,false", "20000,8,false", "100000,10,false", "100000,10,true"})
+    @Order(17)
+    public void runCheckpointExperiment(int N, int crashPhase, boolean renamed) throws IOException {
+        String filename = "test_file_" + N + "_checkpoint.bin";
+        String copy = "test_file_" + N + "_checkpoint_full.bin";
+        System.out.println("--- Running checkpoint test for N = " + N + ", crash in phase " + crashPhase + " ---");
+        generateFile(filename, N);
+        Files.copy(Path.of(filename), Path.of(copy), StandardCopyOption.REPLACE_EXISTING);
+
+        SortStats full = new NaturalMergeSorter(RECORD_SIZE, BLOCK_SIZE).sort(copy);
+        assertTrue(crashPhase < full.phases(), "Awaria musi wypaść przed ostatnią fazą");
+
+        TapeFactory factory = new TapeFactory(RECORD_SIZE, BLOCK_SIZE);
+        SortListener crash = new SortListener() {
+            @Override
+            public void phaseStarted(int phase) {
+                if (phase == crashPhase) {
+                    throw new IllegalStateException("Awaria w fazie " + phase);
+                }
+            }
+        };
+        try {
+            new NaturalMergeSorter(factory, null, null, true).sort(filename, crash);
+            throw new AssertionError("Sortowanie nie zostało przerwane");
+        } catch (IllegalStateException e) {
+            System.out.println(e.getMessage());
+        }
+        SortCheckpoint checkpoint = SortCheckpoint.read(filename);
+        assertTrue(checkpoint != null, "Brak punktu kontrolnego");
+        assertEquals(crashPhase - 1, checkpoint.phase());
+        assertEquals(SortCheckpoint.Stage.MERGED, checkpoint.stage());
+        assertEquals(N, countRecords(filename), "Wejście po awarii nie ma wszystkich rekordów");
+        if (renamed) {
+            Files.move(Path.of(filename), Path.of(filename + ".next.bin"));
+        }
+
+        SortStats resumed = new NaturalMergeSorter(factory, null, null, true).sort(filename);
+        boolean sorted = isFileSorted(filename);
+        long oFull = full.diskReads() + full.diskWrites();
+        long oResumed = resumed.diskReads() + resumed.diskWrites();
+        checkpointResultsWriter.println(String.format("%d,%d,full,%d,%d,%d,%b,%d", N, crashPhase,
+                full.phases(), full.phases(), oFull, isFileSorted(copy), full.durationMs()));
+        checkpointResultsWriter.println(String.format("%d,%d,%s,%d,%d,%d,%b,%d", N, crashPhase,
+                renamed ? "resumed_renamed" : "resumed", resumed.phases(), resumed.phaseDetails().size(),
+                oResumed, sorted, resumed.durationMs()));
+
+        assertTrue(sorted);
+        assertEquals(-1, Files.mismatch(Path.of(filename), Path.of(copy)), "Wynik różny od sortowania bez przerwy");
+        assertEquals(full.phases(), resumed.phases());
+        assertEquals(full.phases() - checkpoint.phase(), resumed.phaseDetails().size());
+        assertTrue(oResumed < oFull, "Operacje po wznowieniu: " + oResumed + " vs " + oFull);
+        for (String leftover : new String[] {".checkpoint", ".b.bin", ".c.bin", ".next.bin"}) {
+            assertTrue(!Files.exists(Path.of(filename + leftover)), "Pozostał plik " + filename + leftover);
+        }
+
+        // Taśma zmieniona po awarii: punkt kontrolny jest pomijany i taśma sortowana od początku
+        generateFile(filename, N);
+        try {
+            new NaturalMergeSorter(factory, null, null, true).sort(filename, crash);
+        } catch (IllegalStateException e) {
+            System.out.println(e.getMessage());
+        }
+        generateFile(filename, N);
+        SortStats restarted = new NaturalMergeSorter(factory, null, null, true).sort(filename);
+        assertTrue(isFileSorted(filename));
+        assertEquals(restarted.phases(), restarted.phaseDetails().size(), "Zmieniona taśma wznowiona z punktu kontrolnego");
+        assertEquals(N, countRecords(filename));
+
+        Files.delete(Path.of(filename));
+        Files.delete(Path.of(copy));
+    }
+
+    // Taśmy pomocnicze na dwóch katalogach: zapisy rozłożone na oba, po sortowaniu (także przerwanym)
+    // katalogi są puste, a dwa sortowania naraz w tym samym katalogu nie psują sobie taśm
+    @ParameterizedTest
+    @CsvSource({"50000,natural", "50000,kway8", "50000,polyphase4", "50000,parallel2", "50000,concurrent"})
+    @Order(18)
+    public void runScratchSpaceExperiment(int N, String algorithm) throws IOException, InterruptedException {
+        String filename = "test_file_" + N + "_scratch.bin";
+        System.out.println("--- Running scratch space test for N = " + N + ", " + algorithm + " ---");
+        List<Path> directories = List.of(Path.of("test_scratch0"), Path.of("test_scratch1"));
+        ScratchSpace scratch = new ScratchSpace(directories);
+        TapeFactory factory = new TapeFactory(RECORD_SIZE, BLOCK_SIZE, StorageType.RAF, 0, RecordLayout.PLAIN,
+                false, scratch);
+        java.util.function.Supplier<ExternalSorter> sorter = () -> switch (algorithm) {
+            case "kway8" -> new KWayMergeSorter(factory, 8);
+            case "polyphase4" -> new PolyphaseMergeSorter(factory, 4);
+            case "parallel2" -> new ParallelExternalSorter(factory, 2, 8, 4);
+            default -> new NaturalMergeSorter(factory, null);
+        };
+        generateFile(filename, N);
+
+        long[] writes = new long[directories.size()];
+        SortListener perDirectory = new SortListener() {
+            @Override
+            public void tapeMeasured(TapeStats stats) {
+                Path parent = Path.of(stats.tape()).getParent();
+                for (int i = 0; i < directories.size(); i++) {
+                    if (directories.get(i).equals(parent) || Path.of(".").resolve(directories.get(i)).equals(parent)) {
+                        writes[i] += stats.blocksWritten();
+                    }
+                }
+            }
+        };
+
+        SortStats stats;
+        boolean sorted;
+        if (algorithm.equals("concurrent")) {
+            // Drugie sortowanie w tym samym czasie i z tymi samymi katalogami
+            String other = "test_file_" + N + "_scratch_other.bin";
+            generateFile(other, N);
+            java.util.concurrent.ExecutorService pool = java.util.concurrent.Executors.newFixedThreadPool(2);
+            java.util.concurrent.Future<SortStats> first = pool.submit(() -> sorter.get().sort(filename, perDirectory));
+            java.util.concurrent.Future<SortStats> second = pool.submit(() -> sorter.get().sort(other));
+            try {
+                stats = first.get();
+                second.get();
+            } catch (java.util.concurrent.ExecutionException e) {
+                throw new AssertionError(e.getCause());
+            } finally {
+                pool.shutdown();
+            }
+            sorted = isFileSorted(filename) && isFileSorted(other)
+                    && countRecords(filename) == N && countRecords(other) == N;
+            Files.delete(Path.of(other));
+        } else {
+            stats = sorter.get().sort(filename, perDirectory);
+            sorted = isFileSorted(filename) && countRecords(filename) == N;
+        }
+        scratchResultsWriter.println(String.format("%d,%s,%d,%d,%d,%d,%d,%b,%d", N, algorithm, directories.size(),
+                stats.phases(), stats.diskReads() + stats.diskWrites(), writes[0], writes[1], sorted,
+                stats.durationMs()));
+
+        assertTrue(sorted, "Wynik sortowania z taśmami na dwóch katalogach");
+        assertTrue(writes[0] > 0 && writes[1] > 0, "Zapisy tylko na jednym katalogu: " + writes[0] + ", " + writes[1]);
+        for (Path directory : directories) {
+            assertEquals(List.of(), scratchFiles(directory, ""), "Taśmy pomocnicze zostały w " + directory);
+        }
+
+        // Błąd w trakcie sortowania: taśmy pomocnicze też są usuwane
+        generateFile(filename, N);
+        SortListener failing = new SortListener() {
+            @Override
+            public void phaseStarted(int phase) {
+                if (phase == 2) {
+                    throw new IllegalStateException("Błąd w fazie " + phase);
+                }
+            }
+        };
+        try {
+            sorter.get().sort(filename, failing);
+        } catch (IllegalStateException e) {
+            System.out.println(e.getMessage());
+        }
+        for (Path directory : directories) {
+            assertEquals(List.of(), scratchFiles(directory, ""), "Taśmy pomocnicze zostały po błędzie w " + directory);
+            Files.delete(directory);
+        }
+        Files.delete(Path.of(filename));
+    }
+
+    // Podział zakresu na P partycji sortowanych przez wątki albo osobne procesy JVM: wynik taki sam
+    // jak z sortowania naturalnego, a nierównomierność partycji mała także przy częstym kluczu
+    @ParameterizedTest
+    @CsvSource({"100000,8,2,threads,random", "100000,8,2,threads,skewed", "100000,4,4,process,random",
+            "20000,1,1,threads,random", "100000,16,4,threads,sorted"})
+    @Order(19)
+    public void runPartitionedExperiment(int N, int P, int workers, String mode, String input) throws IOException {
+        String filename = "test_file_" + N + "_partitioned.bin";
+        String copy = "test_file_" + N + "_partitioned_full.bin";
+        System.out.println("--- Running partitioned test for N = " + N + ", P = " + P + ", " + mode + ", " + input + " ---");
+        if (input.equals("skewed")) {
+            // Połowa rekordów z tym samym kluczem
+            generateFile(filename, N / 2);
+            Tape tape = new Tape(filename, RECORD_SIZE, BLOCK_SIZE);
+            tape.reset("rw");
+            tape.seek(tape.length());
+            for (int i = 0; i < N - N / 2; i++) {
+                tape.writeRecord(new Record(5, 2, 3, 3, 10));
+            }
+            tape.close();
+        } else {
+            generateFile(filename, N);
+        }
+        if (input.equals("sorted")) {
+            new NaturalMergeSorter(RECORD_SIZE, BLOCK_SIZE).sort(filename);
+        }
+        Files.copy(Path.of(filename), Path.of(copy), StandardCopyOption.REPLACE_EXISTING);
+
+        SortStats full = new NaturalMergeSorter(RECORD_SIZE, BLOCK_SIZE).sort(copy);
+        PartitionedSorter sorter = new PartitionedSorter(new TapeFactory(RECORD_SIZE, BLOCK_SIZE), P, workers,
+                mode.equals("process"), 16);
+        SortStats stats = sorter.sort(filename);
+
+        List<Record> expected = readAll(copy);
+        List<Record> actual = readAll(filename);
+        boolean sorted = isFileSorted(filename) && actual.size() == N;
+        for (int i = 0; sorted && i < N; i++) {
+            sorted = actual.get(i).getSortKey() == expected.get(i).getSortKey();
+        }
+        // Rekordy o równym kluczu mogą wyjść w innej kolejności, ale muszą być te same
+        List<String> expectedRecords = new ArrayList<>(expected.stream().map(Record::toString).toList());
+        List<String> actualRecords = new ArrayList<>(actual.stream().map(Record::toString).toList());
+        java.util.Collections.sort(expectedRecords);
+        java.util.Collections.sort(actualRecords);
+        sorted &= expectedRecords.equals(actualRecords);
+
+        long[] sizes = sorter.getPartitionSizes();
+        long oFull = full.diskReads() + full.diskWrites();
+        long oPartitioned = stats.diskReads() + stats.diskWrites();
+        partitionedResultsWriter.println(String.format(java.util.Locale.ROOT, "%d,%d,%d,natural,%s,%d,%d,1.00,1,%b,%d",
+                N, P, 1, input, full.phases(), oFull, isFileSorted(copy), full.durationMs()));
+        partitionedResultsWriter.println(String.format(java.util.Locale.ROOT, "%d,%d,%d,%s,%s,%d,%d,%.2f,%s,%b,%d",
+                N, P, workers, mode, input, stats.phases(), oPartitioned, sorter.getSkew(),
+                java.util.Arrays.stream(sizes).mapToObj(Long::toString).collect(java.util.stream.Collectors.joining("|")),
+                sorted, stats.durationMs()));
+
+        assertTrue(sorted, "Wynik sortowania z podziałem różny od sortowania naturalnego");
+        assertEquals(P, sizes.length);
+        assertEquals(N, java.util.Arrays.stream(sizes).sum());
+        assertEquals(4, stats.phases());
+        assertTrue(sorter.getSkew() < 1.6, "Nierównomierność partycji " + sorter.getSkew());
+        if (P > 1 && !input.equals("sorted")) {
+            assertTrue(oPartitioned < oFull, "Operacje: " + oPartitioned + " vs naturalne " + oFull);
+        }
+        assertEquals(List.of(), scratchFiles(Path.of("."), "tape_part"), "Nie usunięto taśm partycji");
+
+        Files.delete(Path.of(filename));
+        Files.delete(Path.of(copy));
+    }
+
+    // Mode: offsets - taśma zapisu na klucz, buckets - kubełki, memory - całe wejście w pamięci,
+    // sorted - jeden klucz, czyli taśma już posortowana, fallback - za dużo kluczy, sortowanie przez scalanie
+    @ParameterizedTest
+    @CsvSource({"100000,10,1000,false,offsets", "100000,1,1000,false,sorted", "100000,500,1000,false,buckets",
+            "100000,10,1000,true,buckets", "5000,300,1000,false,memory", "100000,5000,1000,false,fallback"})
+    @Order(20)
+    public void runCountingExperiment(int N, int keys, int maxKeys, boolean indexed, String mode) throws IOException {
+        String filename = "test_file_" + N + "_counting.bin";
+        String copy = "test_file_" + N + "_counting_full.bin";
+        System.out.println("--- Running counting sort test for N = " + N + ", " + keys + " keys, " + mode + " ---");
+        // Rekordy losowane z puli keys wzorców o różnych kluczach
+        Random rand = new Random(keys);
+        Record[] pool = new Record[keys];
+        java.util.Set<Long> poolKeys = new java.util.HashSet<>();
+        for (int k = 0; k < keys; k++) {
+            do {
+                pool[k] = new Record(rand.nextInt(10) + 1, rand.nextInt(10) + 1, rand.nextInt(10) + 1,
+                        rand.nextInt(10) + 1, rand.nextInt(10) + 1);
+            } while (!poolKeys.add(pool[k].getSortKey()));
+        }
+        Tape tape = new Tape(filename, RECORD_SIZE, BLOCK_SIZE);
+        tape.reset("rw");
+        tape.truncate();
+        for (int i = 0; i < N; i++) {
+            tape.writeRecord(pool[rand.nextInt(keys)]);
+        }
+        tape.close();
+        Files.copy(Path.of(filename), Path.of(copy), StandardCopyOption.REPLACE_EXISTING);
+
+        SortStats full = new NaturalMergeSorter(RECORD_SIZE, BLOCK_SIZE).sort(copy);
+        TapeFactory factory = new TapeFactory(RECORD_SIZE, BLOCK_SIZE, StorageType.RAF, 0, RecordLayout.PLAIN,
+                indexed);
+        CountingSorter sorter = new CountingSorter(factory, new NaturalMergeSorter(factory, null), 64, maxKeys);
+        SortStats stats = sorter.sort(filename);
+
+        List<Record> expected = readAll(copy);
+        List<Record> actual = readAll(filename);
+        boolean sorted = isFileSorted(filename) && actual.size() == N;
+        // Kolejność rekordów o równym kluczu nie jest ustalona, ale muszą być te same
+        List<String> expectedRecords = new ArrayList<>(expected.stream().map(Record::toString).toList());
+        List<String> actualRecords = new ArrayList<>(actual.stream().map(Record::toString).toList());
+        java.util.Collections.sort(expectedRecords);
+        java.util.Collections.sort(actualRecords);
+        sorted &= expectedRecords.equals(actualRecords);
+
+        long oFull = full.diskReads() + full.diskWrites();
+        long oCounting = stats.diskReads() + stats.diskWrites();
+        countingResultsWriter.println(String.format("%d,%d,%d,%b,natural,%d,%d,0,%b,%d",
+                N, keys, maxKeys, indexed, full.phases(), oFull, isFileSorted(copy), full.durationMs()));
+        countingResultsWriter.println(String.format("%d,%d,%d,%b,%s,%d,%d,%d,%b,%d",
+                N, keys, maxKeys, indexed, mode, stats.phases(), oCounting, sorter.getBuckets(), sorted,
+                stats.durationMs()));
+
+        assertTrue(sorted, "Wynik sortowania przez zliczanie różny od sortowania naturalnego");
+        assertEquals(mode.equals("fallback"), sorter.fellBack());
+        switch (mode) {
+            case "offsets" -> {
+                assertEquals(2, stats.phases());
+                assertEquals(keys, sorter.getBuckets());
+            }
+            case "buckets" -> assertEquals(3, stats.phases());
+            case "memory" -> {
+                assertEquals(2, stats.phases());
+                assertEquals(1, sorter.getBuckets());
+            }
+            case "sorted" -> {
+                assertEquals(1, stats.phases());
+                assertEquals(0, sorter.getBuckets());
+            }
+            default -> assertEquals(full.phases() + 1, stats.phases());
+        }
+        if (!mode.equals("fallback")) {
+            assertEquals(keys, sorter.getDistinctKeys());
+            assertTrue(oCounting < oFull, "Operacje: " + oCounting + " vs naturalne " + oFull);
+        }
+        if (indexed) {
+            assertTrue(Files.exists(Path.of(filename + ".idx")), "Brak indeksu bloków posortowanej taśmy");
+            BlockIndex.delete(filename);
+        }
+        assertTrue(!Files.exists(Path.of(filename + ".counting.bin")), "Nie usunięto pliku wyniku");
+
+        // Błąd w ostatniej fazie: wejście bez zmian, niepełny plik wyniku usunięty
+        if (mode.equals("offsets") || mode.equals("buckets")) {
+            List<Record> reversed = new ArrayList<>(actual);
+            java.util.Collections.reverse(reversed);
+            writeRecords(filename, reversed);
+            int lastPhase = stats.phases();
+            SortListener failing = new SortListener() {
+                @Override
+                public void phaseFinished(PhaseStats phase) {
+                    if (phase.phase() == lastPhase) {
+                        throw new IllegalStateException("Przerwano fazę " + lastPhase);
+                    }
+                }
+            };
+            org.junit.jupiter.api.Assertions.assertThrows(IllegalStateException.class,
+                    () -> sorter.sort(filename, failing));
+            assertEquals(N, countRecords(filename));
+            assertTrue(!Files.exists(Path.of(filename + ".counting.bin")), "Niepełny wynik został po błędzie");
+            assertTrue(!Files.exists(Path.of(filename + ".counting.bin.idx")), "Indeks wyniku został po błędzie");
+            BlockIndex.delete(filename);
+        }
+        assertEquals(List.of(), scratchFiles(Path.of("."), "tape_bucket"), "Nie usunięto kubełków");
+
+        Files.delete(Path.of(filename));
+        Files.delete(Path.of(copy));
+    }
+
+    // Skrajne wartości pól i bloki mniejsze od ramki
+    private void assertCompressedRoundTrip() throws IOException {
+        int[] values = {Integer.MIN_VALUE, -1, 0, 1, 127, 128, 20, Integer.MAX_VALUE};
+        for (int blockSize : new int[] {20, 64, BLOCK_SIZE}) {
+            Tape tape = new Tape("test_file_compressed.bin", RECORD_SIZE, blockSize,
+                    StorageType.RAF, 0, RecordLayout.COMPRESSED);
+            tape.reset("rw");
+            tape.truncate();
+            for (int i = 0; i < 5000; i++) {
+                tape.writeRecord(new Record(values[i % 8], values[(i / 8) % 8], i, -i, values[(i * 7) % 8]));
+            }
+            tape.reset("r");
+            Record record = new Record();
+            int count = 0;
+            while (tape.readRecord(record)) {
+                int i = count++;
+                assertEquals(new Record(values[i % 8], values[(i / 8) % 8], i, -i, values[(i * 7) % 8]).toString(),
+                        record.toString());
+            }
+            tape.close();
+            assertEquals(5000, count);
+        }
+        Files.delete(Path.of("test_file_compressed.bin"));
+    }
+
+    private List<String> scratchFiles(Path directory, String prefix) throws IOException {
+        try (java.util.stream.Stream<Path> files = Files.list(directory)) {
+            return files.map(path -> path.getFileName().toString()).filter(name -> name.startsWith(prefix)).toList();
+        }
+    }
+
+    private List<Record> readAll(String filename) throws IOException {
+        return readAll(filename, RECORD_SIZE);
+    }
+
+    private List<Record> readAll(String filename, int recordSize) throws IOException {
+        Tape tape = new Tape(filename, recordSize, BLOCK_SIZE);
+        tape.reset("r");
+        List<Record> records = new ArrayList<>();
+        Record record;
+        while ((record = tape.readRecord()) != null) {
+            records.add(record);
+        }
+        tape.close();
+        return records;
+    }
+
     // --- Допоміжні методи (скопійовані з Main.java) ---
 
+    private void appendRandom(String filename, int numRecords) throws IOException {
+        Tape tape = new Tape(filename, RECORD_SIZE, BLOCK_SIZE);
+        tape.reset("rw");
+        tape.seek(tape.length());
+        Random rand = new Random();
+        for (int i = 0; i < numRecords; i++) {
+            tape.writeRecord(new Record(
+                    rand.nextInt(10) + 1, rand.nextInt(4) + 1,
+                    rand.nextInt(5) + 1, rand.nextInt(5) + 1,
+                    rand.nextInt(20) + 1));
+        }
+        tape.close();
+    }
+
+    private void writeRecords(String filename, List<Record> records) throws IOException {
+        Tape tape = new Tape(filename, RECORD_SIZE, BLOCK_SIZE);
+        tape.reset("rw");
+        tape.truncate();
+        for (Record record : records) {
+            tape.writeRecord(record);
+        }
+        tape.close();
+    }
+
     private void generateFile(String filename, int numRecords) throws IOException {
         Tape tape = new Tape(filename, RECORD_SIZE, BLOCK_SIZE);
         tape.reset("rw");
@@ -93,6 +1416,59 @@ public class SortExperimentTest {
         tape.close();
     }
 
+    // Rekord i jego dane dodatkowe są wyznaczone przez numer rekordu zapisany na początku danych
+    private Record wideRecord(int index, int recordSize) {
+        Random rand = new Random(index);
+        Record record = new Record(rand.nextInt(10) + 1, rand.nextInt(4) + 1,
+                rand.nextInt(5) + 1, rand.nextInt(5) + 1, rand.nextInt(20) + 1);
+        byte[] payload = new byte[recordSize - RECORD_SIZE];
+        rand.nextBytes(payload);
+        if (payload.length >= Integer.BYTES) {
+            java.nio.ByteBuffer.wrap(payload).putInt(0, index);
+        }
+        record.setPayload(payload, 0, payload.length);
+        return record;
+    }
+
+    private void generateWideFile(String filename, int numRecords, int recordSize) throws IOException {
+        Tape tape = new Tape(filename, recordSize, BLOCK_SIZE);
+        tape.reset("rw");
+        tape.truncate();
+        for (int i = 0; i < numRecords; i++) {
+            tape.writeRecord(wideRecord(i, recordSize));
+        }
+        tape.close();
+    }
+
+    // Porządek według g() oraz to, że każdy rekord występuje dokładnie raz, razem ze swoimi danymi
+    private boolean isWideFileSorted(String filename, int numRecords, int recordSize) throws IOException {
+        Tape tape = new Tape(filename, recordSize, BLOCK_SIZE);
+        tape.reset("r");
+        java.util.BitSet seen = new java.util.BitSet(numRecords);
+        Record last = null;
+        Record current;
+        int count = 0;
+        while ((current = tape.readRecord()) != null) {
+            if (last != null && current.compareTo(last) < 0) {
+                tape.close();
+                return false;
+            }
+            if (recordSize - RECORD_SIZE >= Integer.BYTES) {
+                int index = java.nio.ByteBuffer.wrap(current.getPayload()).getInt(0);
+                Record expected = wideRecord(index, recordSize);
+                assertEquals(expected.toString(), current.toString());
+                assertTrue(java.util.Arrays.equals(expected.getPayload(), current.getPayload()),
+                        "Dane dodatkowe rekordu " + index + " się nie zgadzają");
+                assertTrue(!seen.get(index), "Rekord " + index + " występuje dwa razy");
+                seen.set(index);
+            }
+            last = current;
+            count++;
+        }
+        tape.close();
+        return count == numRecords;
+    }
+
     private int countInitialRuns(String filename) throws IOException {
         Tape tape = new Tape(filename, RECORD_SIZE, BLOCK_SIZE);
         tape.reset("r");
@@ -109,9 +1485,25 @@ public class SortExperimentTest {
         return (last == null) ? 0 : runCount + 1;
     }
 
-    private boolean isFileSorted(String filename) throws IOException {
+    private int countRecords(String filename) throws IOException {
         Tape tape = new Tape(filename, RECORD_SIZE, BLOCK_SIZE);
         tape.reset("r");
+        Record record = new Record();
+        int count = 0;
+        while (tape.readRecord(record)) {
+            count++;
+        }
+        tape.close();
+        return count;
+    }
+
+    private boolean isFileSorted(String filename) throws IOException {
+        return isFileSorted(filename, RECORD_SIZE);
+    }
+
+    private boolean isFileSorted(String filename, int recordSize) throws IOException {
+        Tape tape = new Tape(filename, recordSize, BLOCK_SIZE);
+        tape.reset("r");
         Record last = null;
         Record current;
         while ((current = tape.readRecord()) != null) {
@@ -0,0 +1,688 @@
+package org.example;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.RandomAccessFile;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Locale;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class TapeIoExperimentTest {
+
+    private static final int BLOCK_SIZE = 4096;
+    private static final int RECORD_SIZE = Record.RECORD_SIZE;
+    private static final int N = 500000;
+    private static final String FILENAME = "test_file_tape_io.bin";
+
+    // Порівняння старого шляху (DataInputStream + новий Record на кожен запис)
+    // з новим: пряме декодування int-ів з буфера у повторно використовуваний Record.
+    @Test
+    public void runTapeIoExperiment() throws IOException {
+        try (PrintWriter writer = new PrintWriter(new FileWriter("test_results_tape_io.csv"))) {
+            writer.println("Path,N,TimeMs,RecordsPerSec,AllocatedBytesPerRecord,GcCount");
+
+            Measurement legacyWrite = null;
+            Measurement directWrite = null;
+            Measurement legacyRead = null;
+            Measurement allocatingRead = null;
+            Measurement reusingRead = null;
+
+            // Перший прохід - розігрів JIT, записуємо лише другий
+            for (int round = 0; round < 2; round++) {
+                legacyWrite = measure("legacy-write", this::legacyWrite);
+                directWrite = measure("direct-write", this::directWrite);
+                legacyRead = measure("legacy-read", this::legacyRead);
+                allocatingRead = measure("readRecord()", this::allocatingRead);
+                reusingRead = measure("readRecord(reuse)", this::reusingRead);
+            }
+
+            for (Measurement m : new Measurement[] {legacyWrite, directWrite, legacyRead, allocatingRead, reusingRead}) {
+                writer.println(m.toCsv());
+                System.out.println(m.toCsv());
+            }
+
+            assertTrue(reusingRead.bytesPerRecord() * 10 < legacyRead.bytesPerRecord(),
+                    "Odczyt z ponownym użyciem rekordu nadal alokuje: " + reusingRead.bytesPerRecord());
+            assertTrue(directWrite.bytesPerRecord() * 10 < legacyWrite.bytesPerRecord(),
+                    "Zapis nadal alokuje: " + directWrite.bytesPerRecord());
+        }
+    }
+
+    // Klucz long zamiast porównania double: zgodność porządku, koszt porównań i dekodowania,
+    // oraz sortowanie z kluczem zapisanym na taśmach pomocniczych.
+    @Test
+    public void runSortKeyExperiment() throws IOException {
+        double[] edge = {Double.NEGATIVE_INFINITY, -Double.MAX_VALUE, -1.5, -Double.MIN_VALUE, -0.0, 0.0,
+                Double.MIN_VALUE, 1.5, Double.MAX_VALUE, Double.POSITIVE_INFINITY, Double.NaN};
+        for (double a : edge) {
+            assertEquals(Double.doubleToLongBits(a), Double.doubleToLongBits(Record.fromSortKey(Record.toSortKey(a))));
+            for (double b : edge) {
+                assertEquals(Integer.signum(Double.compare(a, b)),
+                        Integer.signum(Long.compare(Record.toSortKey(a), Record.toSortKey(b))), a + " vs " + b);
+            }
+        }
+
+        int count = 1 << 20;
+        Random rand = new Random(43);
+        double[] values = new double[count];
+        long[] keys = new long[count];
+        Record record = new Record();
+        for (int i = 0; i < count; i++) {
+            record.set(rand.nextInt(10) + 1, rand.nextInt(4) + 1,
+                    rand.nextInt(5) + 1, rand.nextInt(5) + 1, rand.nextInt(20) + 1);
+            values[i] = record.getGValue();
+            keys[i] = record.getSortKey();
+        }
+
+        try (PrintWriter writer = new PrintWriter(new FileWriter("test_results_sort_key.csv"))) {
+            writer.println("Path,N,TimeMs,RecordsPerSec,AllocatedBytesPerRecord,GcCount");
+
+            Measurement doubleCompare = null;
+            Measurement longCompare = null;
+            Measurement plainDecode = null;
+            Measurement keyedDecode = null;
+            for (int round = 0; round < 2; round++) {
+                doubleCompare = measure("compare-double", () -> {
+                    long less = 0;
+                    for (int r = 0; r < 20; r++) {
+                        for (int i = 1; i < count; i++) {
+                            less += Double.compare(values[i], values[i - 1]) < 0 ? 1 : 0;
+                        }
+                    }
+                    return less > 0 ? 20L * count : 0;
+                });
+                longCompare = measure("compare-long", () -> {
+                    long less = 0;
+                    for (int r = 0; r < 20; r++) {
+                        for (int i = 1; i < count; i++) {
+                            less += Long.compare(keys[i], keys[i - 1]) < 0 ? 1 : 0;
+                        }
+                    }
+                    return less > 0 ? 20L * count : 0;
+                });
+                plainDecode = measure("decode-plain", () -> decodeAll(RecordLayout.PLAIN, count));
+                keyedDecode = measure("decode-keyed", () -> decodeAll(RecordLayout.KEYED, count));
+            }
+
+            for (Measurement m : new Measurement[] {doubleCompare, longCompare, plainDecode, keyedDecode}) {
+                writer.println(m.toCsv());
+                System.out.println(m.toCsv());
+            }
+            // Bez porównania czasów: od kiedy g() liczy potęgi mnożeniem, oba dekodowania kosztują podobnie
+            // i wynik zależałby od obciążenia maszyny; różnica jest tylko w CSV
+        }
+
+        for (String algorithm : new String[] {"natural", "kway8", "polyphase4", "parallel4"}) {
+            String keyedFile = "test_file_sort_key_keyed.bin";
+            String plainFile = "test_file_sort_key_plain.bin";
+            writeRandom(keyedFile, 50000);
+            writeRandom(plainFile, 50000);
+            sortWith(algorithm, new TapeFactory(RECORD_SIZE, BLOCK_SIZE, StorageType.CHANNEL, 0, RecordLayout.KEYED), keyedFile);
+            sortWith(algorithm, new TapeFactory(RECORD_SIZE, BLOCK_SIZE, StorageType.CHANNEL), plainFile);
+            assertArrayEquals(Files.readAllBytes(Path.of(plainFile)),
+                    Files.readAllBytes(Path.of(keyedFile)), algorithm);
+            Files.delete(Path.of(keyedFile));
+            Files.delete(Path.of(plainFile));
+        }
+    }
+
+    private long decodeAll(RecordLayout layout, int count) {
+        ByteBuffer buffer = ByteBuffer.allocate(BLOCK_SIZE * 2);
+        int perBlock = buffer.capacity() / layout.recordSize();
+        Random rand = new Random(43);
+        Record record = new Record();
+        for (int i = 0; i < perBlock; i++) {
+            record.set(rand.nextInt(10) + 1, rand.nextInt(4) + 1,
+                    rand.nextInt(5) + 1, rand.nextInt(5) + 1, rand.nextInt(20) + 1);
+            layout.encode(record, buffer, i * layout.recordSize());
+        }
+        long sum = 0;
+        for (int i = 0; i < count; i++) {
+            layout.decode(record, buffer, (i % perBlock) * layout.recordSize());
+            sum += record.getSortKey();
+        }
+        return sum != 0 ? count : 0;
+    }
+
+    // Kernel blokowy (kolumny pól, g() i spadki klucza całego bloku) wobec dekodowania po jednym rekordzie:
+    // te same klucze i granice serii, także dla pól poza dokładnym zakresem potęg, szerokich rekordów
+    // i taśmy COMPRESSED, oraz przepustowość na blok rekordów dla kernela skalarnego i wektorowego.
+    @Test
+    public void runBlockKernelExperiment() throws IOException {
+        BlockKernel scalar = BlockKernel.scalar();
+        BlockKernel preferred = BlockKernel.preferred();
+        System.out.println("Kernel: " + preferred.name());
+
+        int[] edge = {0, 1, -1, 2, 20, 190, 191, -191, 9_741, 9_742, 208_063, 208_064, 94_906_265, 94_906_266,
+            Integer.MAX_VALUE, Integer.MIN_VALUE};
+        Random rand = new Random(5);
+        for (int recordSize : new int[] {RECORD_SIZE, RECORD_SIZE + 8, RECORD_SIZE + 3}) {
+            int perBlock = BLOCK_SIZE / recordSize;
+            ByteBuffer block = ByteBuffer.allocate(BLOCK_SIZE);
+            Record[] records = new Record[perBlock];
+            BlockColumns scalarColumns = BlockColumns.forBlock(recordSize, BLOCK_SIZE);
+            BlockColumns vectorColumns = BlockColumns.forBlock(recordSize, BLOCK_SIZE);
+            int[] scalarDescents = new int[perBlock];
+            int[] vectorDescents = new int[perBlock];
+            for (int round = 0; round < 60; round++) {
+                for (int i = 0; i < perBlock; i++) {
+                    records[i] = (round % 2 == 0)
+                            ? new Record(edge[rand.nextInt(edge.length)], edge[rand.nextInt(edge.length)],
+                                    edge[rand.nextInt(edge.length)], edge[rand.nextInt(edge.length)],
+                                    edge[rand.nextInt(edge.length)])
+                            : new Record(rand.nextInt(10) + 1, rand.nextInt(4) + 1,
+                                    rand.nextInt(5) + 1, rand.nextInt(5) + 1, rand.nextInt(20) + 1);
+                }
+                // Liczba rekordów z resztą poza pełnymi wektorami; co czwarty blok to jedna rosnąca seria
+                int count = perBlock - round % 9;
+                if (round % 4 == 3) {
+                    java.util.Arrays.sort(records, 0, count);
+                }
+                for (int i = 0; i < count; i++) {
+                    records[i].encode(block, i * recordSize);
+                }
+                long previousKey = (round % 3 == 0) ? Long.MIN_VALUE : records[count / 2].getSortKey();
+
+                scalar.decode(block, 0, count, recordSize, scalarColumns);
+                scalar.computeKeys(scalarColumns);
+                preferred.decode(block, 0, count, recordSize, vectorColumns);
+                preferred.computeKeys(vectorColumns);
+                int expectedDescents = 0;
+                long lastKey = previousKey;
+                for (int i = 0; i < count; i++) {
+                    assertEquals(records[i].getSortKey(), scalarColumns.key(i), "Kernel skalarny, rekord " + i);
+                    assertEquals(records[i].getSortKey(), vectorColumns.key(i), "Kernel " + preferred.name()
+                            + ", rekord " + records[i]);
+                    expectedDescents += (records[i].getSortKey() < lastKey) ? 1 : 0;
+                    lastKey = records[i].getSortKey();
+                }
+                int found = scalar.findDescents(scalarColumns, previousKey, scalarDescents);
+                assertEquals(expectedDescents, found);
+                assertEquals(found, preferred.findDescents(vectorColumns, previousKey, vectorDescents));
+                assertArrayEquals(java.util.Arrays.copyOf(scalarDescents, found),
+                        java.util.Arrays.copyOf(vectorDescents, found));
+            }
+        }
+
+        // Tape.readBlock: te same rekordy i serie co readRecord dla każdego układu
+        String file = "test_file_block_kernel.bin";
+        for (RecordLayout layout : RecordLayout.values()) {
+            Tape tape = new Tape(file, RECORD_SIZE, BLOCK_SIZE, StorageType.RAF, 0, layout);
+            tape.reset("rw");
+            tape.truncate();
+            Random data = new Random(3);
+            for (int i = 0; i < 50000; i++) {
+                tape.writeRecord(new Record(data.nextInt(10) + 1, data.nextInt(4) + 1,
+                        data.nextInt(5) + 1, data.nextInt(5) + 1, data.nextInt(20) + 1));
+            }
+            tape.reset("r");
+            Record record = new Record();
+            long records = 0;
+            long runs = 0;
+            long lastKey = Long.MIN_VALUE;
+            while (tape.readRecord(record)) {
+                runs += (record.getSortKey() < lastKey) ? 1 : 0;
+                lastKey = record.getSortKey();
+                records++;
+            }
+            tape.reset("r");
+            BlockColumns columns = BlockColumns.forBlock(RECORD_SIZE, BLOCK_SIZE);
+            int[] descents = new int[columns.capacity()];
+            long blockRecords = 0;
+            long blockRuns = 0;
+            lastKey = Long.MIN_VALUE;
+            int count;
+            while ((count = tape.readBlock(columns, preferred)) > 0) {
+                blockRecords += count;
+                blockRuns += preferred.findDescents(columns, lastKey, descents);
+                lastKey = columns.key(count - 1);
+            }
+            tape.close();
+            assertEquals(records, blockRecords, layout.name());
+            assertEquals(runs, blockRuns, layout.name());
+        }
+        Files.delete(Path.of(file));
+
+        // Przepustowość: ten sam zestaw bloków w pamięci, bez odczytu z dysku
+        int perBlock = BLOCK_SIZE / RECORD_SIZE;
+        ByteBuffer[] blocks = new ByteBuffer[16];
+        for (int b = 0; b < blocks.length; b++) {
+            blocks[b] = ByteBuffer.allocate(BLOCK_SIZE);
+            for (int i = 0; i < perBlock; i++) {
+                new Record(rand.nextInt(10) + 1, rand.nextInt(4) + 1, rand.nextInt(5) + 1,
+                        rand.nextInt(5) + 1, rand.nextInt(20) + 1).encode(blocks[b], i * RECORD_SIZE);
+            }
+        }
+        int blockCount = 200000;
+        try (PrintWriter writer = new PrintWriter(new FileWriter("test_results_block_kernel.csv"))) {
+            writer.println("Path,Blocks,RecordsPerBlock,NsPerBlock,RecordsPerSec,AllocatedBytesPerRecord");
+
+            Measurement perRecord = null;
+            Measurement scalarBlocks = null;
+            Measurement preferredBlocks = null;
+            for (int round = 0; round < 2; round++) {
+                perRecord = measure("record", () -> {
+                    Record record = new Record();
+                    long runs = 0;
+                    long lastKey = Long.MIN_VALUE;
+                    for (int b = 0; b < blockCount; b++) {
+                        ByteBuffer block = blocks[b & 15];
+                        for (int i = 0; i < perBlock; i++) {
+                            RecordLayout.PLAIN.decode(record, block, i * RECORD_SIZE);
+                            runs += (record.getSortKey() < lastKey) ? 1 : 0;
+                            lastKey = record.getSortKey();
+                        }
+                    }
+                    return runs > 0 ? (long) blockCount * perBlock : 0;
+                });
+                scalarBlocks = measure("block-" + scalar.name(), () -> scanBlocks(scalar, blocks, blockCount));
+                preferredBlocks = measure("block-" + preferred.name(), () -> scanBlocks(preferred, blocks, blockCount));
+            }
+
+            for (Measurement m : new Measurement[] {perRecord, scalarBlocks, preferredBlocks}) {
+                writer.println(String.format(Locale.ROOT, "%s,%d,%d,%.1f,%.0f,%.1f", m.path(), blockCount, perBlock,
+                        (double) m.nanos() / blockCount, m.records() / (m.nanos() / 1e9), m.bytesPerRecord()));
+                System.out.println(m.toCsv());
+            }
+            assertEquals((long) blockCount * perBlock, preferredBlocks.records());
+        }
+    }
+
+    private static long scanBlocks(BlockKernel kernel, ByteBuffer[] blocks, int blockCount) {
+        int perBlock = BLOCK_SIZE / RECORD_SIZE;
+        BlockColumns columns = BlockColumns.forBlock(RECORD_SIZE, BLOCK_SIZE);
+        int[] descents = new int[columns.capacity()];
+        long runs = 0;
+        long lastKey = Long.MIN_VALUE;
+        for (int b = 0; b < blockCount; b++) {
+            kernel.decode(blocks[b & 15], 0, perBlock, RECORD_SIZE, columns);
+            kernel.computeKeys(columns);
+            runs += kernel.findDescents(columns, lastKey, descents);
+            lastKey = columns.key(perBlock - 1);
+        }
+        return runs > 0 ? (long) blockCount * perBlock : 0;
+    }
+
+    // Import tekstu: Scanner + zapis nieposortowanej taśmy + sortowanie, wobec parsowania bajtów
+    // prosto do serii (1 i 4 wątki). Wynik ma być ten sam jako multizbiór rekordów.
+    @Test
+    public void runTextIngestExperiment() throws IOException {
+        String text = "test_file_ingest.txt";
+        String output = "test_file_ingest.bin";
+        int count = 300000;
+        Random rand = new Random(11);
+        try (PrintWriter writer = new PrintWriter(new FileWriter(text))) {
+            for (int i = 0; i < count; i++) {
+                String separator = (i % 7 == 0) ? "\t" : " ";
+                writer.print((rand.nextInt(21) - 10) + separator + (rand.nextInt(4) + 1) + separator
+                        + (rand.nextInt(5) + 1) + " " + (rand.nextInt(5) + 1) + " " + (rand.nextInt(20) + 1));
+                writer.print((i % 5 == 0) ? "\r\n" : "\n");
+            }
+        }
+        long textBytes = Files.size(Path.of(text));
+
+        try (PrintWriter writer = new PrintWriter(new FileWriter("test_results_text_ingest.csv"))) {
+            writer.println("Path,Threads,N,TextBytes,TimeMs,MBps,VsScanner,Phases,Reads,Writes");
+
+            long expected = 0;
+            for (int round = 0; round < 2; round++) {
+                long start = System.nanoTime();
+                Tape tape = new Tape(output, RECORD_SIZE, BLOCK_SIZE);
+                tape.reset("rw");
+                tape.truncate();
+                try (java.util.Scanner scanner = new java.util.Scanner(new java.io.File(text))) {
+                    while (scanner.hasNextInt()) {
+                        tape.writeRecord(new Record(scanner.nextInt(), scanner.nextInt(), scanner.nextInt(),
+                                scanner.nextInt(), scanner.nextInt()));
+                    }
+                }
+                tape.close();
+                SortStats legacy = new ParallelExternalSorter(new TapeFactory(RECORD_SIZE, BLOCK_SIZE), 1, 64, 16)
+                        .sort(output);
+                long legacyMs = (System.nanoTime() - start) / 1_000_000;
+                expected = checksum(output, count);
+
+                long[] ingestMs = new long[2];
+                int[] threadCounts = {1, 4};
+                for (int t = 0; t < threadCounts.length; t++) {
+                    Files.deleteIfExists(Path.of(output));
+                    start = System.nanoTime();
+                    TextIngest ingest = new TextIngest(new TapeFactory(RECORD_SIZE, BLOCK_SIZE), threadCounts[t], 64, 16);
+                    SortStats stats = ingest.ingest(text, output, SortListener.NONE);
+                    ingestMs[t] = (System.nanoTime() - start) / 1_000_000;
+                    assertEquals(expected, checksum(output, count), "Inny wynik importu, wątki " + threadCounts[t]);
+                    if (round == 1) {
+                        writer.println(String.format(Locale.ROOT, "ingest,%d,%d,%d,%d,%.1f,%.2f,%d,%d,%d",
+                                threadCounts[t], count, textBytes, ingestMs[t],
+                                TextIngest.throughput(textBytes, ingestMs[t]),
+                                (double) legacyMs / Math.max(1, ingestMs[t]),
+                                stats.phases(), stats.diskReads(), stats.diskWrites()));
+                    }
+                }
+                // Czas zależy od obciążenia maszyny, więc porównanie ze Scannerem tylko w CSV (VsScanner)
+                if (round == 1) {
+                    writer.println(String.format(Locale.ROOT, "scanner+sort,1,%d,%d,%d,%.1f,1.00,%d,%d,%d",
+                            count, textBytes, legacyMs, TextIngest.throughput(textBytes, legacyMs),
+                            legacy.phases() + 1, legacy.diskReads(), legacy.diskWrites()));
+                }
+            }
+        }
+
+        // Błędne dane przerywają import zamiast cicho go kończyć jak Scanner.hasNextInt()
+        Files.writeString(Path.of(text), "1 2 3 4 5\n1 2 x 4 5\n");
+        try (TextRecordReader reader = new TextRecordReader(Path.of(text))) {
+            IOException error = org.junit.jupiter.api.Assertions.assertThrows(IOException.class, () -> {
+                while (reader.readRecord() != null) {
+                    // błąd wykrywany przy parsowaniu bloku
+                }
+            });
+            assertTrue(error.getMessage().contains("nr 2"), error.getMessage());
+        }
+        Files.writeString(Path.of(text), "-2147483648 2147483647 0 +7 -0\n1 2\n");
+        try (TextRecordReader reader = new TextRecordReader(Path.of(text))) {
+            assertEquals(new Record(Integer.MIN_VALUE, Integer.MAX_VALUE, 0, 7, 0).toString(),
+                    reader.readRecord().toString());
+            org.junit.jupiter.api.Assertions.assertThrows(IOException.class, reader::readRecord);
+        }
+        Files.delete(Path.of(text));
+        Files.delete(Path.of(output));
+    }
+
+    // Zapytania o zakres g() przez rzadki indeks bloków zapisany przy sortowaniu, wobec pełnego przeglądu
+    // taśmy. Indeks ma czytać tylko bloki z wynikiem (plus blok startowy), a wynik ma być ten sam.
+    @Test
+    public void runBlockIndexExperiment() throws IOException {
+        String file = "test_file_index.bin";
+        int count = 200000;
+        int perBlock = BLOCK_SIZE / RECORD_SIZE;
+        TapeFactory indexed = new TapeFactory(RECORD_SIZE, BLOCK_SIZE, StorageType.RAF, 0, RecordLayout.PLAIN, true);
+
+        try (PrintWriter writer = new PrintWriter(new FileWriter("test_results_block_index.csv"))) {
+            writer.println("Algorithm,Query,Low,High,Matches,IndexedReads,ScanReads,IndexedUs,ScanUs");
+            for (String algorithm : new String[] {"natural", "kway8", "polyphase4", "parallel"}) {
+                writeRandom(file, count);
+                sortWith(algorithm, indexed, file);
+                BlockIndex index = BlockIndex.read(file);
+                assertTrue(index != null, "Brak indeksu po sortowaniu " + algorithm);
+                assertEquals((count + perBlock - 1) / perBlock, index.blocks());
+                assertEquals(count, index.records());
+
+                // Granice z rzeczywistych wartości g(): wąski, średni i szeroki przedział oraz pusty na końcu
+                double[] keys = new double[count];
+                Tape all = new Tape(file, RECORD_SIZE, BLOCK_SIZE);
+                all.reset("r");
+                Record record = new Record();
+                for (int i = 0; i < count && all.readRecord(record); i++) {
+                    keys[i] = record.getGValue();
+                }
+                all.close();
+                double[][] queries = {
+                    {keys[count / 2], keys[count / 2]},
+                    {keys[count / 3], keys[count / 3 + count / 100]},
+                    {keys[count / 10], keys[count * 9 / 10]},
+                    {keys[count - 1] + 1, keys[count - 1] + 100},
+                    {keys[0] - 100, keys[0]},
+                };
+                for (int q = 0; q < queries.length; q++) {
+                    double low = queries[q][0];
+                    double high = queries[q][1];
+
+                    Tape tape = new Tape(file, RECORD_SIZE, BLOCK_SIZE);
+                    tape.reset("r");
+                    tape.getIndex();
+                    long[] indexedSum = new long[1];
+                    long start = System.nanoTime();
+                    long matches = tape.rangeScan(low, high, r -> indexedSum[0] += fieldsHash(r));
+                    long indexedUs = (System.nanoTime() - start) / 1000;
+                    long indexedReads = tape.getDiskReads();
+                    tape.close();
+
+                    Tape scan = new Tape(file, RECORD_SIZE, BLOCK_SIZE);
+                    scan.reset("r");
+                    long scanMatches = 0;
+                    long scanSum = 0;
+                    start = System.nanoTime();
+                    while (scan.readRecord(record)) {
+                        if (record.getGValue() >= low && record.getGValue() <= high) {
+                            scanMatches++;
+                            scanSum += fieldsHash(record);
+                        }
+                    }
+                    long scanUs = (System.nanoTime() - start) / 1000;
+                    long scanReads = scan.getDiskReads();
+                    scan.close();
+
+                    assertEquals(scanMatches, matches, algorithm + " zapytanie " + q);
+                    assertEquals(scanSum, indexedSum[0], algorithm + " zapytanie " + q);
+                    long matchingBlocks = (matches + perBlock - 1) / perBlock;
+                    assertTrue(indexedReads <= matchingBlocks + 2,
+                            algorithm + " zapytanie " + q + ": " + indexedReads + " bloków przy " + matches + " rekordach");
+                    writer.println(String.format(Locale.ROOT, "%s,%d,%.1f,%.1f,%d,%d,%d,%d,%d", algorithm, q,
+                            low, high, matches, indexedReads, scanReads, indexedUs, scanUs));
+                }
+            }
+        }
+
+        // Taśma zmieniona po zapisie indeksu: indeks jest nieaktualny
+        Tape tape = new Tape(file, RECORD_SIZE, BLOCK_SIZE);
+        tape.reset("rw");
+        tape.seek(tape.length());
+        tape.writeRecord(new Record(1, 1, 1, 1, 1));
+        tape.close();
+        assertEquals(null, BlockIndex.read(file));
+        Tape stale = new Tape(file, RECORD_SIZE, BLOCK_SIZE);
+        stale.reset("r");
+        org.junit.jupiter.api.Assertions.assertThrows(IOException.class, () -> stale.rangeScan(0, 1, r -> { }));
+        stale.close();
+
+        // Nieposortowany zapis przez fabrykę z indeksem nie zostawia pliku .idx
+        writeRandom(file, 1000);
+        Tape unsorted = indexed.open(file);
+        unsorted.reset("rw");
+        unsorted.truncate();
+        for (int i = 0; i < 1000; i++) {
+            unsorted.writeRecord(new Record(i % 2 == 0 ? 1 : -1, 1, 1, 1, 1));
+        }
+        unsorted.close();
+        assertTrue(!Files.exists(BlockIndex.pathOf(file)));
+        Files.delete(Path.of(file));
+    }
+
+    // Suma skrótów rekordów niezależna od kolejności; przy okazji sprawdza porządek i liczbę rekordów
+    private static long checksum(String filename, int count) throws IOException {
+        Tape tape = new Tape(filename, RECORD_SIZE, BLOCK_SIZE);
+        tape.reset("r");
+        Record record = new Record();
+        Record last = new Record();
+        int[] fields = new int[5];
+        long sum = 0;
+        int read = 0;
+        while (tape.readRecord(record)) {
+            assertTrue(read == 0 || record.compareTo(last) >= 0, "Nieposortowane przy rekordzie " + read);
+            record.getFields(fields);
+            sum += java.util.Arrays.hashCode(fields) * 0x9E3779B97F4A7C15L;
+            last.copyFrom(record);
+            read++;
+        }
+        tape.close();
+        assertEquals(count, read);
+        return sum;
+    }
+
+    private static long fieldsHash(Record record) {
+        int[] fields = new int[5];
+        record.getFields(fields);
+        return java.util.Arrays.hashCode(fields) * 0x9E3779B97F4A7C15L;
+    }
+
+    private static void sortWith(String algorithm, TapeFactory tapes, String filename) throws IOException {
+        ExternalSorter sorter = switch (algorithm) {
+            case "natural" -> new NaturalMergeSorter(tapes, null);
+            case "kway8" -> new KWayMergeSorter(tapes, 8);
+            case "polyphase4" -> new PolyphaseMergeSorter(tapes, 4);
+            default -> new ParallelExternalSorter(tapes, 4, 8, 4);
+        };
+        sorter.sort(filename);
+    }
+
+    private static void writeRandom(String filename, int count) throws IOException {
+        Tape tape = new Tape(filename, RECORD_SIZE, BLOCK_SIZE);
+        tape.reset("rw");
+        tape.truncate();
+        Random rand = new Random(7);
+        Record record = new Record();
+        for (int i = 0; i < count; i++) {
+            record.set(rand.nextInt(10) + 1, rand.nextInt(4) + 1,
+                    rand.nextInt(5) + 1, rand.nextInt(5) + 1, rand.nextInt(20) + 1);
+            tape.writeRecord(record);
+        }
+        tape.close();
+    }
+
+    private long directWrite() throws IOException {
+        Tape tape = new Tape(FILENAME, RECORD_SIZE, BLOCK_SIZE);
+        tape.reset("rw");
+        tape.truncate();
+        Random rand = new Random(43);
+        Record record = new Record();
+        for (int i = 0; i < N; i++) {
+            record.set(rand.nextInt(10) + 1, rand.nextInt(4) + 1,
+                    rand.nextInt(5) + 1, rand.nextInt(5) + 1, rand.nextInt(20) + 1);
+            tape.writeRecord(record);
+        }
+        tape.close();
+        return N;
+    }
+
+    private long allocatingRead() throws IOException {
+        Tape tape = new Tape(FILENAME, RECORD_SIZE, BLOCK_SIZE);
+        tape.reset("r");
+        long count = 0;
+        while (tape.readRecord() != null) {
+            count++;
+        }
+        tape.close();
+        assertEquals(N, count);
+        return count;
+    }
+
+    private long reusingRead() throws IOException {
+        Tape tape = new Tape(FILENAME, RECORD_SIZE, BLOCK_SIZE);
+        tape.reset("r");
+        Record record = new Record();
+        long count = 0;
+        while (tape.readRecord(record)) {
+            count++;
+        }
+        tape.close();
+        assertEquals(N, count);
+        return count;
+    }
+
+    // --- Poprzednia implementacja Tape, odtworzona jako punkt odniesienia ---
+
+    private long legacyWrite() throws IOException {
+        try (RandomAccessFile file = new RandomAccessFile(FILENAME, "rw")) {
+            file.setLength(0);
+            byte[] block = new byte[BLOCK_SIZE];
+            int pos = 0;
+            Random rand = new Random(43);
+            for (int i = 0; i < N; i++) {
+                Record record = new Record(rand.nextInt(10) + 1, rand.nextInt(4) + 1,
+                        rand.nextInt(5) + 1, rand.nextInt(5) + 1, rand.nextInt(20) + 1);
+                if (pos + RECORD_SIZE > BLOCK_SIZE) {
+                    file.write(block, 0, pos);
+                    pos = 0;
+                }
+                ByteArrayOutputStream baos = new ByteArrayOutputStream(RECORD_SIZE);
+                record.write(new DataOutputStream(baos));
+                byte[] recordBytes = baos.toByteArray();
+                System.arraycopy(recordBytes, 0, block, pos, recordBytes.length);
+                pos += recordBytes.length;
+            }
+            file.write(block, 0, pos);
+        }
+        return N;
+    }
+
+    private long legacyRead() throws IOException {
+        long count = 0;
+        try (RandomAccessFile file = new RandomAccessFile(FILENAME, "r")) {
+            byte[] block = new byte[BLOCK_SIZE];
+            int limit = 0;
+            int pos = 0;
+            while (true) {
+                if (pos + RECORD_SIZE > limit) {
+                    int leftover = limit - pos;
+                    System.arraycopy(block, pos, block, 0, leftover);
+                    int bytesRead = file.read(block, leftover, BLOCK_SIZE - leftover);
+                    pos = 0;
+                    limit = leftover + Math.max(bytesRead, 0);
+                    if (limit < RECORD_SIZE) {
+                        break;
+                    }
+                }
+                DataInputStream dis = new DataInputStream(new ByteArrayInputStream(block, pos, RECORD_SIZE));
+                Record record = new Record();
+                record.read(dis);
+                pos += RECORD_SIZE;
+                count++;
+            }
+        }
+        assertEquals(N, count);
+        return count;
+    }
+
+    private interface Pass {
+        long run() throws IOException;
+    }
+
+    private record Measurement(String path, long records, long nanos, long allocatedBytes, long gcCount) {
+        double bytesPerRecord() {
+            return (double) allocatedBytes / records;
+        }
+
+        String toCsv() {
+            double seconds = nanos / 1e9;
+            return String.format(Locale.ROOT, "%s,%d,%d,%.0f,%.1f,%d",
+                    path, records, nanos / 1_000_000, records / seconds, bytesPerRecord(), gcCount);
+        }
+    }
+
+    private static Measurement measure(String path, Pass pass) throws IOException {
+        com.sun.management.ThreadMXBean threads =
+                (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long gcBefore = gcCount();
+        long allocatedBefore = threads.getCurrentThreadAllocatedBytes();
+        long start = System.nanoTime();
+
+        long records = pass.run();
+
+        long nanos = System.nanoTime() - start;
+        long allocated = threads.getCurrentThreadAllocatedBytes() - allocatedBefore;
+        return new Measurement(path, records, nanos, allocated, gcCount() - gcBefore);
+    }
+
+    private static long gcCount() {
+        long count = 0;
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+            count += Math.max(0, gc.getCollectionCount());
+        }
+        return count;
+    }
+}